@@ -0,0 +1,292 @@
+package hotel;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * In-memory cache of room availability.  For each (hotelID, date) it keeps a
+ * bitset of the room numbers booked that night and one of the rooms under
+ * repair; together with the rooms and prices held by ReferenceData, "which
+ * rooms of hotel H are free on D" is answered without a query once the entry
+ * is warm.  Both bitsets are loaded by the same query.
+ *
+ * Bookings made through Hotel.bookRoom update the cached bitset in place, and
+ * repairs scheduled through Hotel drop the nights they cover.
+ * Entries are evicted least-recently-used beyond a fixed count and expire
+ * after a time-to-live, which bounds both memory and how stale an entry can
+ * be with respect to bookings made by other processes.
+ *
+ */
+public class AvailabilityCache {
+
+    public static final int DEFAULT_MAX_DATES = 10000;
+    public static final long DEFAULT_TTL_MILLIS = 60 * 1000;
+
+    // number of generation counters used to detect bookings during a load
+    private static final int STRIPES = 256;
+
+    private static class Entry < V > {
+        final V value;
+        final long loadedAt;
+
+        Entry(V value, long loadedAt) {
+            this.value = value;
+            this.loadedAt = loadedAt;
+        }
+    } //end Entry
+
+    private static class Night {
+        final BitSet booked = new BitSet();
+        final BitSet underRepair = new BitSet();
+    } //end Night
+
+    // rooms booked that night, then rooms whose repair window covers it
+    private static final String LOAD_QUERY = "SELECT roomNumber, false FROM RoomBookings WHERE hotelID = ? AND bookingDate = ? " +
+        "UNION ALL SELECT x.roomNumber, true FROM RoomRepairs x WHERE x.hotelID = ? " +
+        "AND " + Hotel.repairOverlaps("CAST(? AS date)", "CAST(? AS date) + 1");
+
+    // the same for many hotels at once
+    private static final String LOAD_MANY_QUERY = "SELECT hotelID, roomNumber, false FROM RoomBookings " +
+        "WHERE hotelID = ANY(CAST(? AS integer[])) AND bookingDate = ? " +
+        "UNION ALL SELECT x.hotelID, x.roomNumber, true FROM RoomRepairs x WHERE x.hotelID = ANY(CAST(? AS integer[])) " +
+        "AND " + Hotel.repairOverlaps("CAST(? AS date)", "CAST(? AS date) + 1");
+
+    private final Hotel esql;
+    private final long ttlMillis;
+    private final Map < Long, Entry < Night >> nights;
+    // bumped by every booking so that a concurrent load does not cache a stale bitset
+    private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+
+    public AvailabilityCache(Hotel esql) {
+        this(esql, DEFAULT_MAX_DATES, DEFAULT_TTL_MILLIS);
+    }
+
+    /**
+     * @param esql the database handle used to load missing entries
+     * @param maxDates the most (hotelID, date) bitsets kept
+     * @param ttlMillis how long an entry is trusted after it was loaded
+     */
+    public AvailabilityCache(Hotel esql, final int maxDates, long ttlMillis) {
+        this.esql = esql;
+        this.ttlMillis = ttlMillis;
+        this.nights = new LinkedHashMap < Long, Entry < Night >> (16, 0.75f, true) {
+            protected boolean removeEldestEntry(Map.Entry < Long, Entry < Night >> eldest) {
+                return size() > maxDates;
+            }
+        };
+    } //end AvailabilityCache
+
+    /**
+     * Lists every room of a hotel with its availability on a date.
+     *
+     * @return rows of (roomNumber, price, 'Available', 'Booked' or 'Under Repair')
+     * @throws java.sql.SQLException when failed to load a missing entry
+     */
+    public List < List < String >> listRooms(int hotelID, LocalDate date) throws SQLException {
+        ReferenceData.Rooms r = esql.getReferenceData().rooms(hotelID);
+        if (r == null)
+            return new ArrayList < List < String >> ();
+        BitSet taken = new BitSet();
+        BitSet repair = new BitSet();
+        night(hotelID, date, taken, repair);
+        List < List < String >> result = new ArrayList < List < String >> (r.numbers.length);
+        for (int i = 0; i < r.numbers.length; i++) {
+            List < String > row = new ArrayList < String > (3);
+            row.add(String.valueOf(r.numbers[i]));
+            row.add(String.valueOf(r.prices[i]));
+            row.add(taken.get(r.numbers[i]) ? "Booked" : repair.get(r.numbers[i]) ? "Under Repair" : "Available");
+            result.add(row);
+        }
+        return result;
+    } //end listRooms
+
+    /**
+     * @return a copy of the set of room numbers booked at the hotel that night
+     * @throws java.sql.SQLException when failed to load a missing entry
+     */
+    public BitSet booked(int hotelID, LocalDate date) throws SQLException {
+        BitSet booked = new BitSet();
+        night(hotelID, date, booked, new BitSet());
+        return booked;
+    }
+
+    /**
+     * @return a copy of the set of room numbers under repair at the hotel that night
+     * @throws java.sql.SQLException when failed to load a missing entry
+     */
+    public BitSet underRepair(int hotelID, LocalDate date) throws SQLException {
+        BitSet repair = new BitSet();
+        night(hotelID, date, new BitSet(), repair);
+        return repair;
+    }
+
+    /**
+     * Finds the rooms that cannot be booked on a night at many hotels.  The
+     * hotels missing from the cache are loaded together in one query per
+     * shard, all shards at once.
+     *
+     * @return for each hotel, in the same order, a new set of the room
+     * numbers booked or under repair that night
+     * @throws java.sql.SQLException when failed to load the missing entries
+     */
+    public BitSet[] unavailable(int[] hotelIDs, LocalDate date) throws SQLException {
+        BitSet[] result = new BitSet[hotelIDs.length];
+        Map < Integer, Night > missing = new LinkedHashMap < Integer, Night > ();
+        synchronized(this) {
+            for (int i = 0; i < hotelIDs.length; i++) {
+                result[i] = new BitSet();
+                Entry < Night > e = nights.get(key(hotelIDs[i], date));
+                if (e != null && fresh(e)) {
+                    result[i].or(e.value.booked);
+                    result[i].or(e.value.underRepair);
+                } else {
+                    missing.put(hotelIDs[i], new Night());
+                }
+            }
+        }
+        if (missing.isEmpty())
+            return result;
+
+        int[] ids = new int[missing.size()];
+        long[] generation = new long[ids.length];
+        int n = 0;
+        for (int hotelID: missing.keySet()) {
+            ids[n] = hotelID;
+            generation[n++] = generations.get(stripe(key(hotelID, date)));
+        }
+        final java.sql.Date day = java.sql.Date.valueOf(date);
+        final ShardRouter shards = esql.getShardRouter();
+        final List < List < Integer >> byShard = new ArrayList < List < Integer >> (shards.size());
+        for (int i = 0; i < shards.size(); i++)
+            byShard.add(new ArrayList < Integer > ());
+        for (int hotelID: ids)
+            byShard.get(shards.shardOf(hotelID)).add(hotelID);
+        List < List < List < String >>> parts = shards.scatter(new ShardRouter.ShardTask < List < List < String >>> () {
+            public List < List < String >> run(int shard, ConnectionPool pool) throws SQLException {
+                List < Integer > own = byShard.get(shard);
+                if (own.isEmpty())
+                    return new ArrayList < List < String >> ();
+                int[] hotels = new int[own.size()];
+                for (int i = 0; i < hotels.length; i++)
+                    hotels[i] = own.get(i);
+                return esql.executeShardQuery(hotels[0], LOAD_MANY_QUERY, hotels, day, hotels, day, day, day);
+            }
+        });
+        List < List < String >> rows = new ArrayList < List < String >> ();
+        for (List < List < String >> part: parts)
+            rows.addAll(part);
+        for (List < String > row: rows) {
+            Night loaded = missing.get(Integer.parseInt(row.get(0).trim()));
+            int room = Integer.parseInt(row.get(1).trim());
+            if ("t".equals(row.get(2)))
+                loaded.underRepair.set(room);
+            else
+                loaded.booked.set(room);
+        }
+        for (int i = 0; i < hotelIDs.length; i++) {
+            Night loaded = missing.get(hotelIDs[i]);
+            if (loaded != null) {
+                result[i].or(loaded.booked);
+                result[i].or(loaded.underRepair);
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        synchronized(this) {
+            for (int i = 0; i < ids.length; i++) {
+                long key = key(ids[i], date);
+                // a booking or repair landed while we were loading; our copy may predate it
+                if (generations.get(stripe(key)) == generation[i])
+                    nights.put(key, new Entry < Night > (missing.get(ids[i]), now));
+            }
+        }
+        return result;
+    } //end unavailable
+
+    /*
+     * Adds the night's booked rooms and rooms under repair to the given sets,
+     * loading the entry first if it is missing or expired.
+     **/
+    private void night(int hotelID, LocalDate date, BitSet booked, BitSet underRepair) throws SQLException {
+        long key = key(hotelID, date);
+        synchronized(this) {
+            Entry < Night > e = nights.get(key);
+            if (e != null && fresh(e)) {
+                booked.or(e.value.booked);
+                underRepair.or(e.value.underRepair);
+                return;
+            }
+        }
+
+        int stripe = stripe(key);
+        long generation = generations.get(stripe);
+        java.sql.Date day = java.sql.Date.valueOf(date);
+        Night loaded = new Night();
+        for (List < String > row: esql.executeShardQuery(hotelID, LOAD_QUERY, hotelID, day, hotelID, day, day, day)) {
+            int room = Integer.parseInt(row.get(0).trim());
+            if ("t".equals(row.get(1)))
+                loaded.underRepair.set(room);
+            else
+                loaded.booked.set(room);
+        }
+        booked.or(loaded.booked);
+        underRepair.or(loaded.underRepair);
+
+        synchronized(this) {
+            // a booking or repair landed while we were loading; our copy may predate it
+            if (generations.get(stripe) == generation)
+                nights.put(key, new Entry < Night > (loaded, System.currentTimeMillis()));
+        }
+    } //end night
+
+    /**
+     * Records that a room is now booked for the night.
+     */
+    public void markBooked(int hotelID, int roomNumber, LocalDate date) {
+        long key = key(hotelID, date);
+        synchronized(this) {
+            generations.incrementAndGet(stripe(key));
+            Entry < Night > e = nights.get(key);
+            if (e != null)
+                e.value.booked.set(roomNumber);
+        }
+    }
+
+    /**
+     * Drops the cached availability of a hotel on a date.
+     */
+    public synchronized void invalidate(int hotelID, LocalDate date) {
+        long key = key(hotelID, date);
+        generations.incrementAndGet(stripe(key));
+        nights.remove(key);
+    }
+
+    /**
+     * Drops the cached availability of a hotel for days nights from a date on.
+     */
+    public synchronized void invalidate(int hotelID, LocalDate from, int days) {
+        for (int d = 0; d < days; d++)
+            invalidate(hotelID, from.plusDays(d));
+    }
+
+    private boolean fresh(Entry < ? > e) {
+        return System.currentTimeMillis() - e.loadedAt < ttlMillis;
+    }
+
+    static long key(int hotelID, LocalDate date) {
+        return ((long) hotelID << 32) | (date.toEpochDay() & 0xffffffffL);
+    }
+
+    private static int stripe(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int)(h >>> 56) & (STRIPES - 1);
+    }
+
+} //end AvailabilityCache
@@ -0,0 +1,37 @@
+package hotel;
+
+import java.time.LocalDate;
+
+
+/**
+ * One night of one room, as asked for in a block booking.
+ *
+ */
+public class BookingRequest {
+
+    public final int hotelID;
+    public final int roomNumber;
+    public final LocalDate date;
+
+    public BookingRequest(int hotelID, int roomNumber, LocalDate date) {
+        this.hotelID = hotelID;
+        this.roomNumber = roomNumber;
+        this.date = date;
+    }
+
+    public boolean equals(Object o) {
+        if (!(o instanceof BookingRequest))
+            return false;
+        BookingRequest r = (BookingRequest) o;
+        return hotelID == r.hotelID && roomNumber == r.roomNumber && date.equals(r.date);
+    }
+
+    public int hashCode() {
+        return (hotelID * 31 + roomNumber) * 31 + date.hashCode();
+    }
+
+    public String toString() {
+        return hotelID + ":" + roomNumber + ":" + date;
+    }
+
+} //end BookingRequest
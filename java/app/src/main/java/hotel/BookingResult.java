@@ -0,0 +1,30 @@
+package hotel;
+
+/**
+ * The outcome of one reservation attempt.
+ *
+ */
+public class BookingResult {
+
+    public enum Status {
+        BOOKED, // the night was reserved for the customer
+        ALREADY_BOOKED, // someone holds the room that night
+        UNDER_REPAIR, // a repair takes the room out of service that night
+        NO_SUCH_ROOM // the hotel has no room with that number
+    }
+
+    public final Status status;
+    public final int bookingID; // -1 unless BOOKED; the first night's booking for a stay
+    public final String price; // cost of the whole stay; null for NO_SUCH_ROOM
+
+    public BookingResult(Status status, int bookingID, String price) {
+        this.status = status;
+        this.bookingID = bookingID;
+        this.price = price;
+    }
+
+    public boolean isBooked() {
+        return status == Status.BOOKED;
+    }
+
+} //end BookingResult
@@ -0,0 +1,628 @@
+package hotel;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+
+/**
+ * A read-only columnar copy of RoomBookings, Rooms and Hotel in one file, for
+ * analytical questions that should not run against the booking tables.
+ *
+ * Bookings are stored in segments of SEGMENT_ROWS rows; inside a segment each
+ * column (bookingID, customerID, hotelID, roomNumber, bookingDate as epoch
+ * day) is a run of little-endian ints.  Rooms and hotels follow as int
+ * columns sorted by key, hotel names are dictionary-encoded, and a footer
+ * gives the offsets of every section:
+ *
+ *   [magic] [booking segments...] [rooms] [hotels] [dictionary] [footer]
+ *
+ * export() streams the tables (from a read replica when there is one) and
+ * only ever buffers one segment.  open() memory-maps the file, and scan()
+ * runs a scan over the segments in parallel on the common fork-join pool;
+ * the scans read the mapped columns in place and keep their totals in
+ * primitive arrays, so the heap hardly notices a file of any size.
+ *
+ */
+public class BookingSnapshot {
+
+    public static final int SEGMENT_ROWS = 1 << 16;
+    static final int BOOKING_COLUMNS = 5;
+    static final long MAGIC = 0x484f54454c534e50L; // "HOTELSNP"
+    static final int VERSION = 1;
+    static final int FOOTER_BYTES = 8 * 7;
+
+    // column order inside a booking segment
+    static final int BOOKING_ID = 0;
+    static final int CUSTOMER_ID = 1;
+    static final int HOTEL_ID = 2;
+    static final int ROOM_NUMBER = 3;
+    static final int BOOKING_DATE = 4;
+
+    /**
+     * The columns of one segment of bookings.  Values are read in place from
+     * the mapped file with absolute gets.
+     */
+    public static class Segment {
+        public final int rows;
+        public final IntBuffer bookingID;
+        public final IntBuffer customerID;
+        public final IntBuffer hotelID;
+        public final IntBuffer roomNumber;
+        public final IntBuffer bookingDate; // days since 1970-01-01
+
+        Segment(ByteBuffer data, int rows) {
+            this.rows = rows;
+            this.bookingID = column(data, rows, BOOKING_ID);
+            this.customerID = column(data, rows, CUSTOMER_ID);
+            this.hotelID = column(data, rows, HOTEL_ID);
+            this.roomNumber = column(data, rows, ROOM_NUMBER);
+            this.bookingDate = column(data, rows, BOOKING_DATE);
+        }
+
+        private static IntBuffer column(ByteBuffer data, int rows, int c) {
+            return data.slice(c * rows * 4, rows * 4).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        }
+    } //end Segment
+
+    /**
+     * A computation over every booking, run segment by segment in parallel.
+     * Each task fills its own result, and results are merged pairwise.
+     */
+    public interface Scan < R > {
+
+        /**
+         * @return an empty result for one task
+         */
+        R newResult();
+
+        /**
+         * Adds one segment's bookings to a task's result.
+         */
+        void scan(Segment segment, R result);
+
+        /**
+         * @return the combination of two tasks' results
+         */
+        R merge(R a, R b);
+    } //end Scan
+
+    private final Segment[] segments;
+    private final long bookings;
+    private final int[] roomHotelIDs;
+    private final int[] roomNumbers;
+    private final int[] roomPrices;
+    private final long[] roomKeys; // (hotelID, roomNumber) packed, ascending
+    private final int[] hotelIDs; // ascending
+    private final int[] hotelNameCodes;
+    private final int[] hotelEstablished;
+    private final String[] names;
+
+    private BookingSnapshot(Segment[] segments, long bookings, int[] roomHotelIDs, int[] roomNumbers, int[] roomPrices,
+        int[] hotelIDs, int[] hotelNameCodes, int[] hotelEstablished, String[] names) {
+        this.segments = segments;
+        this.bookings = bookings;
+        this.roomHotelIDs = roomHotelIDs;
+        this.roomNumbers = roomNumbers;
+        this.roomPrices = roomPrices;
+        this.hotelIDs = hotelIDs;
+        this.hotelNameCodes = hotelNameCodes;
+        this.hotelEstablished = hotelEstablished;
+        this.names = names;
+        this.roomKeys = new long[roomNumbers.length];
+        for (int i = 0; i < roomKeys.length; i++)
+            roomKeys[i] = key(roomHotelIDs[i], roomNumbers[i]);
+    }
+
+    /*================= EXPORT ====================*/
+
+    /**
+     * Writes RoomBookings, Rooms and Hotel to a snapshot file.  The tables are
+     * read one after another, and shard after shard, so a booking made
+     * meanwhile may be missing.
+     *
+     * @param esql the database handle
+     * @param file the file to write, replaced if it exists
+     * @return the number of bookings written
+     * @throws java.sql.SQLException when failed to read a table
+     * @throws java.io.IOException when failed to write the file
+     */
+    public static long export(Hotel esql, File file) throws SQLException, IOException {
+        try (FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer head = little(8);
+            head.putLong(MAGIC).flip();
+            writeFully(out, head);
+
+            // bookings, one buffered segment at a time
+            final SegmentWriter writer = new SegmentWriter(out);
+            esql.streamReportQueryOnAllShards("SELECT bookingID, customerID, hotelID, roomNumber, " +
+                "bookingDate - DATE '1970-01-01' FROM RoomBookings", writer);
+            writer.flush();
+
+            // rooms, sorted by key so that lookups can binary search
+            long roomsOffset = out.position();
+            List < List < String >> rooms = esql.executeReportQueryOnAllShards(
+                "SELECT hotelID, roomNumber, price FROM Rooms");
+            Collections.sort(rooms, BY_INT_COLUMNS);
+            writeIntColumns(out, rooms, 3);
+
+            // hotels, with their names replaced by dictionary codes
+            long hotelsOffset = out.position();
+            List < List < String >> hotels = esql.executeReportQueryOnAllShards(
+                "SELECT hotelID, hotelName, COALESCE(dateEstablished - DATE '1970-01-01', 0) FROM Hotel");
+            Collections.sort(hotels, BY_INT_COLUMNS);
+            Map < String, Integer > codes = new HashMap < String, Integer > ();
+            List < String > dictionary = new ArrayList < String > ();
+            for (List < String > row: hotels) {
+                String name = row.get(1).trim();
+                Integer code = codes.get(name);
+                if (code == null) {
+                    code = dictionary.size();
+                    codes.put(name, code);
+                    dictionary.add(name);
+                }
+                row.set(1, String.valueOf(code));
+            }
+            writeIntColumns(out, hotels, 3);
+
+            long dictionaryOffset = out.position();
+            writeDictionary(out, dictionary);
+
+            ByteBuffer footer = little(FOOTER_BYTES);
+            footer.putLong(VERSION).putLong(writer.total).putLong(SEGMENT_ROWS)
+                .putLong(roomsOffset).putLong(hotelsOffset).putLong(dictionaryOffset).putLong(MAGIC).flip();
+            writeFully(out, footer);
+            return writer.total;
+        }
+    } //end export
+
+    /*
+     * Orders rows gathered from the shards by their first column, then their
+     * second, as integers; hotel names are never compared since hotelIDs are
+     * unique.
+     **/
+    private static final Comparator < List < String >> BY_INT_COLUMNS = new Comparator < List < String >> () {
+        public int compare(List < String > a, List < String > b) {
+            int c = Integer.compare(Integer.parseInt(a.get(0).trim()), Integer.parseInt(b.get(0).trim()));
+            return c != 0 ? c : Integer.compare(Integer.parseInt(a.get(1).trim()), Integer.parseInt(b.get(1).trim()));
+        }
+    };
+
+    /*
+     * Buffers bookings column by column and writes each full segment.
+     **/
+    private static class SegmentWriter implements RowHandler {
+        final FileChannel out;
+        final int[][] columns = new int[BOOKING_COLUMNS][SEGMENT_ROWS];
+        final ByteBuffer buffer = little(BOOKING_COLUMNS * SEGMENT_ROWS * 4);
+        int rows = 0;
+        long total = 0;
+
+        SegmentWriter(FileChannel out) {
+            this.out = out;
+        }
+
+        public void row(ResultSet rs) throws SQLException {
+            for (int c = 0; c < BOOKING_COLUMNS; c++)
+                columns[c][rows] = rs.getInt(c + 1);
+            if (++rows == SEGMENT_ROWS) {
+                try {
+                    flush();
+                } catch (IOException e) {
+                    throw new SQLException("Unable to write the snapshot: " + e.getMessage(), e);
+                }
+            }
+        }
+
+        void flush() throws IOException {
+            if (rows == 0)
+                return;
+            buffer.clear();
+            for (int c = 0; c < BOOKING_COLUMNS; c++)
+                buffer.asIntBuffer().position(c * rows).put(columns[c], 0, rows);
+            buffer.limit(BOOKING_COLUMNS * rows * 4);
+            writeFully(out, buffer);
+            total += rows;
+            rows = 0;
+        }
+    } //end SegmentWriter
+
+    private static void writeIntColumns(FileChannel out, List < List < String >> rows, int width) throws IOException {
+        ByteBuffer b = little(4 + width * rows.size() * 4);
+        b.putInt(rows.size());
+        for (int c = 0; c < width; c++)
+            for (List < String > row: rows)
+                b.putInt(Integer.parseInt(row.get(c).trim()));
+        b.flip();
+        writeFully(out, b);
+    }
+
+    private static void writeDictionary(FileChannel out, List < String > dictionary) throws IOException {
+        byte[][] bytes = new byte[dictionary.size()][];
+        int size = 0;
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = dictionary.get(i).getBytes(StandardCharsets.UTF_8);
+            size += bytes[i].length;
+        }
+        ByteBuffer b = little(4 + 4 * (bytes.length + 1) + size);
+        b.putInt(bytes.length);
+        int offset = 0;
+        for (byte[] s: bytes) {
+            b.putInt(offset);
+            offset += s.length;
+        }
+        b.putInt(offset);
+        for (byte[] s: bytes)
+            b.put(s);
+        b.flip();
+        writeFully(out, b);
+    }
+
+    /*================= READ ====================*/
+
+    /**
+     * Maps a snapshot file for reading.
+     *
+     * @throws java.io.IOException when the file cannot be read or is not a snapshot
+     */
+    public static BookingSnapshot open(File file) throws IOException {
+        try (FileChannel in = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = in.size();
+            if (size < 8 + FOOTER_BYTES)
+                throw new IOException("Not a booking snapshot: " + file);
+            ByteBuffer footer = in.map(FileChannel.MapMode.READ_ONLY, size - FOOTER_BYTES, FOOTER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            long version = footer.getLong();
+            long bookings = footer.getLong();
+            long segmentRows = footer.getLong();
+            long roomsOffset = footer.getLong();
+            long hotelsOffset = footer.getLong();
+            long dictionaryOffset = footer.getLong();
+            if (footer.getLong() != MAGIC || version != VERSION || segmentRows != SEGMENT_ROWS)
+                throw new IOException("Not a version " + VERSION + " booking snapshot: " + file);
+
+            // one mapping per segment keeps every mapping well under 2GB
+            int count = (int)((bookings + SEGMENT_ROWS - 1) / SEGMENT_ROWS);
+            Segment[] segments = new Segment[count];
+            long position = 8;
+            for (int i = 0; i < count; i++) {
+                int rows = (int) Math.min(SEGMENT_ROWS, bookings - (long) i * SEGMENT_ROWS);
+                long length = (long) BOOKING_COLUMNS * rows * 4;
+                MappedByteBuffer data = in.map(FileChannel.MapMode.READ_ONLY, position, length);
+                segments[i] = new Segment(data, rows);
+                position += length;
+            }
+
+            ByteBuffer rooms = in.map(FileChannel.MapMode.READ_ONLY, roomsOffset, hotelsOffset - roomsOffset).order(ByteOrder.LITTLE_ENDIAN);
+            int[][] r = readIntColumns(rooms, 3);
+            ByteBuffer hotels = in.map(FileChannel.MapMode.READ_ONLY, hotelsOffset, dictionaryOffset - hotelsOffset).order(ByteOrder.LITTLE_ENDIAN);
+            int[][] h = readIntColumns(hotels, 3);
+            ByteBuffer dictionary = in.map(FileChannel.MapMode.READ_ONLY, dictionaryOffset, size - FOOTER_BYTES - dictionaryOffset).order(ByteOrder.LITTLE_ENDIAN);
+            String[] names = readDictionary(dictionary);
+            return new BookingSnapshot(segments, bookings, r[0], r[1], r[2], h[0], h[1], h[2], names);
+        }
+    } //end open
+
+    private static int[][] readIntColumns(ByteBuffer b, int width) {
+        int n = b.getInt();
+        int[][] columns = new int[width][n];
+        IntBuffer ints = b.asIntBuffer();
+        for (int c = 0; c < width; c++)
+            ints.get(columns[c]);
+        return columns;
+    }
+
+    private static String[] readDictionary(ByteBuffer b) {
+        int n = b.getInt();
+        int[] offsets = new int[n + 1];
+        for (int i = 0; i <= n; i++)
+            offsets[i] = b.getInt();
+        int base = b.position();
+        String[] names = new String[n];
+        for (int i = 0; i < n; i++) {
+            byte[] s = new byte[offsets[i + 1] - offsets[i]];
+            b.get(base + offsets[i], s);
+            names[i] = new String(s, StandardCharsets.UTF_8);
+        }
+        return names;
+    }
+
+    public long bookingCount() {
+        return bookings;
+    }
+
+    public int roomCount() {
+        return roomNumbers.length;
+    }
+
+    public int hotelCount() {
+        return hotelIDs.length;
+    }
+
+    public int roomHotelID(int room) {
+        return roomHotelIDs[room];
+    }
+
+    public int roomNumber(int room) {
+        return roomNumbers[room];
+    }
+
+    public int roomPrice(int room) {
+        return roomPrices[room];
+    }
+
+    public int hotelID(int hotel) {
+        return hotelIDs[hotel];
+    }
+
+    public String hotelName(int hotel) {
+        return names[hotelNameCodes[hotel]];
+    }
+
+    public LocalDate hotelEstablished(int hotel) {
+        return LocalDate.ofEpochDay(hotelEstablished[hotel]);
+    }
+
+    /**
+     * @return the index of a room, or -1 if the snapshot has no such room
+     */
+    public int roomIndex(int hotelID, int roomNumber) {
+        int i = Arrays.binarySearch(roomKeys, key(hotelID, roomNumber));
+        return i < 0 ? -1 : i;
+    }
+
+    /**
+     * @return the index of a hotel, or -1 if the snapshot has no such hotel
+     */
+    public int hotelIndex(int hotelID) {
+        int i = Arrays.binarySearch(hotelIDs, hotelID);
+        return i < 0 ? -1 : i;
+    }
+
+    /*================= SCANS ====================*/
+
+    /**
+     * Runs a scan over every booking, in parallel on the common fork-join
+     * pool.
+     *
+     * @return the merged result of every task
+     */
+    public < R > R scan(Scan < R > scan) {
+        if (segments.length == 0)
+            return scan.newResult();
+        return ForkJoinPool.commonPool().invoke(new ScanTask < R > (scan, 0, segments.length));
+    }
+
+    private class ScanTask < R > extends RecursiveTask < R > {
+        private static final long serialVersionUID = 1L;
+
+        final Scan < R > scan;
+        final int from;
+        final int to;
+
+        ScanTask(Scan < R > scan, int from, int to) {
+            this.scan = scan;
+            this.from = from;
+            this.to = to;
+        }
+
+        protected R compute() {
+            if (to - from == 1) {
+                R result = scan.newResult();
+                scan.scan(segments[from], result);
+                return result;
+            }
+            int mid = (from + to) >>> 1;
+            ScanTask < R > left = new ScanTask < R > (scan, from, mid);
+            left.fork();
+            R right = new ScanTask < R > (scan, mid, to).compute();
+            return scan.merge(left.join(), right);
+        }
+    } //end ScanTask
+
+    /**
+     * @return the indexes of the rooms that have never been booked
+     */
+    public int[] unbookedRooms() {
+        BitSet booked = scan(new Scan < BitSet > () {
+            public BitSet newResult() {
+                return new BitSet(roomKeys.length);
+            }
+            public void scan(Segment s, BitSet result) {
+                // bookings of one room tend to sit together; skip the lookup for repeats
+                int lastHotel = Integer.MIN_VALUE;
+                int lastRoom = Integer.MIN_VALUE;
+                for (int i = 0; i < s.rows; i++) {
+                    int hotel = s.hotelID.get(i);
+                    int room = s.roomNumber.get(i);
+                    if (hotel == lastHotel && room == lastRoom)
+                        continue;
+                    lastHotel = hotel;
+                    lastRoom = room;
+                    int index = roomIndex(hotel, room);
+                    if (index >= 0)
+                        result.set(index);
+                }
+            }
+            public BitSet merge(BitSet a, BitSet b) {
+                a.or(b);
+                return a;
+            }
+        });
+        int[] unbooked = new int[roomKeys.length - booked.cardinality()];
+        int n = 0;
+        for (int i = booked.nextClearBit(0); i < roomKeys.length; i = booked.nextClearBit(i + 1))
+            unbooked[n++] = i;
+        return unbooked;
+    } //end unbookedRooms
+
+    /**
+     * @return booked nights and revenue (at current prices) per hotel, as
+     * [0][hotel] and [1][hotel] for the hotel indexes
+     */
+    public long[][] nightsAndRevenueByHotel() {
+        final int hotels = hotelIDs.length;
+        return scan(new Scan < long[][] > () {
+            public long[][] newResult() {
+                return new long[2][hotels];
+            }
+            public void scan(Segment s, long[][] result) {
+                for (int i = 0; i < s.rows; i++) {
+                    int hotel = hotelIndex(s.hotelID.get(i));
+                    int room = roomIndex(s.hotelID.get(i), s.roomNumber.get(i));
+                    if (hotel < 0)
+                        continue;
+                    result[0][hotel]++;
+                    if (room >= 0)
+                        result[1][hotel] += roomPrices[room];
+                }
+            }
+            public long[][] merge(long[][] a, long[][] b) {
+                for (int i = 0; i < hotels; i++) {
+                    a[0][i] += b[0][i];
+                    a[1][i] += b[1][i];
+                }
+                return a;
+            }
+        });
+    } //end nightsAndRevenueByHotel
+
+    /**
+     * @return booked nights per day of the week, Monday first
+     */
+    public long[] nightsByWeekday() {
+        return scan(new Scan < long[] > () {
+            public long[] newResult() {
+                return new long[7];
+            }
+            public void scan(Segment s, long[] result) {
+                // 1970-01-01 was a Thursday
+                for (int i = 0; i < s.rows; i++)
+                    result[Math.floorMod(s.bookingDate.get(i) + 3, 7)]++;
+            }
+            public long[] merge(long[] a, long[] b) {
+                for (int i = 0; i < a.length; i++)
+                    a[i] += b[i];
+                return a;
+            }
+        });
+    } //end nightsByWeekday
+
+    /**
+     * @return booked nights per calendar month, as [year - firstYear][month - 1]
+     * for the years from firstYear to lastYear
+     */
+    public long[][] nightsByMonth(final int firstYear, final int lastYear) {
+        final int from = (int) LocalDate.of(firstYear, 1, 1).toEpochDay();
+        final int to = (int) LocalDate.of(lastYear + 1, 1, 1).toEpochDay();
+        return scan(new Scan < long[][] > () {
+            public long[][] newResult() {
+                return new long[lastYear - firstYear + 1][12];
+            }
+            public void scan(Segment s, long[][] result) {
+                for (int i = 0; i < s.rows; i++) {
+                    int day = s.bookingDate.get(i);
+                    if (day < from || day >= to)
+                        continue;
+                    LocalDate d = LocalDate.ofEpochDay(day);
+                    result[d.getYear() - firstYear][d.getMonthValue() - 1]++;
+                }
+            }
+            public long[][] merge(long[][] a, long[][] b) {
+                for (int y = 0; y < a.length; y++)
+                    for (int m = 0; m < 12; m++)
+                        a[y][m] += b[y][m];
+                return a;
+            }
+        });
+    } //end nightsByMonth
+
+    /*================= HELPERS ====================*/
+
+    static long key(int hotelID, int roomNumber) {
+        return ((long) hotelID << 32) | (roomNumber & 0xffffffffL);
+    }
+
+    private static ByteBuffer little(int capacity) {
+        return ByteBuffer.allocateDirect(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer b) throws IOException {
+        while (b.hasRemaining())
+            out.write(b);
+    }
+
+    /**
+     * The main execution method
+     *
+     * @param args export <file> <dbname> <port> <user> [replicaDb replicaPort]... | report <file>
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length >= 5 && args[0].equals("export")) {
+            Class.forName("org.postgresql.Driver");
+            String[] replicas = Arrays.copyOfRange(args, 5, args.length);
+            Hotel esql = new Hotel(args[2], args[3], args[4], "", Hotel.DEFAULT_POOL_SIZE, replicas);
+            try {
+                long start = System.nanoTime();
+                long rows = export(esql, new File(args[1]));
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("Exported %d bookings to %s in %.1f s (%.0f rows/s)%n", rows, args[1], seconds, rows / seconds);
+            } finally {
+                esql.cleanup();
+            }
+        } else if (args.length == 2 && args[0].equals("report")) {
+            report(open(new File(args[1])));
+        } else {
+            System.err.println(
+                "Usage: " +
+                "java [-classpath <classpath>] " +
+                BookingSnapshot.class.getName() +
+                " export <file> <dbname> <port> <user> [replicaDb replicaPort]... | report <file>");
+        }
+    } //end main
+
+    private static void report(BookingSnapshot s) {
+        System.out.println(s.bookingCount() + " bookings, " + s.roomCount() + " rooms, " + s.hotelCount() + " hotels");
+
+        long start = System.nanoTime();
+        long[][] byHotel = s.nightsAndRevenueByHotel();
+        System.out.printf("%nNights and revenue by hotel (%.1f ms)%n", (System.nanoTime() - start) / 1e6);
+        for (int h = 0; h < s.hotelCount(); h++)
+            System.out.printf("  %6d %-30s %10d nights %14d revenue%n", s.hotelID(h), s.hotelName(h), byHotel[0][h], byHotel[1][h]);
+
+        start = System.nanoTime();
+        long[] weekdays = s.nightsByWeekday();
+        System.out.printf("%nNights by day of the week (%.1f ms)%n", (System.nanoTime() - start) / 1e6);
+        String[] days = {"Mon", "Tue", "Wed", "Thu", "Fri", "Sat", "Sun"};
+        for (int d = 0; d < 7; d++)
+            System.out.printf("  %s %12d%n", days[d], weekdays[d]);
+
+        start = System.nanoTime();
+        int[] unbooked = s.unbookedRooms();
+        System.out.printf("%nRooms never booked: %d of %d (%.1f ms)%n", unbooked.length, s.roomCount(), (System.nanoTime() - start) / 1e6);
+        for (int i = 0; i < Math.min(20, unbooked.length); i++)
+            System.out.printf("  hotel %d room %d%n", s.roomHotelID(unbooked[i]), s.roomNumber(unbooked[i]));
+        if (unbooked.length > 20)
+            System.out.println("  ...");
+    } //end report
+
+} //end BookingSnapshot
@@ -0,0 +1,472 @@
+package hotel;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+
+
+/**
+ * Loads the CSV files of data/ into a freshly created schema through the
+ * client-side COPY protocol, so the files do not have to be copied into the
+ * server's data directory first.
+ *
+ * Each table is streamed through its own COPY on its own connection, all
+ * tables at the same time: the foreign keys are dropped for the load and
+ * added back afterwards, which checks them in one pass per key instead of
+ * once per row, and frees the tables from having to load in key order.
+ * Lines are read in batches and rewritten by a pool of parser threads, which
+ * turn the M/d/yyyy dates of the CSVs into ISO dates so the load does not
+ * depend on the server's DateStyle; the batches are written to COPY in file
+ * order.  Secondary indexes and triggers are likewise created after the data
+ * is in, and every serial sequence is moved past the largest loaded key.
+ *
+ */
+public class BulkLoader {
+
+    // lines handed to a parser thread at a time
+    public static final int BATCH_LINES = 8192;
+
+    /**
+     * One CSV file and the table it fills.
+     */
+    static class Table {
+        final String name;
+        final String file;
+        final String[] dateColumns; // columns written M/d/yyyy in the file
+
+        Table(String name, String file, String...dateColumns) {
+            this.name = name;
+            this.file = file;
+            this.dateColumns = dateColumns;
+        }
+    } //end Table
+
+    static final Table[] TABLES = {
+        new Table("Users", "users.csv"),
+        new Table("MaintenanceCompany", "company.csv"),
+        new Table("Hotel", "hotels.csv", "dateEstablished"),
+        new Table("Rooms", "rooms.csv"),
+        new Table("RoomBookings", "bookings.csv", "bookingDate"),
+        new Table("RoomRepairs", "roomRepairs.csv", "repairDate"),
+        new Table("RoomRepairRequests", "roomRepairRequests.csv"),
+        new Table("RoomUpdatesLog", "roomUpdatesLog.csv")
+    };
+
+    private final ConnectionPool pool;
+    private final File dataDir;
+    private final int threads;
+    private final ExecutorService parsers;
+
+    /**
+     * @param pool where the connections come from; one is used per table being loaded
+     * @param dataDir the directory holding the CSV files
+     * @param threads the number of parser threads
+     */
+    public BulkLoader(ConnectionPool pool, File dataDir, int threads) {
+        this.pool = pool;
+        this.dataDir = dataDir;
+        this.threads = threads;
+        this.parsers = Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Loads every table at once.  Run it between dropForeignKeys() and
+     * addForeignKeys().
+     *
+     * @return the number of rows loaded per table, in load order
+     * @throws java.sql.SQLException when a COPY fails
+     * @throws java.io.IOException when a file cannot be read
+     */
+    public Map < String, Long > loadAll() throws SQLException, IOException {
+        ExecutorService loaders = Executors.newFixedThreadPool(TABLES.length);
+        Map < String, CompletableFuture < Long >> loads = new LinkedHashMap < String, CompletableFuture < Long >> ();
+        try {
+            for (final Table t: TABLES) {
+                loads.put(t.name, CompletableFuture.supplyAsync(() -> {
+                    try {
+                        return load(t);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    } catch (SQLException e) {
+                        throw new CompletionException(e);
+                    }
+                }, loaders));
+            }
+
+            Map < String, Long > rows = new LinkedHashMap < String, Long > ();
+            for (Map.Entry < String, CompletableFuture < Long >> e: loads.entrySet())
+                rows.put(e.getKey(), e.getValue().join());
+            return rows;
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException)
+                throw (SQLException) cause;
+            if (cause instanceof UncheckedIOException)
+                throw ((UncheckedIOException) cause).getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            throw e;
+        } finally {
+            loaders.shutdownNow();
+        }
+    } //end loadAll
+
+    /**
+     * Streams one CSV file into its table.  The file's columns are the
+     * table's first columns in table order, as for load_data.sql; columns
+     * added after them take their defaults.  The header is only used to count
+     * the columns and find the date columns.
+     *
+     * @return the number of rows copied
+     */
+    long load(Table t) throws SQLException, IOException {
+        long start = System.nanoTime();
+        File file = new File(dataDir, t.file);
+        BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8);
+        ConnectionPool.PooledConnection conn = null;
+        CopyIn copy = null;
+        try {
+            String header = reader.readLine();
+            if (header == null)
+                throw new IOException(file + " is empty");
+            final int[] dates = columnIndexes(header, t.dateColumns, file);
+
+            conn = pool.acquire();
+            copy = conn.getConnection().unwrap(PGConnection.class).getCopyAPI()
+                .copyIn("COPY " + t.name + " (" + leadingColumns(conn, t.name, header.split(",").length) + ") FROM STDIN WITH (FORMAT csv)");
+
+            // batches being parsed, written to COPY in the order they were read
+            ArrayDeque < Future < byte[] >> pending = new ArrayDeque < Future < byte[] >> ();
+            int lineNumber = 2;
+            while (true) {
+                final List < String > lines = new ArrayList < String > (BATCH_LINES);
+                String line;
+                while (lines.size() < BATCH_LINES && (line = reader.readLine()) != null)
+                    lines.add(line);
+                if (lines.isEmpty())
+                    break;
+                final int firstLine = lineNumber;
+                lineNumber += lines.size();
+                pending.add(parsers.submit(() -> normalize(lines, dates, t.file, firstLine)));
+                if (pending.size() > 2 * threads)
+                    write(copy, pending.poll());
+            }
+            while (!pending.isEmpty())
+                write(copy, pending.poll());
+            long rows = copy.endCopy();
+            copy = null;
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%-20s %10d rows in %7.2f s (%.0f rows/s)%n", t.name, rows, seconds, rows / seconds);
+            return rows;
+        } finally {
+            if (copy != null && copy.isActive())
+                copy.cancelCopy();
+            pool.release(conn);
+            reader.close();
+        }
+    } //end load
+
+    private static void write(CopyIn copy, Future < byte[] > batch) throws SQLException, IOException {
+        byte[] bytes;
+        try {
+            bytes = batch.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while parsing");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IllegalArgumentException)
+                throw (IllegalArgumentException) e.getCause();
+            throw new IOException(e.getCause());
+        }
+        copy.writeToCopy(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Rewrites the date columns of a batch of CSV lines from M/d/yyyy to
+     * yyyy-mm-dd; other columns are passed through untouched.
+     *
+     * @return the batch as COPY input, one line per row
+     * @throws IllegalArgumentException when a date cannot be read
+     */
+    static byte[] normalize(List < String > lines, int[] dates, String file, int firstLine) {
+        StringBuilder out = new StringBuilder(lines.size() * 48);
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (dates.length == 0 || line.isEmpty()) {
+                out.append(line).append('\n');
+                continue;
+            }
+            int column = 0;
+            int start = 0;
+            boolean quoted = false;
+            for (int p = 0; p <= line.length(); p++) {
+                char c = p < line.length() ? line.charAt(p) : ',';
+                if (c == '"') {
+                    quoted = !quoted;
+                } else if (c == ',' && !quoted) {
+                    if (isDateColumn(dates, column)) {
+                        try {
+                            out.append(isoDate(line.substring(start, p)));
+                        } catch (RuntimeException e) {
+                            throw new IllegalArgumentException(file + " line " + (firstLine + i) + ": invalid date '" + line.substring(start, p) + "'");
+                        }
+                    } else {
+                        out.append(line, start, p);
+                    }
+                    if (p < line.length())
+                        out.append(',');
+                    column++;
+                    start = p + 1;
+                }
+            }
+            out.append('\n');
+        }
+        return out.toString().getBytes(StandardCharsets.UTF_8);
+    } //end normalize
+
+    /**
+     * @return the date as yyyy-mm-dd; an empty field stays empty (NULL)
+     */
+    static String isoDate(String field) {
+        String s = field.trim();
+        if (s.length() > 1 && s.charAt(0) == '"')
+            s = s.substring(1, s.length() - 1).trim();
+        if (s.isEmpty())
+            return "";
+        if (s.indexOf('-') > 0)
+            return LocalDate.parse(s).toString();
+        int a = s.indexOf('/');
+        int b = s.indexOf('/', a + 1);
+        if (a < 0 || b < 0)
+            throw new IllegalArgumentException(s);
+        int month = Integer.parseInt(s, 0, a, 10);
+        int day = Integer.parseInt(s, a + 1, b, 10);
+        int year = Integer.parseInt(s, b + 1, s.length(), 10);
+        return LocalDate.of(year, month, day).toString();
+    } //end isoDate
+
+    private static boolean isDateColumn(int[] dates, int column) {
+        for (int d: dates)
+            if (d == column)
+                return true;
+        return false;
+    }
+
+    private static int[] columnIndexes(String header, String[] names, File file) throws IOException {
+        List < String > columns = new ArrayList < String > ();
+        for (String c: header.split(","))
+            columns.add(c.trim().toLowerCase(Locale.ROOT));
+        int[] indexes = new int[names.length];
+        for (int i = 0; i < names.length; i++) {
+            indexes[i] = columns.indexOf(names[i].toLowerCase(Locale.ROOT));
+            if (indexes[i] < 0)
+                throw new IOException(file + " has no column " + names[i]);
+        }
+        return indexes;
+    }
+
+    /*
+     * The names of a table's first n columns, in table order, for a COPY
+     * column list.
+     **/
+    private static String leadingColumns(ConnectionPool.PooledConnection conn, String table, int n) throws SQLException {
+        PreparedStatement stmt = conn.prepare(
+            "SELECT string_agg(quote_ident(attname), ', ' ORDER BY attnum) FROM " +
+            "(SELECT attname, attnum FROM pg_attribute WHERE attrelid = CAST(? AS regclass) AND attnum > 0 AND NOT attisdropped " +
+            "ORDER BY attnum LIMIT ?) a");
+        stmt.setString(1, table);
+        stmt.setInt(2, n);
+        ResultSet rs = stmt.executeQuery();
+        try {
+            rs.next();
+            return rs.getString(1);
+        } finally {
+            rs.close();
+        }
+    }
+
+    /**
+     * Drops the foreign keys of the loaded tables.
+     *
+     * @return the dropped keys as (table, name, definition), for addForeignKeys()
+     */
+    public List < String[] > dropForeignKeys() throws SQLException {
+        List < String[] > keys = new ArrayList < String[] > ();
+        ConnectionPool.PooledConnection conn = pool.acquire();
+        try (Statement stmt = conn.getConnection().createStatement()) {
+            // keys of partitions are inherited from the partitioned table and go with it
+            ResultSet rs = stmt.executeQuery(
+                "SELECT conrelid::regclass::text, conname, pg_get_constraintdef(oid) FROM pg_constraint " +
+                "WHERE contype = 'f' AND conparentid = 0 AND connamespace = current_schema()::regnamespace");
+            while (rs.next())
+                if (loaded(rs.getString(1)))
+                    keys.add(new String[] {rs.getString(1), rs.getString(2), rs.getString(3)});
+            rs.close();
+            for (String[] k: keys)
+                stmt.execute("ALTER TABLE " + k[0] + " DROP CONSTRAINT " + k[1]);
+        } finally {
+            pool.release(conn);
+        }
+        return keys;
+    } //end dropForeignKeys
+
+    /**
+     * Adds back the keys dropped by dropForeignKeys(), checking the loaded rows.
+     *
+     * @throws java.sql.SQLException when a loaded row breaks a key
+     */
+    public void addForeignKeys(List < String[] > keys) throws SQLException {
+        long start = System.nanoTime();
+        ConnectionPool.PooledConnection conn = pool.acquire();
+        try (Statement stmt = conn.getConnection().createStatement()) {
+            for (String[] k: keys)
+                stmt.execute("ALTER TABLE " + k[0] + " ADD CONSTRAINT " + k[1] + " " + k[2]);
+        } finally {
+            pool.release(conn);
+        }
+        System.out.printf("%-20s in %7.2f s%n", keys.size() + " foreign keys", (System.nanoTime() - start) / 1e9);
+    } //end addForeignKeys
+
+    private static boolean loaded(String table) {
+        for (Table t: TABLES)
+            if (t.name.equalsIgnoreCase(table))
+                return true;
+        return false;
+    }
+
+    /**
+     * Moves every serial sequence of the loaded tables past the largest key
+     * loaded, so the next insert does not collide with a loaded row.
+     */
+    public void resetSequences() throws SQLException {
+        Map < String, String[] > serials = new HashMap < String, String[] > ();
+        ConnectionPool.PooledConnection conn = pool.acquire();
+        try (Statement stmt = conn.getConnection().createStatement()) {
+            ResultSet rs = stmt.executeQuery(
+                "SELECT table_name, column_name, pg_get_serial_sequence(table_name, column_name) FROM information_schema.columns " +
+                "WHERE table_schema = current_schema() AND column_default LIKE 'nextval(%'");
+            while (rs.next())
+                if (rs.getString(3) != null && loaded(rs.getString(1)))
+                    serials.put(rs.getString(3), new String[] {rs.getString(1), rs.getString(2)});
+            rs.close();
+
+            for (Map.Entry < String, String[] > e: serials.entrySet()) {
+                String table = e.getValue()[0];
+                String column = e.getValue()[1];
+                rs = stmt.executeQuery("SELECT setval('" + e.getKey() + "', COALESCE(MAX(" + column + "), 0) + 1, false) FROM " + table);
+                rs.next();
+                System.out.println(e.getKey() + " restarts at " + rs.getLong(1));
+                rs.close();
+            }
+        } finally {
+            pool.release(conn);
+        }
+    } //end resetSequences
+
+    /**
+     * Runs a script of SQL statements, such as create_indexes.sql.
+     */
+    public void runScript(File script) throws SQLException, IOException {
+        long start = System.nanoTime();
+        execute(new String(Files.readAllBytes(script.toPath()), StandardCharsets.UTF_8));
+        System.out.printf("%-20s in %7.2f s%n", script.getName(), (System.nanoTime() - start) / 1e9);
+    }
+
+    /**
+     * Runs one or more SQL statements that return no rows.
+     */
+    public void execute(String sql) throws SQLException {
+        ConnectionPool.PooledConnection conn = pool.acquire();
+        try (Statement stmt = conn.getConnection().createStatement()) {
+            stmt.execute(sql);
+        } finally {
+            pool.release(conn);
+        }
+    }
+
+    public void close() {
+        parsers.shutdownNow();
+    }
+
+    /**
+     * Recreates the schema, loads data/*.csv into it, and then creates the
+     * indexes and triggers, like sql/scripts/create_db.sh.
+     *
+     * @param args <dbname> <port> <user> <dataDir> <sqlDir> [threads]
+     */
+    public static void main(String[] args) {
+        if (args.length < 5) {
+            System.err.println(
+                "Usage: " +
+                "java [-classpath <classpath>] " +
+                BulkLoader.class.getName() +
+                " <dbname> <port> <user> <dataDir> <sqlDir> [threads]");
+            return;
+        } //end if
+
+        int threads = args.length > 5 ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+        File dataDir = new File(args[3]);
+        File sqlDir = new File(args[4]);
+        ConnectionPool pool = null;
+        BulkLoader loader = null;
+        try {
+            Class.forName("org.postgresql.Driver");
+            String url = "jdbc:postgresql://localhost:" + args[1] + "/" + args[0];
+            pool = new ConnectionPool(url, args[2], "", TABLES.length);
+            loader = new BulkLoader(pool, dataDir, threads);
+
+            long start = System.nanoTime();
+            loader.runScript(new File(sqlDir, "create_tables.sql"));
+            List < String[] > keys = loader.dropForeignKeys();
+            long loadStart = System.nanoTime();
+            long rows = 0;
+            for (long n: loader.loadAll().values())
+                rows += n;
+            double loadSeconds = (System.nanoTime() - loadStart) / 1e9;
+
+            // keys, indexes and triggers last: building them once beats maintaining them per row
+            loader.addForeignKeys(keys);
+            loader.resetSequences();
+            loader.runScript(new File(sqlDir, "create_indexes.sql"));
+            loader.runScript(new File(sqlDir, "triggers.sql"));
+            loader.execute("ANALYZE");
+
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("loaded %d rows in %.2f s (%.0f rows/s), %.2f s in total%n", rows, loadSeconds, rows / loadSeconds, seconds);
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+            System.exit(1);
+        } finally {
+            if (loader != null)
+                loader.close();
+            if (pool != null)
+                pool.close();
+        } //end try
+    } //end main
+
+} //end BulkLoader
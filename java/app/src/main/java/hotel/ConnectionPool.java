@@ -0,0 +1,216 @@
+package hotel;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * A small fixed-size pool of physical database connections.  Each pooled
+ * connection keeps its own cache of PreparedStatements keyed by SQL text, so
+ * a statement shape is parsed and planned once per connection and then only
+ * re-bound and re-executed.
+ *
+ */
+public class ConnectionPool {
+
+    // number of prepared statements kept open per connection
+    public static final int STATEMENT_CACHE_SIZE = 64;
+
+    // how long a waiting acquire() sleeps on the idle queue before it checks for a free slot again
+    static final long WAIT_SLICE_MILLIS = 50;
+
+    private final String url;
+    private final String user;
+    private final String passwd;
+    private final int maxSize;
+    private final BlockingQueue < PooledConnection > idle;
+    private final List < PooledConnection > all = new ArrayList < PooledConnection > ();
+    private boolean closed = false;
+
+    /**
+     * A physical connection together with its prepared statement cache.
+     * A PooledConnection is only ever used by the thread that acquired it.
+     */
+    public static class PooledConnection {
+        private final Connection connection;
+        private final Map < String, PreparedStatement > statements;
+
+        PooledConnection(Connection connection) {
+            this.connection = connection;
+            this.statements = new LinkedHashMap < String, PreparedStatement > (16, 0.75f, true) {
+                protected boolean removeEldestEntry(Map.Entry < String, PreparedStatement > eldest) {
+                    if (size() <= STATEMENT_CACHE_SIZE)
+                        return false;
+                    closeQuietly(eldest.getValue());
+                    return true;
+                }
+            };
+        }
+
+        /**
+         * @return the underlying JDBC connection
+         */
+        public Connection getConnection() {
+            return connection;
+        }
+
+        /**
+         * Returns the cached PreparedStatement for the given SQL, preparing it
+         * on first use.  The caller must not close the returned statement.
+         *
+         * @param sql the SQL text with '?' placeholders
+         * @return a prepared statement owned by this connection
+         * @throws java.sql.SQLException when the statement cannot be prepared
+         */
+        public PreparedStatement prepare(String sql) throws SQLException {
+            PreparedStatement stmt = statements.get(sql);
+            if (stmt == null) {
+                stmt = connection.prepareStatement(sql);
+                statements.put(sql, stmt);
+            } else {
+                stmt.clearParameters();
+            }
+            return stmt;
+        }
+
+        void close() {
+            for (Iterator < PreparedStatement > it = statements.values().iterator(); it.hasNext();) {
+                closeQuietly(it.next());
+                it.remove();
+            }
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                // ignored.
+            }
+        }
+    } //end PooledConnection
+
+    /**
+     * Creates a pool.  Connections are opened lazily, up to maxSize; the first
+     * one is opened immediately so that a bad URL or login fails fast.
+     *
+     * @param url the JDBC connection URL
+     * @param user the user name used to login to the database
+     * @param passwd the user login password
+     * @param maxSize the maximum number of physical connections
+     * @throws java.sql.SQLException when failed to make a connection
+     */
+    public ConnectionPool(String url, String user, String passwd, int maxSize) throws SQLException {
+        if (maxSize < 1)
+            throw new IllegalArgumentException("pool size must be positive: " + maxSize);
+        this.url = url;
+        this.user = user;
+        this.passwd = passwd;
+        this.maxSize = maxSize;
+        this.idle = new ArrayBlockingQueue < PooledConnection > (maxSize);
+        this.idle.add(open());
+    } //end ConnectionPool
+
+    /**
+     * Takes a connection from the pool, opening a new one if the pool has not
+     * reached its maximum size, otherwise waiting for one to be released.  A
+     * waiter looks again every WAIT_SLICE_MILLIS, so a slot freed by a broken
+     * connection that release() discarded, or a close(), is noticed even
+     * though nothing is handed back to the idle queue.
+     *
+     * @return a connection that must be given back with release()
+     * @throws java.sql.SQLException when failed to make a connection, or the pool is closed
+     */
+    public PooledConnection acquire() throws SQLException {
+        PooledConnection c = idle.poll();
+        if (c != null)
+            return c;
+        try {
+            while (true) {
+                synchronized(this) {
+                    if (closed)
+                        throw new SQLException("Connection pool is closed");
+                    if (all.size() < maxSize)
+                        return open();
+                }
+                c = idle.poll(WAIT_SLICE_MILLIS, TimeUnit.MILLISECONDS);
+                if (c != null)
+                    return c;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a connection");
+        }
+    } //end acquire
+
+    /**
+     * Gives a connection back to the pool.  A connection that was left in the
+     * middle of a transaction is rolled back first; one that was broken, e.g.
+     * by a server restart, is closed so the next acquire() opens a new one.
+     *
+     * @param c the connection obtained from acquire()
+     */
+    public void release(PooledConnection c) {
+        if (c == null)
+            return;
+        try {
+            if (c.connection.isClosed()) {
+                discard(c);
+                return;
+            }
+            if (!c.connection.getAutoCommit()) {
+                c.connection.rollback();
+                c.connection.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            discard(c);
+            return;
+        }
+        synchronized(this) {
+            if (closed) {
+                c.close();
+                return;
+            }
+            idle.offer(c); // under the lock, so close() cannot clear the queue before it
+        }
+    } //end release
+
+    /**
+     * Closes every connection owned by the pool.
+     */
+    public synchronized void close() {
+        closed = true;
+        for (PooledConnection c: all)
+            c.close();
+        all.clear();
+        idle.clear();
+    } //end close
+
+    private synchronized PooledConnection open() throws SQLException {
+        PooledConnection c = new PooledConnection(DriverManager.getConnection(url, user, passwd));
+        all.add(c);
+        return c;
+    }
+
+    private synchronized void discard(PooledConnection c) {
+        all.remove(c);
+        c.close();
+    }
+
+    static void closeQuietly(AutoCloseable resource) {
+        if (resource == null)
+            return;
+        try {
+            resource.close();
+        } catch (Exception e) {
+            // ignored.
+        }
+    }
+
+} //end ConnectionPool
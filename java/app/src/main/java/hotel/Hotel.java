@@ -0,0 +1,1715 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+package hotel;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.io.File;
+import java.io.FileReader;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.lang.Math;
+import java.text.SimpleDateFormat;
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+
+/**
+ * This class defines a simple embedded SQL utility class that is designed to
+ * work with PostgreSQL JDBC drivers.
+ *
+ */
+public class Hotel {
+
+    // number of physical connections kept by the pool.
+    public static final int DEFAULT_POOL_SIZE = 4;
+
+    // statements slower than this are kept in the slow query log, unless -Dhotel.metrics.slowQueryMillis says otherwise
+    public static final long DEFAULT_SLOW_QUERY_MILLIS = 100;
+
+    // pool of physical database connections, each with its own statement cache.
+    private ConnectionPool _pool = null;
+
+    // proximity index over the Hotel table, built on first use
+    private HotelLocator _locator = null;
+
+    // booked-room bitsets per hotel and night, kept in step with bookRoom
+    private final AvailabilityCache _availability = new AvailabilityCache(this);
+
+    // latency of every operation and statement; see Metrics
+    private final Metrics _metrics = new Metrics(Long.getLong("hotel.metrics.slowQueryMillis", DEFAULT_SLOW_QUERY_MILLIS));
+
+    // hotels run by each manager who logged in, shared by that manager's sessions
+    private final ConcurrentHashMap < Integer, ManagedHotels > _managers = new ConcurrentHashMap < Integer, ManagedHotels > ();
+
+    // RoomUpdatesLog rows, written in batches behind the updates
+    private final RoomUpdateLogger _updateLog = new RoomUpdateLogger(this);
+
+    // how long a manager's report of recent updates waits for queued log rows
+    static final long UPDATE_LOG_FLUSH_MILLIS = 2000;
+
+    // bookingIDs and repairIDs numbered on the client by the batched inserts
+    private final SequenceBlocks _bookingIDs = new SequenceBlocks(this, "RoomBookings", "bookingID",
+        Integer.getInteger("hotel.keys.blockSize", SequenceBlocks.DEFAULT_BLOCK_SIZE));
+    private final SequenceBlocks _repairIDs = new SequenceBlocks(this, "RoomRepairs", "repairID",
+        Integer.getInteger("hotel.keys.blockSize", SequenceBlocks.DEFAULT_BLOCK_SIZE));
+
+    // lets one booking attempt per room-night through at a time, unless -Dhotel.booking.coordinate=false
+    private final ReservationCoordinator _reservations =
+        Boolean.parseBoolean(System.getProperty("hotel.booking.coordinate", "true")) ? new ReservationCoordinator() : null;
+
+    // read replicas for the report queries, or null when there are none
+    private ReplicaRouter _replicas = null;
+
+    // hotels, rooms with prices and maintenance companies, for validation without a query
+    private final ReferenceData _reference = new ReferenceData(this);
+
+    // the databases the hotels are spread over; a single shard when not sharded
+    private ShardRouter _shards = null;
+
+    // drop cached state that other sessions changed, one per shard, see triggers.sql
+    private NotificationListener[] _listeners = new NotificationListener[0];
+
+    // how long startup waits for the notification connection before warming the caches
+    static final long LISTEN_WAIT_MILLIS = 5000;
+
+    /**
+     * Creates a new instance of Hotel 
+     *
+     * @param hostname the MySQL or PostgreSQL server hostname
+     * @param database the name of the database
+     * @param username the user name used to login to the database
+     * @param password the user login password
+     * @throws java.sql.SQLException when failed to make a connection.
+     */
+    public Hotel(String dbname, String dbport, String user, String passwd) throws SQLException {
+        this(dbname, dbport, user, passwd, DEFAULT_POOL_SIZE);
+    } //end Hotel
+
+    /**
+     * Creates a new instance of Hotel with the given number of pooled
+     * connections, for callers that serve many users at once.
+     *
+     * @param poolSize the maximum number of physical connections
+     * @throws java.sql.SQLException when failed to make a connection.
+     */
+    public Hotel(String dbname, String dbport, String user, String passwd, int poolSize) throws SQLException {
+        this(dbname, dbport, user, passwd, poolSize, new String[0]);
+    } //end Hotel
+
+    /**
+     * Creates a new instance of Hotel that runs its report queries on read
+     * replicas.  Replicas further behind the primary than
+     * -Dhotel.replica.maxLagMillis (default 5000) are passed over.
+     * The hotels are spread over the given database and the ones listed in
+     * -Dhotel.shards=dbname:port,... (default none), see ShardRouter; the
+     * replicas serve the given database's hotels.
+     *
+     * @param replicas the replicas' database names and ports, alternating
+     * @throws java.sql.SQLException when failed to make a connection.
+     */
+    public Hotel(String dbname, String dbport, String user, String passwd, int poolSize, String... replicas) throws SQLException {
+
+        System.out.print("Connecting to database...");
+        try {
+            // constructs the connection URL
+            String url = "jdbc:postgresql://localhost:" + dbport + "/" + dbname;
+            System.out.println("Connection URL: " + url + "\n");
+
+            // obtain the pool of physical connections
+            this._pool = new ConnectionPool(url, user, passwd, poolSize);
+            System.out.println("Done");
+
+            List < String > shardUrls = new ArrayList < String > ();
+            for (String shard: System.getProperty("hotel.shards", "").split(",")) {
+                shard = shard.trim();
+                if (shard.isEmpty())
+                    continue;
+                int colon = shard.lastIndexOf(':');
+                if (colon < 0)
+                    throw new IllegalArgumentException("Shards are given as dbname:port, not " + shard);
+                shardUrls.add("jdbc:postgresql://localhost:" + shard.substring(colon + 1) + "/" + shard.substring(0, colon));
+            }
+            this._shards = new ShardRouter(this._pool, url, shardUrls, user, passwd, poolSize);
+            for (int i = 1; i < this._shards.size(); i++)
+                System.out.println("Shard " + i + ": " + this._shards.url(i));
+            // companies added to the home database since the shards were loaded
+            copyCompanies();
+
+            if (replicas.length > 0) {
+                List < String > urls = new ArrayList < String > ();
+                for (int i = 0; i + 1 < replicas.length; i += 2)
+                    urls.add("jdbc:postgresql://localhost:" + replicas[i + 1] + "/" + replicas[i]);
+                this._replicas = new ReplicaRouter(urls, user, passwd, poolSize,
+                    Long.getLong("hotel.replica.maxLagMillis", ReplicaRouter.DEFAULT_MAX_LAG_MILLIS));
+                this._replicas.start();
+                for (ReplicaRouter.Replica r: this._replicas.getReplicas())
+                    System.out.println("Replica " + r);
+            }
+
+            // a manager's hotels are reloaded whenever Hotel.managerUserID changes for them
+            NotificationListener.Handler managers = new NotificationListener.Handler() {
+                public void received(String payload) {
+                    ManagedHotels m = _managers.get(Integer.parseInt(payload.trim()));
+                    if (m != null)
+                        m.invalidate();
+                }
+                public void reset() {
+                    for (ManagedHotels m: _managers.values())
+                        m.invalidate();
+                }
+            };
+            // reference data is dropped per table, or per hotel for Rooms
+            NotificationListener.Handler hotels = new NotificationListener.Handler() {
+                public void received(String payload) {
+                    _reference.invalidateHotels();
+                    dropHotelLocator();
+                }
+                public void reset() {
+                    _reference.invalidateHotels();
+                    dropHotelLocator();
+                }
+            };
+            NotificationListener.Handler rooms = new NotificationListener.Handler() {
+                public void received(String payload) {
+                    _reference.invalidateRooms(Integer.parseInt(payload.trim()));
+                }
+                public void reset() {
+                    _reference.invalidateHotels();
+                }
+            };
+            NotificationListener.Handler companies = new NotificationListener.Handler() {
+                public void received(String payload) {
+                    _reference.invalidateCompanies();
+                }
+                public void reset() {
+                    _reference.invalidateCompanies();
+                }
+            };
+            // every shard announces changes to its own hotels; companies are only changed at home
+            this._listeners = new NotificationListener[this._shards.size()];
+            for (int i = 0; i < this._listeners.length; i++) {
+                this._listeners[i] = new NotificationListener(this._shards.url(i), user, passwd);
+                this._listeners[i].listen("hotel_managers", managers);
+                this._listeners[i].listen("hotels", hotels);
+                this._listeners[i].listen("rooms", rooms);
+                if (i == 0)
+                    this._listeners[i].listen("maintenance_companies", companies);
+                this._listeners[i].start();
+            }
+            boolean listening = true;
+            for (NotificationListener listener: this._listeners)
+                listening &= listener.awaitListening(LISTEN_WAIT_MILLIS);
+            if (listening)
+                this._reference.warm();
+            else
+                System.err.println("Not receiving change notifications yet; validation queries the database");
+
+            // metrics are readable over JMX, and dumped every N seconds with -Dhotel.metrics.dumpSeconds=N
+            this._metrics.register();
+            long dumpSeconds = Long.getLong("hotel.metrics.dumpSeconds", 0);
+            if (dumpSeconds > 0)
+                this._metrics.startDump(dumpSeconds, System.out);
+        } catch (Exception e) {
+            System.err.println("Error - Unable to Connect to Database: " + e.getMessage());
+            System.out.println("Make sure you started postgres on this machine");
+            System.exit(-1);
+        } //end catch
+    } //end Hotel
+
+    // Method to calculate euclidean distance between two latitude, longitude pairs. 
+    public static double calculateDistance(double lat1, double long1, double lat2, double long2) {
+        double t1 = (lat1 - lat2) * (lat1 - lat2);
+        double t2 = (long1 - long2) * (long1 - long2);
+        return Math.sqrt(t1 + t2);
+    }
+    /**
+     * Method to execute an update SQL statement.  Update SQL instructions
+     * includes CREATE, INSERT, UPDATE, DELETE, and DROP.
+     *
+     * @param sql the input SQL string, with '?' placeholders for the parameters
+     * @param params values bound to the placeholders, in order
+     * @return the number of rows affected
+     * @throws java.sql.SQLException when update failed
+     */
+    public int executeUpdate(String sql, Object... params) throws SQLException {
+        return update(this._pool, sql, params);
+    }
+
+    /**
+     * Executes an update SQL statement on the shard that holds a hotel.  All
+     * the rows it changes must belong to hotels on that shard.
+     *
+     * @param hotelID a hotel whose rows the statement changes
+     * @param sql the input SQL string, with '?' placeholders for the parameters
+     * @param params values bound to the placeholders, in order
+     * @return the number of rows affected
+     * @throws java.sql.SQLException when update failed
+     */
+    public int executeShardUpdate(int hotelID, String sql, Object... params) throws SQLException {
+        return update(this._shards.pool(hotelID), sql, params);
+    }
+
+    private int update(ConnectionPool pool, String sql, Object[] params) throws SQLException {
+        ConnectionPool.PooledConnection conn = pool.acquire();
+        long start = System.nanoTime();
+        try {
+            // fetches the cached statement and issues the update instruction
+            PreparedStatement stmt = prepare(conn, sql, params);
+            return stmt.executeUpdate();
+        } finally {
+            this._metrics.statement(sql, params, start);
+            pool.release(conn);
+        }
+    } //end update
+
+    /**
+     * Method to execute an input query SQL instruction (i.e. SELECT).  This
+     * method issues the query to the DBMS and outputs the results to
+     * standard out.
+     *
+     * @param query the input query string, with '?' placeholders for the parameters
+     * @param params values bound to the placeholders, in order
+     * @return the number of rows returned
+     * @throws java.sql.SQLException when failed to execute the query
+     */
+    public int executeQueryAndPrintResult(String query, Object... params) throws SQLException {
+        ConnectionPool.PooledConnection conn = this._pool.acquire();
+        long start = System.nanoTime();
+        ResultSet rs = null;
+        try {
+            // issues the query instruction
+            rs = prepare(conn, query, params).executeQuery();
+
+            /*
+             ** obtains the metadata object for the returned result set.  The metadata
+             ** contains row and column info.
+             */
+            ResultSetMetaData rsmd = rs.getMetaData();
+            int numCol = rsmd.getColumnCount();
+            int rowCount = 0;
+
+            // iterates through the result set and output them to standard out.
+            boolean outputHeader = true;
+            while (rs.next()) {
+                if (outputHeader) {
+                    for (int i = 1; i <= numCol; i++) {
+                        System.out.print(rsmd.getColumnName(i) + "\t");
+                    }
+                    System.out.println();
+                    outputHeader = false;
+                }
+                for (int i = 1; i <= numCol; ++i)
+                    System.out.print(rs.getString(i) + "\t");
+                System.out.println();
+                ++rowCount;
+            } //end while
+            return rowCount;
+        } finally {
+            ConnectionPool.closeQuietly(rs);
+            this._metrics.statement(query, params, start);
+            this._pool.release(conn);
+        }
+    } //end executeQuery
+
+    /**
+     * Method to execute an input query SQL instruction (i.e. SELECT).  This
+     * method issues the query to the DBMS and returns the results as
+     * a list of records. Each record in turn is a list of attribute values
+     *
+     * @param query the input query string, with '?' placeholders for the parameters
+     * @param params values bound to the placeholders, in order
+     * @return the query result as a list of records
+     * @throws java.sql.SQLException when failed to execute the query
+     */
+    public List < List < String >> executeQueryAndReturnResult(String query, Object... params) throws SQLException {
+        return queryAndReturnResult(this._pool, query, params);
+    }
+
+    /**
+     * Runs a query on the shard that holds a hotel, and returns the results
+     * as executeQueryAndReturnResult does.  Only that shard's rows are seen.
+     *
+     * @param hotelID the hotel the query is about
+     * @param query the input query string, with '?' placeholders for the parameters
+     * @param params values bound to the placeholders, in order
+     * @return the query result as a list of records
+     * @throws java.sql.SQLException when failed to execute the query
+     */
+    public List < List < String >> executeShardQuery(int hotelID, String query, Object... params) throws SQLException {
+        return queryAndReturnResult(this._shards.pool(hotelID), query, params);
+    }
+
+    /**
+     * Runs a query on every shard at once and returns all their rows, one
+     * shard after another.  Any ORDER BY or LIMIT holds within each shard's
+     * rows only; the caller merges them.
+     *
+     * @param query the input query string, with '?' placeholders for the parameters
+     * @param params values bound to the placeholders, in order
+     * @return the query result as a list of records
+     * @throws java.sql.SQLException when failed to execute the query on any shard
+     */
+    public List < List < String >> executeQueryOnAllShards(final String query, final Object... params) throws SQLException {
+        return concat(this._shards.scatter(new ShardRouter.ShardTask < List < List < String >>> () {
+            public List < List < String >> run(int shard, ConnectionPool pool) throws SQLException {
+                return queryAndReturnResult(pool, query, params);
+            }
+        }));
+    }
+
+    private static List < List < String >> concat(List < List < List < String >>> parts) {
+        if (parts.size() == 1)
+            return parts.get(0);
+        List < List < String >> result = new ArrayList < List < String >> ();
+        for (List < List < String >> part: parts)
+            result.addAll(part);
+        return result;
+    }
+
+    private List < List < String >> queryAndReturnResult(ConnectionPool pool, String query, Object[] params) throws SQLException {
+        ConnectionPool.PooledConnection conn = pool.acquire();
+        long start = System.nanoTime();
+        ResultSet rs = null;
+        try {
+            // issues the query instruction
+            rs = prepare(conn, query, params).executeQuery();
+
+            /*
+             ** obtains the metadata object for the returned result set.  The metadata
+             ** contains row and column info.
+             */
+            ResultSetMetaData rsmd = rs.getMetaData();
+            int numCol = rsmd.getColumnCount();
+
+            // iterates through the result set and saves the data returned by the query.
+            List < List < String >> result = new ArrayList < List < String >> ();
+            while (rs.next()) {
+                List < String > record = new ArrayList < String > (numCol);
+                for (int i = 1; i <= numCol; ++i)
+                    record.add(rs.getString(i));
+                result.add(record);
+            } //end while
+            return result;
+        } finally {
+            ConnectionPool.closeQuietly(rs);
+            this._metrics.statement(query, params, start);
+            pool.release(conn);
+        }
+    } //end queryAndReturnResult
+
+    /**
+     * Method to execute an input query SQL instruction (i.e. SELECT).  This
+     * method issues the query to the DBMS and returns the number of results
+     *
+     * @param query the input query string, with '?' placeholders for the parameters
+     * @param params values bound to the placeholders, in order
+     * @return the number of rows returned
+     * @throws java.sql.SQLException when failed to execute the query
+     */
+    public int executeQuery(String query, Object... params) throws SQLException {
+        ConnectionPool.PooledConnection conn = this._pool.acquire();
+        long start = System.nanoTime();
+        ResultSet rs = null;
+        try {
+            // issues the query instruction
+            rs = prepare(conn, query, params).executeQuery();
+
+            int rowCount = 0;
+
+            // iterates through the result set and count nuber of results.
+            while (rs.next()) {
+                rowCount++;
+            } //end while
+            return rowCount;
+        } finally {
+            ConnectionPool.closeQuietly(rs);
+            this._metrics.statement(query, params, start);
+            this._pool.release(conn);
+        }
+    }
+
+    /**
+     * Method to fetch the last value from sequence. This
+     * method issues the query to the DBMS and returns the current
+     * value of sequence used for autogenerated keys.  currval() is per
+     * session, so this is only meaningful on the pooled connection that last
+     * called nextval() on the sequence.
+     *
+     * @param sequence name of the DB sequence
+     * @return current value of a sequence
+     * @throws java.sql.SQLException when failed to execute the query
+     * @deprecated a pooled connection is rarely the one that inserted the
+     * row; add RETURNING to the insert and read the key with queryForInt
+     */
+    @Deprecated
+    public int getCurrSeqVal(String sequence) throws SQLException {
+        return queryForInt("SELECT currval(CAST(? AS regclass))", sequence);
+    }
+
+    /**
+     * Method to execute a statement that returns a single integer, such as
+     * an INSERT ... RETURNING of a generated key, so the key arrives in the
+     * same round trip as the insert.
+     *
+     * @param sql the input SQL string, with '?' placeholders for the parameters
+     * @param params values bound to the placeholders, in order
+     * @return the integer in the first column of the first row, or -1 if no rows
+     * @throws java.sql.SQLException when failed to execute the query
+     */
+    public int queryForInt(String sql, Object... params) throws SQLException {
+        return queryForInt(this._pool, sql, params);
+    }
+
+    private int queryForInt(ConnectionPool pool, String sql, Object[] params) throws SQLException {
+        ConnectionPool.PooledConnection conn = pool.acquire();
+        long start = System.nanoTime();
+        ResultSet rs = null;
+        try {
+            rs = prepare(conn, sql, params).executeQuery();
+            if (rs.next())
+                return rs.getInt(1);
+            return -1;
+        } finally {
+            ConnectionPool.closeQuietly(rs);
+            this._metrics.statement(sql, params, start);
+            pool.release(conn);
+        }
+    } //end queryForInt
+
+    // rows fetched per round trip by streamQuery
+    public static final int STREAM_FETCH_SIZE = 1000;
+
+    /**
+     * Method to execute an input query SQL instruction (i.e. SELECT) and hand
+     * each row to a callback as it arrives.  The query runs inside a
+     * transaction with a fetch size, so the driver reads the result through a
+     * server-side cursor STREAM_FETCH_SIZE rows at a time and memory use does
+     * not grow with the number of rows.
+     *
+     * @param query the input query string, with '?' placeholders for the parameters
+     * @param handler called once per row, in order
+     * @param params values bound to the placeholders, in order
+     * @return the number of rows returned
+     * @throws java.sql.SQLException when failed to execute the query
+     */
+    public long streamQuery(String query, RowHandler handler, Object... params) throws SQLException {
+        return stream(this._pool, query, handler, params);
+    }
+
+    /**
+     * Streams a query from every shard, one shard after another, so the
+     * handler is never called concurrently and each shard's rows arrive
+     * together and in that shard's order.
+     *
+     * @param query the input query string, with '?' placeholders for the parameters
+     * @param handler called once per row
+     * @param params values bound to the placeholders, in order
+     * @return the number of rows returned by all the shards
+     * @throws java.sql.SQLException when failed to execute the query on any shard
+     */
+    public long streamQueryOnAllShards(String query, RowHandler handler, Object... params) throws SQLException {
+        long rows = 0;
+        for (int i = 0; i < this._shards.size(); i++)
+            rows += stream(this._shards.shard(i), query, handler, params);
+        return rows;
+    }
+
+    private long stream(ConnectionPool pool, String query, RowHandler handler, Object[] params) throws SQLException {
+        ConnectionPool.PooledConnection conn = pool.acquire();
+        long start = System.nanoTime();
+        ResultSet rs = null;
+        try {
+            // cursors only stay open inside a transaction
+            conn.getConnection().setAutoCommit(false);
+            PreparedStatement stmt = prepare(conn, query, params);
+            stmt.setFetchSize(STREAM_FETCH_SIZE);
+            rs = stmt.executeQuery();
+
+            long rowCount = 0;
+            while (rs.next()) {
+                handler.row(rs);
+                ++rowCount;
+            } //end while
+            rs.close();
+            conn.getConnection().commit();
+            return rowCount;
+        } finally {
+            ConnectionPool.closeQuietly(rs);
+            this._metrics.statement(query, params, start);
+            pool.release(conn);
+        }
+    } //end stream
+
+    /**
+     * Runs a read-only report query on a read replica, or on the primary when
+     * no replica is fresh enough.  A replica that fails the query is taken
+     * out of use and the query is run again on the primary.
+     *
+     * @param query the input query string, with '?' placeholders for the parameters
+     * @param params values bound to the placeholders, in order
+     * @return the query result as a list of records
+     * @throws java.sql.SQLException when failed to execute the query
+     */
+    public List < List < String >> executeReportQuery(String query, Object... params) throws SQLException {
+        return report(0, query, params);
+    }
+
+    /**
+     * Runs a read-only report query about one hotel on its shard, through the
+     * replicas when the hotel lives on the home database.
+     *
+     * @param hotelID the hotel the query is about
+     * @return the query result as a list of records
+     * @throws java.sql.SQLException when failed to execute the query
+     * @see #executeReportQuery
+     */
+    public List < List < String >> executeShardReportQuery(int hotelID, String query, Object... params) throws SQLException {
+        return report(this._shards.shardOf(hotelID), query, params);
+    }
+
+    /**
+     * Runs a read-only report query on every shard at once and returns all
+     * their rows, one shard after another.
+     *
+     * @return the query result as a list of records
+     * @throws java.sql.SQLException when failed to execute the query on any shard
+     * @see #executeQueryOnAllShards
+     */
+    public List < List < String >> executeReportQueryOnAllShards(final String query, final Object... params) throws SQLException {
+        return concat(this._shards.scatter(new ShardRouter.ShardTask < List < List < String >>> () {
+            public List < List < String >> run(int shard, ConnectionPool pool) throws SQLException {
+                return report(shard, query, params);
+            }
+        }));
+    }
+
+    /*
+     * The replicas only follow the home database; the other shards' reports
+     * run on their primaries.
+     **/
+    private List < List < String >> report(int shard, String query, Object[] params) throws SQLException {
+        ConnectionPool replica = this._replicas == null || shard != 0 ? null : this._replicas.pick();
+        if (replica != null) {
+            try {
+                return queryAndReturnResult(replica, query, params);
+            } catch (SQLException e) {
+                this._replicas.failed(replica);
+            }
+        }
+        return queryAndReturnResult(this._shards.shard(shard), query, params);
+    } //end report
+
+    /**
+     * Streams a read-only report query from a read replica, or from the
+     * primary when no replica is fresh enough.  A replica that fails before
+     * the first row is taken out of use and the query is run again on the
+     * primary; after that, rows have been handed on and the error is thrown.
+     *
+     * @param query the input query string, with '?' placeholders for the parameters
+     * @param handler called once per row, in order
+     * @param params values bound to the placeholders, in order
+     * @return the number of rows returned
+     * @throws java.sql.SQLException when failed to execute the query
+     */
+    public long streamReportQuery(String query, RowHandler handler, Object... params) throws SQLException {
+        return streamReport(0, query, handler, params);
+    }
+
+    /**
+     * Streams a read-only report query about one hotel from its shard,
+     * through the replicas when the hotel lives on the home database.
+     *
+     * @param hotelID the hotel the query is about
+     * @return the number of rows returned
+     * @throws java.sql.SQLException when failed to execute the query
+     * @see #streamReportQuery
+     */
+    public long streamShardReportQuery(int hotelID, String query, RowHandler handler, Object... params) throws SQLException {
+        return streamReport(this._shards.shardOf(hotelID), query, handler, params);
+    }
+
+    /**
+     * Streams a read-only report query from every shard, one shard after
+     * another, as streamQueryOnAllShards does.
+     *
+     * @return the number of rows returned by all the shards
+     * @throws java.sql.SQLException when failed to execute the query on any shard
+     */
+    public long streamReportQueryOnAllShards(String query, RowHandler handler, Object... params) throws SQLException {
+        long rows = 0;
+        for (int i = 0; i < this._shards.size(); i++)
+            rows += streamReport(i, query, handler, params);
+        return rows;
+    }
+
+    private long streamReport(int shard, String query, final RowHandler handler, Object[] params) throws SQLException {
+        ConnectionPool replica = this._replicas == null || shard != 0 ? null : this._replicas.pick();
+        if (replica != null) {
+            final long[] rows = new long[1];
+            try {
+                return stream(replica, query, new RowHandler() {
+                    public void row(ResultSet rs) throws SQLException {
+                        rows[0]++;
+                        handler.row(rs);
+                    }
+                }, params);
+            } catch (SQLException e) {
+                this._replicas.failed(replica);
+                if (rows[0] > 0)
+                    throw e;
+            }
+        }
+        return stream(this._shards.shard(shard), query, handler, params);
+    } //end streamReport
+
+    /*
+     * Fetches the connection's cached statement for the SQL text and binds the
+     * parameters to it.
+     **/
+    private static PreparedStatement prepare(ConnectionPool.PooledConnection conn, String sql, Object[] params) throws SQLException {
+        PreparedStatement stmt = conn.prepare(sql);
+        for (int i = 0; i < params.length; i++)
+            stmt.setObject(i + 1, params[i]);
+        return stmt;
+    }
+
+    /**
+     * Returns the proximity index over the Hotel table, building it from the
+     * database on first use.
+     *
+     * @return the hotel locator
+     * @throws java.sql.SQLException when failed to load the hotels
+     */
+    public synchronized HotelLocator getHotelLocator() throws SQLException {
+        if (this._locator == null)
+            this._locator = HotelLocator.load(this);
+        return this._locator;
+    }
+
+    /*
+     * Drops the proximity index, to be rebuilt from the changed Hotel table.
+     **/
+    private synchronized void dropHotelLocator() {
+        this._locator = null;
+    }
+
+    /**
+     * @return the databases the hotels are spread over
+     */
+    public ShardRouter getShardRouter() {
+        return this._shards;
+    }
+
+    /**
+     * @return the read replica router, or null when there are no replicas
+     */
+    public ReplicaRouter getReplicaRouter() {
+        return this._replicas;
+    }
+
+    /**
+     * @return the cached hotels, rooms and maintenance companies
+     */
+    public ReferenceData getReferenceData() {
+        return this._reference;
+    }
+
+    /**
+     * @return the latency histograms and slow query log of this instance
+     */
+    public Metrics getMetrics() {
+        return this._metrics;
+    }
+
+    /**
+     * @return true while change notifications are being received, so cached
+     * state is known to be current
+     */
+    public boolean isListening() {
+        if (this._listeners.length == 0)
+            return false;
+        for (NotificationListener listener: this._listeners) {
+            if (!listener.isListening())
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the shared record of the hotels a manager runs
+     */
+    public ManagedHotels managedHotels(int managerID) {
+        ManagedHotels m = this._managers.get(managerID);
+        if (m == null) {
+            ManagedHotels created = new ManagedHotels(this, managerID);
+            m = this._managers.putIfAbsent(managerID, created);
+            if (m == null)
+                m = created;
+        }
+        return m;
+    }
+
+    /*================= OPERATIONS ====================*/
+
+    /**
+     * Checks log in credentials.  A manager's session is given the hotels
+     * they run, so later ownership checks need no query.
+     *
+     * @param userID the user's ID
+     * @param password the user's password
+     * @return the user's session, or null if the credentials do not match
+     * @throws java.sql.SQLException when failed to execute the query
+     */
+    public Session logIn(int userID, String password) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            List < List < String >> user = executeQueryAndReturnResult(
+                "SELECT userType FROM USERS WHERE userID = ? AND password = ?", userID, password);
+            if (user.isEmpty())
+                return null;
+            String userType = user.get(0).get(0).trim();
+            if (!Session.MANAGER.equals(userType))
+                return new Session(userID, userType);
+            ManagedHotels hotels = managedHotels(userID);
+            hotels.get();
+            return new Session(userID, userType, hotels);
+        } finally {
+            this._metrics.operation("logIn", start);
+        }
+    }
+
+    /**
+     * Creates a new customer account.  The user is numbered by the home
+     * database and copied to every other shard, whose bookings refer to it.
+     * The copies are separate statements: if one fails, the account exists
+     * on the home database and the shards copied so far, and the exception
+     * names the userID so that copyUser can finish the job.
+     *
+     * @return the new user's ID
+     * @throws java.sql.SQLException when failed to create the user, or to copy it to every shard
+     */
+    public int createUser(String name, String password) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            int userID = queryForInt("INSERT INTO USERS (name, password, userType) VALUES (?, ?, ?) RETURNING userID",
+                name, password, "Customer");
+            copyUser(userID);
+            return userID;
+        } finally {
+            this._metrics.operation("createUser", start);
+        }
+    }
+
+    /**
+     * Copies a user from the home database to every other shard that lacks
+     * it.  Shards that already have the user are left alone, so this can be
+     * run again after a partial failure of createUser.
+     *
+     * @param userID the user to copy
+     * @throws java.sql.SQLException naming the shards still missing the user
+     */
+    public void copyUser(int userID) throws SQLException {
+        if (this._shards.size() == 1)
+            return;
+        List < List < String >> user = executeQueryAndReturnResult(
+            "SELECT name, password, userType FROM USERS WHERE userID = ?", userID);
+        if (user.isEmpty())
+            throw new SQLException("No user " + userID + " on the home database");
+        List < Integer > missing = new ArrayList < Integer > ();
+        SQLException failure = null;
+        for (int i = 1; i < this._shards.size(); i++) {
+            try {
+                update(this._shards.shard(i), "INSERT INTO USERS (userID, name, password, userType) VALUES (?, ?, ?, ?) " +
+                    "ON CONFLICT (userID) DO NOTHING",
+                    new Object[] {userID, user.get(0).get(0), user.get(0).get(1), user.get(0).get(2)});
+            } catch (SQLException e) {
+                missing.add(i);
+                if (failure == null)
+                    failure = e;
+            }
+        }
+        if (failure != null)
+            throw new SQLException("User " + userID + " is not copied to shards " + missing +
+                " yet; bookings in their hotels fail until copyUser(" + userID + ") succeeds", failure.getSQLState(), failure);
+    } //end copyUser
+
+    /**
+     * Copies every maintenance company from the home database to the other
+     * shards that lack it, whose repairs refer to it.  Companies a shard
+     * already has are left alone, so this can be run any number of times;
+     * it runs at startup, and again when a repair on a shard fails on a
+     * company the shard does not know.
+     *
+     * @throws java.sql.SQLException naming the shards still missing companies
+     */
+    public void copyCompanies() throws SQLException {
+        List < Integer > missing = new ArrayList < Integer > ();
+        SQLException failure = null;
+        for (int i = 1; i < this._shards.size(); i++) {
+            try {
+                copyCompanies(i);
+            } catch (SQLException e) {
+                missing.add(i);
+                if (failure == null)
+                    failure = e;
+            }
+        }
+        if (failure != null)
+            throw new SQLException("Maintenance companies are not copied to shards " + missing +
+                " yet; repairs in their hotels may fail until copyCompanies() succeeds", failure.getSQLState(), failure);
+    } //end copyCompanies
+
+    private void copyCompanies(int shard) throws SQLException {
+        List < List < String >> companies = executeQueryAndReturnResult(
+            "SELECT companyID, name, addrress FROM MaintenanceCompany");
+        int[] ids = new int[companies.size()];
+        String[] names = new String[ids.length];
+        String[] addresses = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = Integer.parseInt(companies.get(i).get(0).trim());
+            names[i] = companies.get(i).get(1);
+            addresses[i] = companies.get(i).get(2);
+        }
+        update(this._shards.shard(shard), "INSERT INTO MaintenanceCompany (companyID, name, addrress) " +
+            "SELECT * FROM unnest(CAST(? AS integer[]), CAST(? AS text[]), CAST(? AS text[])) " +
+            "ON CONFLICT (companyID) DO NOTHING",
+            new Object[] {ids, names, addresses});
+    }
+
+    /*
+     * Whether a repair failed on a shard for a company the shard does not
+     * have yet: a foreign key violation anywhere but the home database, which
+     * holds the master copy.  An unknown room fails the same way, and fails
+     * again after the companies are copied.
+     **/
+    private boolean missingCompany(int shard, SQLException e) {
+        return shard != 0 && "23503".equals(e.getSQLState());
+    }
+
+    // the existence checks are answered from the reference data cache
+
+    public boolean hotelExists(int hotelID) throws SQLException {
+        return this._reference.hotelExists(hotelID);
+    }
+
+    public boolean roomExists(int hotelID, int roomNumber) throws SQLException {
+        return this._reference.roomExists(hotelID, roomNumber);
+    }
+
+    public boolean companyExists(int companyID) throws SQLException {
+        return this._reference.companyExists(companyID);
+    }
+
+    /**
+     * @return true if the manager runs the hotel; answered from memory once
+     * the manager's hotels are loaded
+     * @throws java.sql.SQLException when failed to load the manager's hotels
+     */
+    public boolean managesHotel(int managerID, int hotelID) throws SQLException {
+        return managedHotels(managerID).contains(hotelID);
+    }
+
+    /**
+     * Lists every room of a hotel with its availability on a date.  Answered
+     * from the availability cache, which only queries on a miss.
+     *
+     * @return rows of (roomNumber, price, 'Available', 'Booked' or 'Under Repair')
+     * @throws java.sql.SQLException when failed to execute the query
+     */
+    public List < List < String >> listRooms(int hotelID, LocalDate date) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return this._availability.listRooms(hotelID, date);
+        } finally {
+            this._metrics.operation("listRooms", start);
+        }
+    }
+
+    // how many times a reservation is retried after a transient failure
+    public static final int BOOKING_RETRIES = 3;
+
+    // longest stay accepted by bookStay and listRoomsForStay
+    public static final int MAX_NIGHTS = 365;
+
+    // longest repair window; RoomRepairs checks repairDays against it too
+    public static final int MAX_REPAIR_DAYS = 30;
+
+    /**
+     * Books a room for one night.
+     *
+     * @return whether the room was booked, and at what price
+     * @throws java.sql.SQLException when failed to execute the query
+     * @see #bookStay
+     */
+    public BookingResult bookRoom(int customerID, int hotelID, int roomNumber, LocalDate date) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return bookStay(customerID, hotelID, roomNumber, date, date.plusDays(1));
+        } finally {
+            this._metrics.operation("bookRoom", start);
+        }
+    } //end bookRoom
+
+    /**
+     * Books a room for every night from check-in up to, but not including,
+     * check-out.  The availability check and the insert of all the nights are
+     * one statement, so the stay is booked whole or not at all; a repair
+     * overlapping the stay also keeps the room from being booked.  The insert is
+     * also guarded by the UNIQUE(hotelID, roomNumber, bookingDate) constraint:
+     * when two guests race for an overlapping stay the loser's statement fails
+     * as a whole and is reported as already booked.  Within this process such
+     * races are settled before the database: while one attempt holds a
+     * night of the room in the ReservationCoordinator, other attempts on it
+     * are reported as already booked without a query.  Serialization failures
+     * and deadlocks are retried, which is safe because a failed attempt leaves
+     * nothing behind.
+     *
+     * @return whether the room was booked, its first bookingID, and the total price
+     * @throws java.sql.SQLException when failed to execute the query
+     */
+    public BookingResult bookStay(int customerID, int hotelID, int roomNumber, LocalDate checkIn, LocalDate checkOut) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            int nights = nights(checkIn, checkOut);
+            long[] claimed = this._reservations == null ? new long[0] : this._reservations.tryAcquire(hotelID, roomNumber, checkIn, nights);
+            if (claimed == null) {
+                this._metrics.operation("bookStay.turnedAway", start);
+                return new BookingResult(BookingResult.Status.ALREADY_BOOKED, -1, null);
+            }
+            try {
+                return insertStay(customerID, hotelID, roomNumber, checkIn, checkOut, nights);
+            } finally {
+                if (this._reservations != null)
+                    this._reservations.release(claimed);
+            }
+        } finally {
+            this._metrics.operation("bookStay", start);
+        }
+    } //end bookStay
+
+    private BookingResult insertStay(int customerID, int hotelID, int roomNumber, LocalDate checkIn, LocalDate checkOut, int nights) throws SQLException {
+        java.sql.Date from = java.sql.Date.valueOf(checkIn);
+        java.sql.Date to = java.sql.Date.valueOf(checkOut);
+        String query = "WITH room AS (SELECT hotelID, roomNumber, price FROM Rooms WHERE hotelID = ? AND roomNumber = ?), " +
+            "repair AS (SELECT EXISTS (SELECT 1 FROM room, RoomRepairs x WHERE x.hotelID = room.hotelID AND x.roomNumber = room.roomNumber " +
+            "AND " + repairOverlaps("CAST(? AS date)", "CAST(? AS date)") + ") AS underRepair), " +
+            "booked AS (INSERT INTO RoomBookings (customerID, hotelID, roomNumber, bookingDate) " +
+            "SELECT ?, room.hotelID, room.roomNumber, night::date " +
+            "FROM room, repair, generate_series(CAST(? AS date), CAST(? AS date) - 1, interval '1 day') AS night " +
+            "WHERE NOT repair.underRepair " +
+            "AND NOT EXISTS (SELECT 1 FROM RoomBookings b WHERE b.hotelID = room.hotelID AND b.roomNumber = room.roomNumber " +
+            "AND b.bookingDate >= ? AND b.bookingDate < ?) " +
+            "RETURNING bookingID) " +
+            "SELECT room.price * ?, (SELECT MIN(bookingID) FROM booked), repair.underRepair FROM room, repair";
+        for (int attempt = 1;; attempt++) {
+            try {
+                List < List < String >> result = executeShardQuery(hotelID, query,
+                    hotelID, roomNumber, from, to, from, customerID, from, to, from, to, nights);
+                if (result.isEmpty())
+                    return new BookingResult(BookingResult.Status.NO_SUCH_ROOM, -1, null);
+                String price = result.get(0).get(0);
+                String bookingID = result.get(0).get(1);
+                if ("t".equals(result.get(0).get(2)))
+                    return new BookingResult(BookingResult.Status.UNDER_REPAIR, -1, price);
+                if (bookingID == null) {
+                    if (nights == 1)
+                        this._availability.markBooked(hotelID, roomNumber, checkIn);
+                    return new BookingResult(BookingResult.Status.ALREADY_BOOKED, -1, price);
+                }
+                for (LocalDate night = checkIn; night.isBefore(checkOut); night = night.plusDays(1))
+                    this._availability.markBooked(hotelID, roomNumber, night);
+                return new BookingResult(BookingResult.Status.BOOKED, Integer.parseInt(bookingID), price);
+            } catch (SQLException e) {
+                if ("23505".equals(e.getSQLState())) { // unique_violation: lost the race for a night
+                    if (nights == 1)
+                        this._availability.markBooked(hotelID, roomNumber, checkIn);
+                    return new BookingResult(BookingResult.Status.ALREADY_BOOKED, -1, null);
+                }
+                if (!isTransient(e) || attempt >= BOOKING_RETRIES)
+                    throw e;
+                backOff(attempt);
+            }
+        }
+    } //end insertStay
+
+    // most room-nights sent to the server in one block booking statement
+    public static final int MAX_BLOCK_BATCH = 512;
+
+    /**
+     * Books a block of room-nights, e.g. for a group or an event.  Each chunk
+     * of up to MAX_BLOCK_BATCH items is one statement: the items are sent as a
+     * VALUES list with bookingIDs taken from reserved sequence blocks, checked
+     * against Rooms with a join, and inserted with ON CONFLICT DO NOTHING, and
+     * the statement returns every item's outcome.  A chunk that fails with a
+     * deadlock or serialization failure is retried like a single booking.
+     * Items are independent: one that is already booked or under repair does
+     * not stop the others.  A night asked for twice in the same block is booked once.
+     * Each shard books the items of its own hotels, all shards at once.
+     *
+     * @param customerID the customer the rooms are booked for
+     * @param items the room-nights wanted
+     * @return one result per item, in the same order
+     * @throws java.sql.SQLException when failed to execute the query
+     */
+    public List < BookingResult > bookBlock(final int customerID, List < BookingRequest > items) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            final List < List < BookingRequest >> parts = new ArrayList < List < BookingRequest >> (this._shards.size());
+            for (int i = 0; i < this._shards.size(); i++)
+                parts.add(new ArrayList < BookingRequest > ());
+            for (BookingRequest item: items)
+                parts.get(this._shards.shardOf(item.hotelID)).add(item);
+            List < List < BookingResult >> booked = this._shards.scatter(new ShardRouter.ShardTask < List < BookingResult >> () {
+                public List < BookingResult > run(int shard, ConnectionPool pool) throws SQLException {
+                    List < BookingRequest > part = parts.get(shard);
+                    List < BookingResult > results = new ArrayList < BookingResult > (part.size());
+                    for (int from = 0; from < part.size(); from += MAX_BLOCK_BATCH)
+                        results.addAll(bookBlockChunk(pool, customerID, part.subList(from, Math.min(part.size(), from + MAX_BLOCK_BATCH))));
+                    return results;
+                }
+            });
+
+            // back into the order the items were asked for
+            int[] next = new int[booked.size()];
+            List < BookingResult > results = new ArrayList < BookingResult > (items.size());
+            for (BookingRequest item: items) {
+                int shard = this._shards.shardOf(item.hotelID);
+                results.add(booked.get(shard).get(next[shard]++));
+            }
+
+            // a repeated item can only have been booked once, by its first occurrence
+            Set < BookingRequest > seen = new HashSet < BookingRequest > ();
+            for (int i = 0; i < items.size(); i++) {
+                if (!seen.add(items.get(i)) && results.get(i).isBooked())
+                    results.set(i, new BookingResult(BookingResult.Status.ALREADY_BOOKED, -1, results.get(i).price));
+            }
+            return results;
+        } finally {
+            this._metrics.operation("bookBlock", start);
+        }
+    } //end bookBlock
+
+    private List < BookingResult > bookBlockChunk(ConnectionPool pool, int customerID, List < BookingRequest > items) throws SQLException {
+        // pad to a power of two so there are only a few statement shapes to prepare
+        int rows = Integer.highestOneBit(Math.max(1, items.size() - 1)) << 1;
+        if (items.size() == 1)
+            rows = 1;
+        int[] bookingIDs = this._bookingIDs.next(items.get(0).hotelID, items.size());
+        StringBuilder values = new StringBuilder();
+        Object[] params = new Object[rows * 5 + 1];
+        for (int i = 0; i < rows; i++) {
+            int item = Math.min(i, items.size() - 1);
+            if (i > 0)
+                values.append(", ");
+            values.append("(CAST(? AS integer), CAST(? AS integer), CAST(? AS integer), CAST(? AS integer), CAST(? AS date))");
+            params[i * 5] = i < items.size() ? i : -1; // padding rows are filtered out by idx
+            params[i * 5 + 1] = bookingIDs[item];
+            params[i * 5 + 2] = items.get(item).hotelID;
+            params[i * 5 + 3] = items.get(item).roomNumber;
+            params[i * 5 + 4] = java.sql.Date.valueOf(items.get(item).date);
+        }
+        params[rows * 5] = customerID;
+
+        // a night asked for twice in the chunk is inserted under its first item's bookingID only
+        String query = "WITH req (idx, bookingID, hotelID, roomNumber, bookingDate) AS (SELECT * FROM (VALUES " + values + ") v WHERE v.column1 >= 0), " +
+            "room AS (SELECT req.idx, req.bookingID, req.hotelID, req.roomNumber, req.bookingDate, r.price, " +
+            "EXISTS (SELECT 1 FROM RoomRepairs x WHERE x.hotelID = req.hotelID AND x.roomNumber = req.roomNumber " +
+            "AND " + repairOverlaps("req.bookingDate", "req.bookingDate + 1") + ") AS underRepair " +
+            "FROM req JOIN Rooms r ON r.hotelID = req.hotelID AND r.roomNumber = req.roomNumber), " +
+            "booked AS (INSERT INTO RoomBookings (bookingID, customerID, hotelID, roomNumber, bookingDate) " +
+            "SELECT DISTINCT ON (hotelID, roomNumber, bookingDate) bookingID, CAST(? AS integer), hotelID, roomNumber, bookingDate FROM room " +
+            "WHERE NOT underRepair " +
+            "ORDER BY hotelID, roomNumber, bookingDate, idx " +
+            "ON CONFLICT (hotelID, roomNumber, bookingDate) DO NOTHING " +
+            "RETURNING bookingID) " +
+            "SELECT req.idx, room.price, booked.bookingID, room.underRepair FROM req " +
+            "LEFT JOIN room ON room.idx = req.idx " +
+            "LEFT JOIN booked ON booked.bookingID = req.bookingID " +
+            "ORDER BY req.idx";
+
+        // a deadlock or serialization failure rolls the whole chunk back, so it is safe to send again
+        List < List < String >> outcome;
+        for (int attempt = 1;; attempt++) {
+            try {
+                outcome = queryAndReturnResult(pool, query, params);
+                break;
+            } catch (SQLException e) {
+                if (!isTransient(e) || attempt >= BOOKING_RETRIES)
+                    throw e;
+                backOff(attempt);
+            }
+        }
+
+        BookingResult[] results = new BookingResult[items.size()];
+        for (List < String > row: outcome) {
+            int idx = Integer.parseInt(row.get(0));
+            BookingRequest item = items.get(idx);
+            if (row.get(1) == null) {
+                results[idx] = new BookingResult(BookingResult.Status.NO_SUCH_ROOM, -1, null);
+                continue;
+            }
+            if ("t".equals(row.get(3))) {
+                results[idx] = new BookingResult(BookingResult.Status.UNDER_REPAIR, -1, row.get(1));
+                continue;
+            }
+            this._availability.markBooked(item.hotelID, item.roomNumber, item.date);
+            if (row.get(2) == null)
+                results[idx] = new BookingResult(BookingResult.Status.ALREADY_BOOKED, -1, row.get(1));
+            else
+                results[idx] = new BookingResult(BookingResult.Status.BOOKED, Integer.parseInt(row.get(2)), row.get(1));
+        }
+        return Arrays.asList(results);
+    } //end bookBlockChunk
+
+    /**
+     * Lists every room of a hotel with whether it is free for a whole stay,
+     * in one query over the stay's date range.
+     *
+     * @return rows of (roomNumber, price per night, total price, 'Available', 'Booked' or 'Under Repair')
+     * @throws java.sql.SQLException when failed to execute the query
+     */
+    public List < List < String >> listRoomsForStay(int hotelID, LocalDate checkIn, LocalDate checkOut) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            int nights = nights(checkIn, checkOut);
+            String query = "SELECT r.roomNumber, r.price, r.price * ?, " +
+                "CASE WHEN EXISTS (SELECT 1 FROM RoomBookings b WHERE b.hotelID = r.hotelID AND b.roomNumber = r.roomNumber " +
+                "AND b.bookingDate >= ? AND b.bookingDate < ?) THEN 'Booked' " +
+                "WHEN EXISTS (SELECT 1 FROM RoomRepairs x WHERE x.hotelID = r.hotelID AND x.roomNumber = r.roomNumber " +
+                "AND " + repairOverlaps("CAST(? AS date)", "CAST(? AS date)") + ") THEN 'Under Repair' ELSE 'Available' END " +
+                "FROM Rooms r WHERE r.hotelID = ? ORDER BY r.roomNumber";
+            java.sql.Date from = java.sql.Date.valueOf(checkIn);
+            java.sql.Date to = java.sql.Date.valueOf(checkOut);
+            return executeShardQuery(hotelID, query, nights, from, to, from, to, from, hotelID);
+        } finally {
+            this._metrics.operation("listRoomsForStay", start);
+        }
+    }
+
+    /**
+     * Finds the free rooms on a night across every hotel within a radius,
+     * from the in-memory indexes: the hotel locator picks the hotels, the
+     * reference data gives their rooms and prices, and the availability cache
+     * tells which rooms are booked or under repair, loading the hotels it is
+     * missing in one query.  Rooms above the price cap are left out, and only
+     * the best offset + limit rooms are kept while ranking.
+     *
+     * @return one page of the free rooms, ranked by the search's order
+     * @throws java.sql.SQLException when failed to load rooms or availability
+     */
+    public List < RoomSearch.Hit > searchRooms(RoomSearch search) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            List < HotelLocator.Match > near = getHotelLocator().withinRadius(search.latitude, search.longitude, search.radius);
+            int[] hotelIDs = new int[near.size()];
+            for (int i = 0; i < hotelIDs.length; i++)
+                hotelIDs[i] = near.get(i).hotel.hotelID;
+            BitSet[] taken = this._availability.unavailable(hotelIDs, search.date);
+
+            // max-heap on rank holding the best rooms seen so far
+            Comparator < RoomSearch.Hit > ranking = search.ranking();
+            int wanted = search.offset + search.limit;
+            PriorityQueue < RoomSearch.Hit > best = new PriorityQueue < RoomSearch.Hit > (wanted + 1, Collections.reverseOrder(ranking));
+            for (int i = 0; i < hotelIDs.length; i++) {
+                ReferenceData.Rooms rooms = this._reference.rooms(hotelIDs[i]);
+                if (rooms == null)
+                    continue;
+                HotelLocator.Match m = near.get(i);
+                for (int j = 0; j < rooms.numbers.length; j++) {
+                    if (rooms.prices[j] > search.maxPrice || taken[i].get(rooms.numbers[j]))
+                        continue;
+                    RoomSearch.Hit hit = new RoomSearch.Hit(m.hotel, m.distance, rooms.numbers[j], rooms.prices[j]);
+                    if (best.size() < wanted) {
+                        best.add(hit);
+                    } else if (ranking.compare(hit, best.peek()) < 0) {
+                        best.poll();
+                        best.add(hit);
+                    }
+                }
+            }
+
+            List < RoomSearch.Hit > ranked = new ArrayList < RoomSearch.Hit > (best);
+            Collections.sort(ranked, ranking);
+            return new ArrayList < RoomSearch.Hit > (ranked.subList(Math.min(search.offset, ranked.size()), ranked.size()));
+        } finally {
+            this._metrics.operation("searchRooms", start);
+        }
+    } //end searchRooms
+
+    /*
+     * Number of nights between check-in and check-out, which must be 1 to MAX_NIGHTS.
+     **/
+    static int nights(LocalDate checkIn, LocalDate checkOut) {
+        long nights = checkOut.toEpochDay() - checkIn.toEpochDay();
+        if (nights < 1 || nights > MAX_NIGHTS)
+            throw new IllegalArgumentException("A stay must be between 1 and " + MAX_NIGHTS + " nights");
+        return (int) nights;
+    }
+
+    /*
+     * SQL condition on RoomRepairs x: the repair's window overlaps the nights
+     * from the first date up to, but not including, the second.  Windows are
+     * at most MAX_REPAIR_DAYS long, which bounds repairDate on both sides so
+     * the (hotelID, repairDate) index serves it as one range scan.  The first
+     * date expression appears twice, so its parameters are bound twice.
+     **/
+    static String repairOverlaps(String from, String to) {
+        return "x.repairDate > " + from + " - " + MAX_REPAIR_DAYS + " AND x.repairDate < " + to +
+            " AND x.repairDate + x.repairDays > " + from;
+    }
+
+    /*
+     * Number of days of a repair window, which must be 1 to MAX_REPAIR_DAYS.
+     **/
+    static int repairDays(int days) {
+        if (days < 1 || days > MAX_REPAIR_DAYS)
+            throw new IllegalArgumentException("A repair must take between 1 and " + MAX_REPAIR_DAYS + " days");
+        return days;
+    }
+
+    /*
+     * serialization_failure and deadlock_detected may succeed when retried.
+     **/
+    static boolean isTransient(SQLException e) {
+        return "40001".equals(e.getSQLState()) || "40P01".equals(e.getSQLState());
+    }
+
+    static void backOff(int attempt) {
+        try {
+            Thread.sleep((long)(Math.random() * 10 * attempt));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Asks every shard for the customer's five latest bookings there and keeps
+     * the five latest of those.
+     *
+     * @return the customer's five latest bookings as (hotelID, roomNumber, bookingDate, price)
+     * @throws java.sql.SQLException when failed to execute the query
+     */
+    public List < List < String >> recentBookings(int customerID) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            String query = "SELECT RoomBookings.hotelID, Rooms.roomNumber, RoomBookings.bookingDate, Rooms.price " +
+                "FROM RoomBookings, Rooms " +
+                "WHERE RoomBookings.roomNumber = Rooms.roomNumber AND " +
+                "RoomBookings.hotelID = Rooms.hotelID AND " +
+                "customerID = ? " +
+                "ORDER BY bookingDate DESC " +
+                "LIMIT 5";
+            return latest(executeQueryOnAllShards(query, customerID), 2, 5);
+        } finally {
+            this._metrics.operation("recentBookings", start);
+        }
+    }
+
+    /**
+     * Changes a room's price and image and records the change in RoomUpdatesLog.
+     * The log row is written in the background by the RoomUpdateLogger.
+     *
+     * @return false if the room does not exist
+     * @throws java.sql.SQLException when failed to execute the update
+     */
+    public boolean updateRoom(int managerID, int hotelID, int roomNumber, int price, String imageURL) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            int updated = executeShardUpdate(hotelID, "UPDATE Rooms SET price = ?, imageURL = ? WHERE hotelID = ? AND roomNumber = ?",
+                price, imageURL, hotelID, roomNumber);
+            if (updated == 0)
+                return false;
+            this._reference.invalidateRooms(hotelID);
+            this._updateLog.log(managerID, hotelID, roomNumber);
+            return true;
+        } finally {
+            this._metrics.operation("updateRoom", start);
+        }
+    }
+
+    /**
+     * Reprices many rooms of a hotel in one set-based update, and queues a
+     * RoomUpdatesLog row for each changed room.
+     *
+     * @param managerID the manager making the change
+     * @param change which rooms change, and how
+     * @return rows of (roomNumber, old price, new price) for every changed room
+     * @throws java.sql.SQLException when failed to execute the update
+     */
+    public List < List < String >> repriceRooms(int managerID, PriceChange change) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            // the new values come from r, which a concurrent update re-checks;
+            // the self-join only reads each room's price from before the update for RETURNING
+            // the image is cast to text, not char(30), so a URL too long for the column fails the update instead of being cut
+            List < List < String >> changed = executeShardQuery(change.hotelID,
+                "UPDATE Rooms r SET price = GREATEST(0, CAST(round(r.price * (100 + CAST(? AS numeric)) / 100) AS integer) + ?), " +
+                "imageURL = COALESCE(CAST(? AS text), r.imageURL) " +
+                "FROM Rooms old WHERE old.hotelID = r.hotelID AND old.roomNumber = r.roomNumber " +
+                "AND r.hotelID = ? AND r.roomNumber BETWEEN ? AND ? AND r.price BETWEEN ? AND ? " +
+                "RETURNING r.roomNumber, old.price, r.price",
+                change.percent, change.amount, change.imageURL,
+                change.hotelID, change.fromRoom, change.toRoom, change.minPrice, change.maxPrice);
+            if (!changed.isEmpty())
+                this._reference.invalidateRooms(change.hotelID);
+            for (List < String > row: changed)
+                this._updateLog.log(managerID, change.hotelID, Integer.parseInt(row.get(0)));
+            return changed;
+        } finally {
+            this._metrics.operation("repriceRooms", start);
+        }
+    } //end repriceRooms
+
+    /**
+     * @return the manager's five latest room updates as (managerID, hotelID, roomNumber, updatedOn)
+     * @throws java.sql.SQLException when failed to execute the query
+     */
+    public List < List < String >> recentUpdates(int managerID) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            // let the manager see their own updates that are still queued
+            try {
+                this._updateLog.flush(UPDATE_LOG_FLUSH_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            // the manager's hotels may be on any shard
+            return latest(executeQueryOnAllShards(
+                "SELECT managerID, hotelID, roomNumber, updatedOn FROM RoomUpdatesLog WHERE managerID = ? ORDER BY updatedOn DESC LIMIT 5", managerID), 3, 5);
+        } finally {
+            this._metrics.operation("recentUpdates", start);
+        }
+    }
+
+    /**
+     * Streams the hotel's bookings in the date range as (bookingID, name,
+     * hotelID, roomNumber, bookingDate) rows.
+     *
+     * @return the number of bookings
+     * @throws java.sql.SQLException when failed to execute the query
+     */
+    public long bookingHistory(int hotelID, LocalDate from, LocalDate to, RowHandler handler) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            String query = "SELECT rb.bookingID, u.name, rb.hotelID, rb.roomNumber, rb.bookingDate " +
+                "FROM RoomBookings rb, Users u " +
+                "WHERE rb.customerID = u.userID AND rb.hotelID = ? AND rb.bookingDate BETWEEN ? AND ?";
+            return streamShardReportQuery(hotelID, query, handler, hotelID, java.sql.Date.valueOf(from), java.sql.Date.valueOf(to));
+        } finally {
+            this._metrics.operation("bookingHistory", start);
+        }
+    }
+
+    /**
+     * Reads the hotel's most frequent customers from CustomerBookingCounts,
+     * which the booking triggers keep up to date, so the cost does not depend
+     * on how many bookings the hotel has.
+     *
+     * @return the hotel's five most frequent customers as (name, numBookings)
+     * @throws java.sql.SQLException when failed to execute the query
+     */
+    public List < List < String >> regularCustomers(int hotelID) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            String query = "SELECT u.name, c.numBookings " +
+                "FROM CustomerBookingCounts c, Users u " +
+                "WHERE c.customerID = u.userID AND c.hotelID = ? " +
+                "ORDER BY c.numBookings DESC " +
+                "LIMIT 5";
+            return executeShardReportQuery(hotelID, query, hotelID);
+        } finally {
+            this._metrics.operation("regularCustomers", start);
+        }
+    }
+
+    /**
+     * Schedules a one-day repair.
+     *
+     * @return the new repairID
+     * @throws java.sql.SQLException when failed to execute the update
+     */
+    public int placeRepair(int companyID, int hotelID, int roomNumber, LocalDate repairDate) throws SQLException {
+        return placeRepair(companyID, hotelID, roomNumber, repairDate, 1);
+    }
+
+    /**
+     * Schedules a repair that takes the room out of service for days nights
+     * from repairDate on.  The insert_roomrepair_to_request trigger files the
+     * matching RoomRepairRequests row for the hotel's manager.
+     *
+     * @return the new repairID, returned by the insert itself
+     * @throws java.sql.SQLException when failed to execute the update
+     */
+    public int placeRepair(int companyID, int hotelID, int roomNumber, LocalDate repairDate, int days) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            int repairID;
+            try {
+                repairID = insertRepair(companyID, hotelID, roomNumber, repairDate, days);
+            } catch (SQLException e) {
+                if (!missingCompany(this._shards.shardOf(hotelID), e))
+                    throw e;
+                copyCompanies(this._shards.shardOf(hotelID));
+                repairID = insertRepair(companyID, hotelID, roomNumber, repairDate, days);
+            }
+            this._availability.invalidate(hotelID, repairDate, days);
+            return repairID;
+        } finally {
+            this._metrics.operation("placeRepair", start);
+        }
+    }
+
+    private int insertRepair(int companyID, int hotelID, int roomNumber, LocalDate repairDate, int days) throws SQLException {
+        return queryForInt(this._shards.pool(hotelID),
+            "INSERT INTO RoomRepairs ( companyID, hotelID, roomNumber, repairDate, repairDays) VALUES (?, ?, ?, ?, ?) RETURNING repairID",
+            new Object[] {companyID, hotelID, roomNumber, java.sql.Date.valueOf(repairDate), repairDays(days)});
+    }
+
+    /**
+     * Schedules many repairs in one statement, e.g. after a storm.  The items
+     * are sent as arrays and inserted with a single INSERT ... SELECT FROM
+     * unnest, so the statement-level insert_roomrepair_to_request trigger
+     * files all their RoomRepairRequests rows in one set-based insert.  The
+     * batch is all or nothing: an unknown room or company fails every item.
+     * When the hotels are spread over shards, each shard inserts its own
+     * items at the same time and is all or nothing by itself.  The repairIDs
+     * come from reserved sequence blocks and are sent with the items.
+     *
+     * @param items the repairs wanted
+     * @return the new repairIDs, in the order of the items
+     * @throws java.sql.SQLException when failed to execute the update
+     */
+    public List < Integer > placeRepairs(List < RepairRequest > items) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            final List < List < RepairRequest >> parts = new ArrayList < List < RepairRequest >> (this._shards.size());
+            for (int i = 0; i < this._shards.size(); i++)
+                parts.add(new ArrayList < RepairRequest > ());
+            for (RepairRequest item: items) {
+                repairDays(item.days); // before any shard inserts anything
+                parts.get(this._shards.shardOf(item.hotelID)).add(item);
+            }
+            List < int[] > inserted = this._shards.scatter(new ShardRouter.ShardTask < int[] > () {
+                public int[] run(int shard, ConnectionPool pool) throws SQLException {
+                    try {
+                        return insertRepairs(pool, parts.get(shard));
+                    } catch (SQLException e) {
+                        if (!missingCompany(shard, e))
+                            throw e;
+                        copyCompanies(shard);
+                        return insertRepairs(pool, parts.get(shard));
+                    }
+                }
+            });
+            for (RepairRequest item: items)
+                this._availability.invalidate(item.hotelID, item.date, item.days);
+
+            // back into the order the items were asked for
+            int[] next = new int[inserted.size()];
+            List < Integer > repairIDs = new ArrayList < Integer > (items.size());
+            for (RepairRequest item: items) {
+                int shard = this._shards.shardOf(item.hotelID);
+                repairIDs.add(inserted.get(shard)[next[shard]++]);
+            }
+            return repairIDs;
+        } finally {
+            this._metrics.operation("placeRepairs", start);
+        }
+    } //end placeRepairs
+
+    private int[] insertRepairs(ConnectionPool pool, List < RepairRequest > items) throws SQLException {
+        int n = items.size();
+        if (n == 0)
+            return new int[0];
+        int[] repairIDs = this._repairIDs.next(items.get(0).hotelID, n);
+        int[] companies = new int[n];
+        int[] hotels = new int[n];
+        int[] rooms = new int[n];
+        String[] dates = new String[n];
+        int[] days = new int[n];
+        for (int i = 0; i < n; i++) {
+            RepairRequest item = items.get(i);
+            companies[i] = item.companyID;
+            hotels[i] = item.hotelID;
+            rooms[i] = item.roomNumber;
+            dates[i] = item.date.toString();
+            days[i] = repairDays(item.days);
+        }
+        update(pool, "INSERT INTO RoomRepairs (repairID, companyID, hotelID, roomNumber, repairDate, repairDays) " +
+            "SELECT * FROM unnest(CAST(? AS integer[]), CAST(? AS integer[]), CAST(? AS integer[]), CAST(? AS integer[]), CAST(? AS date[]), CAST(? AS integer[]))",
+            new Object[] {repairIDs, companies, hotels, rooms, dates, days});
+        return repairIDs;
+    } //end insertRepairs
+
+    /**
+     * Streams the repairs requested by the manager as (companyID, hotelID,
+     * roomNumber, repairDate, repairDays) rows.
+     *
+     * @return the number of repairs
+     * @throws java.sql.SQLException when failed to execute the query
+     */
+    public long repairHistory(int managerID, RowHandler handler) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return streamReportQueryOnAllShards(
+                "SELECT companyID, hotelID, roomNumber, repairDate, repairDays FROM RoomRepairs WHERE  RoomRepairs.repairID IN (SELECT repairID FROM RoomRepairRequests WHERE managerID = ?)", handler, managerID);
+        } finally {
+            this._metrics.operation("repairHistory", start);
+        }
+    }
+
+    /**
+     * Booked nights, occupancy and revenue of a hotel for every year it has
+     * bookings, read from the HotelDailyStats rollup.
+     *
+     * @return rows of (year, booked nights, room-nights, occupancy percent, revenue)
+     * @throws java.sql.SQLException when failed to execute the query
+     */
+    public List < List < String >> occupancyByYear(int hotelID) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            int rooms = roomCount(hotelID);
+            List < List < String >> result = new ArrayList < List < String >> ();
+            for (List < String > row: executeShardReportQuery(hotelID,
+                    "SELECT CAST(EXTRACT(YEAR FROM day) AS integer), SUM(bookedNights), SUM(revenue) " +
+                    "FROM HotelDailyStats WHERE hotelID = ? GROUP BY 1 ORDER BY 1", hotelID)) {
+                int year = Integer.parseInt(row.get(0));
+                result.add(statsRow(row.get(0), Long.parseLong(row.get(1)), (long) rooms * LocalDate.of(year, 1, 1).lengthOfYear(),
+                    Long.parseLong(row.get(2))));
+            }
+            return result;
+        } finally {
+            this._metrics.operation("occupancyByYear", start);
+        }
+    } //end occupancyByYear
+
+    /**
+     * Booked nights, occupancy and revenue of a hotel for each month of a
+     * year, read from the HotelDailyStats rollup.
+     *
+     * @return twelve rows of (month, booked nights, room-nights, occupancy percent, revenue)
+     * @throws java.sql.SQLException when failed to execute the query
+     */
+    public List < List < String >> occupancyByMonth(int hotelID, int year) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            int rooms = roomCount(hotelID);
+            long[] nights = new long[12];
+            long[] revenue = new long[12];
+            for (List < String > row: executeShardReportQuery(hotelID,
+                    "SELECT CAST(EXTRACT(MONTH FROM day) AS integer), SUM(bookedNights), SUM(revenue) " +
+                    "FROM HotelDailyStats WHERE hotelID = ? AND day >= ? AND day < ? GROUP BY 1",
+                    hotelID, java.sql.Date.valueOf(LocalDate.of(year, 1, 1)), java.sql.Date.valueOf(LocalDate.of(year + 1, 1, 1)))) {
+                int month = Integer.parseInt(row.get(0)) - 1;
+                nights[month] = Long.parseLong(row.get(1));
+                revenue[month] = Long.parseLong(row.get(2));
+            }
+            List < List < String >> result = new ArrayList < List < String >> (12);
+            for (int m = 0; m < 12; m++) {
+                LocalDate first = LocalDate.of(year, m + 1, 1);
+                result.add(statsRow(first.toString().substring(0, 7), nights[m], (long) rooms * first.lengthOfMonth(), revenue[m]));
+            }
+            return result;
+        } finally {
+            this._metrics.operation("occupancyByMonth", start);
+        }
+    } //end occupancyByMonth
+
+    /**
+     * Booked nights, occupancy and revenue of every room of a hotel in a
+     * year, read from the RoomMonthlyStats rollup.
+     *
+     * @return rows of (roomNumber, booked nights, nights in the year, occupancy percent, revenue)
+     * @throws java.sql.SQLException when failed to execute the query
+     */
+    public List < List < String >> occupancyByRoom(int hotelID, int year) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            LocalDate first = LocalDate.of(year, 1, 1);
+            List < List < String >> result = new ArrayList < List < String >> ();
+            for (List < String > row: executeShardReportQuery(hotelID,
+                    "SELECT r.roomNumber, COALESCE(SUM(s.bookedNights), 0), COALESCE(SUM(s.revenue), 0) FROM Rooms r " +
+                    "LEFT JOIN RoomMonthlyStats s ON s.hotelID = r.hotelID AND s.roomNumber = r.roomNumber AND s.month >= ? AND s.month < ? " +
+                    "WHERE r.hotelID = ? GROUP BY r.roomNumber ORDER BY r.roomNumber",
+                    java.sql.Date.valueOf(first), java.sql.Date.valueOf(first.plusYears(1)), hotelID)) {
+                result.add(statsRow(row.get(0), Long.parseLong(row.get(1)), first.lengthOfYear(), Long.parseLong(row.get(2))));
+            }
+            return result;
+        } finally {
+            this._metrics.operation("occupancyByRoom", start);
+        }
+    } //end occupancyByRoom
+
+    private int roomCount(int hotelID) throws SQLException {
+        ReferenceData.Rooms rooms = this._reference.rooms(hotelID);
+        return rooms == null ? 0 : rooms.numbers.length;
+    }
+
+    /*
+     * The first limit rows by a date or timestamp column, latest first, of
+     * rows gathered from the shards; ties keep the order they came in.
+     **/
+    private static List < List < String >> latest(List < List < String >> rows, final int column, int limit) {
+        Collections.sort(rows, new Comparator < List < String >> () {
+            public int compare(List < String > a, List < String > b) {
+                return b.get(column).compareTo(a.get(column));
+            }
+        });
+        return rows.size() > limit ? new ArrayList < List < String >> (rows.subList(0, limit)) : rows;
+    }
+
+    private static List < String > statsRow(String label, long nights, long capacity, long revenue) {
+        double occupancy = capacity == 0 ? 0 : 100.0 * nights / capacity;
+        return Arrays.asList(label, String.valueOf(nights), String.valueOf(capacity),
+            String.format("%.1f", occupancy), String.valueOf(revenue));
+    }
+
+    /*================= END OPERATIONS ====================*/
+
+    /**
+     * Method to close the physical connection if it is open.
+     */
+    public void cleanup() {
+        // queued log rows still need the pool
+        this._updateLog.close();
+        this._metrics.close();
+        for (NotificationListener listener: this._listeners)
+            listener.close();
+        if (this._replicas != null)
+            this._replicas.close();
+        if (this._shards != null)
+            this._shards.close();
+        try {
+            if (this._pool != null) {
+                this._pool.close();
+            } //end if
+        } catch (Exception e) {
+            // ignored.
+        } //end try
+    } //end cleanup
+
+} //end Hotel
@@ -0,0 +1,1083 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+package hotel;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+
+/**
+ * The console menu of the hotel system.  It reads the user's choices from
+ * the keyboard and runs them through the operations of {@link Hotel}.
+ *
+ */
+public class HotelConsole {
+
+    // handling the keyboard inputs through a BufferedReader
+    // This variable can be global for convenience.
+    static BufferedReader in = new BufferedReader(
+        new InputStreamReader(System.in));
+    static String curruserID;
+    static String curruserType;
+    static Session session; // role and managed hotels of the logged in user
+
+    /**
+     * The main execution method
+     *
+     * @param args the command line arguments this inclues the <mysql|pgsql> <login file>
+     */
+    public static void main(String[] args) {
+        if (args.length < 3 || args.length % 2 == 0) {
+            System.err.println(
+                "Usage: " +
+                "java [-classpath <classpath>] " +
+                HotelConsole.class.getName() +
+                " <dbname> <port> <user> [<replica dbname> <replica port>]...");
+            return;
+        } //end if
+
+        Greeting();
+        Hotel esql = null;
+        try {
+            // use postgres JDBC driver.
+            Class.forName("org.postgresql.Driver").newInstance();
+            // instantiate the Hotel object and creates a physical
+            // connection.
+            String dbname = args[0];
+            String dbport = args[1];
+            String user = args[2];
+            // reports run on the read replicas, if any are given
+            String[] replicas = Arrays.copyOfRange(args, 3, args.length);
+            esql = new Hotel(dbname, dbport, user, "", Hotel.DEFAULT_POOL_SIZE, replicas);
+
+            boolean keepon = true;
+            while (keepon) {
+                // These are sample SQL statements
+                System.out.println("MAIN MENU");
+                System.out.println("---------");
+                System.out.println("1. Create user");
+                System.out.println("2. Log in");
+                System.out.println("9. < EXIT");
+                String authorisedUser = null;
+                switch (readChoice()) {
+                    case 1:
+                        CreateUser(esql);
+                        break;
+                    case 2:
+                        authorisedUser = LogIn(esql);
+                        break;
+                    case 9:
+                        keepon = false;
+                        break;
+                    default:
+                        System.out.println("Unrecognized choice!");
+                        break;
+                } //end switch
+                if (authorisedUser != null) {
+                    boolean usermenu = true;
+                    while (usermenu) {
+                        System.out.println("Current User: " + curruserType + "\n");
+                        System.out.println("MAIN MENU");
+                        System.out.println("---------");
+                        System.out.println("1. View Hotels within 30 units");
+                        System.out.println("2. View Rooms");
+                        System.out.println("3. Book a Room");
+                        System.out.println("4. View recent booking history");
+                        System.out.println("11. View nearest hotels");
+                        System.out.println("12. View Rooms for a stay");
+                        System.out.println("13. Book a stay");
+                        System.out.println("14. Book a block of rooms");
+                        System.out.println("17. Find the cheapest free rooms nearby");
+                        if (curruserType.equals("manager")) {
+                            //the following functionalities basically used by managers
+                            System.out.println("5. Update Room Information");
+                            System.out.println("6. View 5 recent Room Updates Info");
+                            System.out.println("7. View booking history of the hotel");
+                            System.out.println("8. View 5 regular Customers");
+                            System.out.println("9. Place room repair Requests to a company");
+                            System.out.println("10. View room repair Requests history");
+                            System.out.println("15. Reprice rooms in bulk");
+                            System.out.println("16. View occupancy and revenue");
+                        }
+                        System.out.println(".........................");
+                        System.out.println("20. Log out");
+
+                        if (curruserType.equals("customer")) {
+                            switch (readChoice()) {
+                                case 1:
+                                    viewHotels(esql);
+                                    break;
+                                case 2:
+                                    viewRooms(esql);
+                                    break;
+                                case 3:
+                                    bookRooms(esql);
+                                    break;
+                                case 4:
+                                    viewRecentBookingsfromCustomer(esql);
+                                    break;
+                                case 11:
+                                    viewNearestHotels(esql);
+                                    break;
+                                case 12:
+                                    viewRoomsForStay(esql);
+                                    break;
+                                case 13:
+                                    bookStay(esql);
+                                    break;
+                                case 14:
+                                    bookBlock(esql);
+                                    break;
+                                case 17:
+                                    searchRooms(esql);
+                                    break;
+                                case 20:
+                                    usermenu = false;
+                                    break;
+                                default:
+                                    System.out.println("Unrecognized choice!");
+                                    break;
+                            }
+
+                        } else { //manager
+                            switch (readChoice()) {
+                                case 1:
+                                    viewHotels(esql);
+                                    break;
+                                case 2:
+                                    viewRooms(esql);
+                                    break;
+                                case 3:
+                                    bookRooms(esql);
+                                    break;
+                                case 4:
+                                    viewRecentBookingsfromCustomer(esql);
+                                    break;
+                                case 11:
+                                    viewNearestHotels(esql);
+                                    break;
+                                case 12:
+                                    viewRoomsForStay(esql);
+                                    break;
+                                case 13:
+                                    bookStay(esql);
+                                    break;
+                                case 14:
+                                    bookBlock(esql);
+                                    break;
+                                case 17:
+                                    searchRooms(esql);
+                                    break;
+                                case 5:
+                                    updateRoomInfo(esql);
+                                    break;
+                                case 6:
+                                    viewRecentUpdates(esql);
+                                    break;
+                                case 7:
+                                    viewBookingHistoryofHotel(esql);
+                                    break;
+                                case 8:
+                                    viewRegularCustomers(esql);
+                                    break;
+                                case 9:
+                                    placeRoomRepairRequests(esql);
+                                    break;
+                                case 10:
+                                    viewRoomRepairHistory(esql);
+                                    break;
+                                case 15:
+                                    repriceRooms(esql);
+                                    break;
+                                case 16:
+                                    viewOccupancy(esql);
+                                    break;
+                                case 20:
+                                    usermenu = false;
+                                    break;
+                                default:
+                                    System.out.println("Unrecognized choice!");
+                                    break;
+                            }
+                        }
+                    }
+                }
+            } //end while
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+        } finally {
+            // make sure to cleanup the created table and close the connection.
+            try {
+                if (esql != null) {
+                    System.out.print("Disconnecting from database...");
+                    esql.cleanup();
+                    System.out.println("Done\n\nBye !");
+                } //end if
+            } catch (Exception e) {
+                // ignored.
+            } //end try
+        } //end try
+    } //end main
+
+    public static void Greeting() {
+        System.out.println(
+            "\n\n*******************************************************\n" +
+            "              User Interface      	               \n" +
+            "*******************************************************\n");
+    } //end Greeting
+
+    /*
+     * Reads the users choice given from the keyboard
+     * @int
+     **/
+    public static int readChoice() {
+        int input;
+        // returns only if a correct value is given.
+        do {
+            System.out.print("Please make your choice: ");
+            try { // read the integer, parse it and break.
+                input = Integer.parseInt( in .readLine());
+                break;
+            } catch (Exception e) {
+                System.out.println("Your input is invalid!");
+                continue;
+            } //end try
+        } while (true);
+        return input;
+    } //end readChoice
+
+    /*
+     * Creates a new user
+     **/
+    public static void CreateUser(Hotel esql) {
+        try {
+            System.out.print("\tEnter name: ");
+            String name = in .readLine();
+            System.out.print("\tEnter password: ");
+            String password = in .readLine();
+            System.out.println("User successfully created with userID = " + esql.createUser(name, password));
+
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+        }
+    } //end CreateUser
+
+
+    /*
+     * Check log in credentials for an existing user
+     * @return User login or null is the user does not exist
+     **/
+    public static String LogIn(Hotel esql) {
+        try {
+            System.out.print("\tEnter userID: ");
+            String userID = in .readLine();
+            System.out.print("\tEnter password: ");
+            String password = in .readLine();
+
+            Session s = esql.logIn(Integer.parseInt(userID.trim()), password);
+            if (s != null) {
+                session = s;
+                curruserType = session.userType;
+                curruserID = String.valueOf(session.userID);
+                return curruserID;
+            }
+            return null;
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+            return null;
+        }
+    } //end
+
+    // Rest of the functions definition go in here
+    public static void viewHotels(Hotel esql) {
+        try {
+            System.out.print("Enter latitude: ");
+            String latitudeStr = in .readLine();
+            double latitude = Double.parseDouble(latitudeStr);
+
+            System.out.print("Enter longitude: ");
+            String longitudeStr = in .readLine();
+            double longitude = Double.parseDouble(longitudeStr);
+
+            List < HotelLocator.Match > results = esql.getHotelLocator().withinRadius(latitude, longitude, 30);
+            printHotels(results);
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    public static void viewNearestHotels(Hotel esql) {
+        try {
+            System.out.print("Enter latitude: ");
+            double latitude = Double.parseDouble( in .readLine());
+
+            System.out.print("Enter longitude: ");
+            double longitude = Double.parseDouble( in .readLine());
+
+            System.out.print("Enter number of hotels: ");
+            int k = Integer.parseInt( in .readLine().trim());
+
+            List < HotelLocator.Match > results = esql.getHotelLocator().nearest(latitude, longitude, k);
+            printHotels(results);
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    public static void searchRooms(Hotel esql) {
+        try {
+            System.out.print("Enter latitude: ");
+            double latitude = Double.parseDouble( in .readLine());
+
+            System.out.print("Enter longitude: ");
+            double longitude = Double.parseDouble( in .readLine());
+
+            System.out.print("Enter distance (blank for 30): ");
+            String radius = in .readLine().trim();
+
+            LocalDate date = toSqlDate(promptDate()).toLocalDate();
+            int maxPrice = readInt("Enter highest price (blank for any): ", Integer.MAX_VALUE);
+
+            System.out.print("Sort by (p)rice or (d)istance (blank for price): ");
+            RoomSearch.Order order = in .readLine().trim().toLowerCase().startsWith("d") ? RoomSearch.Order.DISTANCE : RoomSearch.Order.PRICE;
+
+            RoomSearch search = new RoomSearch(latitude, longitude, radius.isEmpty() ? 30 : Double.parseDouble(radius),
+                date, maxPrice, order, 0, 10);
+            while (true) {
+                List < RoomSearch.Hit > hits = esql.searchRooms(search);
+                if (hits.isEmpty()) {
+                    System.out.println(search.offset == 0 ? "No free rooms found." : "No more rooms.");
+                    return;
+                }
+                System.out.println("----------------------------------------------------------------------------------");
+                System.out.printf("| %-8s | %-30s | %-8s | %-11s | %-8s |\n", "Hotel ID", "Hotel Name", "Distance", "Room Number", "Price");
+                System.out.println("----------------------------------------------------------------------------------");
+                for (RoomSearch.Hit h: hits)
+                    System.out.printf("| %-8d | %-30s | %-8.2f | %-11d | %-8d |\n", h.hotel.hotelID, h.hotel.hotelName, h.distance, h.roomNumber, h.price);
+                System.out.println("----------------------------------------------------------------------------------");
+                if (hits.size() < search.limit)
+                    return;
+                System.out.print("Show more? (y/n): ");
+                if (!in .readLine().trim().toLowerCase().startsWith("y"))
+                    return;
+                search = search.next();
+            }
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    public static void viewRooms(Hotel esql) {
+        try {
+            // Ask user for hotelID and date
+            System.out.print("Enter hotel ID: ");
+            int hotelID = Integer.parseInt( in .readLine().trim());
+
+            // Check if the hotel ID is valid
+            while (!esql.hotelExists(hotelID)) {
+            System.out.print("\tInvalid Hotel ID. Enter hotel ID: ");
+            hotelID = Integer.parseInt( in .readLine().trim());
+            }
+
+            System.out.print("Enter date (mm/dd/yyyy): ");
+            String dateStr = in .readLine().trim();
+
+            // Convert input date to LocalDate object
+            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM/dd/yyyy");
+            LocalDate date = LocalDate.parse(dateStr, formatter);
+
+            // Check if booking date is in the past
+            if (date.isBefore(LocalDate.now())) {
+                System.out.println("Sorry, you can only view rooms for today or future dates.");
+                return;
+            }
+
+            // Execute the query and print the result
+            List < List < String >> results = esql.listRooms(hotelID, date);
+
+            System.out.println("--------------------------------------------");
+            System.out.printf("| %-10s | %-10s | %-8s |\n", "Room Number", "Price", "Availability");
+            System.out.println("--------------------------------------------");
+            for (List < String > row: results) {
+                System.out.printf("| %-10s | $%-11s | %-8s |\n", row.get(0), row.get(1), row.get(2));
+            }
+            System.out.println("Total row(s): " + results.size());
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+
+
+
+    public static void bookRooms(Hotel esql) {
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+
+            // Ask the user for the hotel ID
+            System.out.print("\tEnter Hotel ID: ");
+            int hotelID = Integer.parseInt( in .readLine().trim());
+
+            // Check if the hotel ID is valid
+            while (!esql.hotelExists(hotelID)) {
+                System.out.print("\tInvalid Hotel ID. Enter hotel ID: ");
+                hotelID = Integer.parseInt( in .readLine().trim());
+            }
+
+            // Ask the user for the room number
+            System.out.print("\tEnter Room Number: ");
+            int roomNumber = Integer.parseInt( in .readLine().trim());
+
+            // Check if the room number is valid for the given hotel ID
+            while (!esql.roomExists(hotelID, roomNumber)) {
+                System.out.print("\tInvalid Room No. Enter Room no: ");
+                roomNumber = Integer.parseInt( in .readLine().trim());
+            }
+
+            // Ask the user for the booking date
+            System.out.print("Enter date (mm/dd/yyyy): ");
+            String bookingDateStr = in .readLine().trim();
+
+            // Convert input date to LocalDate format
+            DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM/dd/yyyy");
+            LocalDate bookingDate = LocalDate.parse(bookingDateStr, formatter);
+
+            // Check if booking date is in the past
+            if (bookingDate.isBefore(LocalDate.now())) {
+                System.out.println("Sorry, you can only book rooms for today or future dates.");
+                return;
+            }
+
+            BookingResult booking = esql.bookRoom(Integer.parseInt(curruserID), hotelID, roomNumber, bookingDate);
+            if (booking.isBooked()) {
+                System.out.println("Room is available!");
+                System.out.println("Booking successful! \nYour cost: $" + booking.price);
+            } else if (booking.status == BookingResult.Status.UNDER_REPAIR) {
+                System.out.println("Sorry, that room is under repair.");
+            } else {
+                // Room is not available
+                System.out.println("Sorry, that room is booked.");
+            }
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+
+    public static void viewRoomsForStay(Hotel esql) {
+        try {
+            System.out.print("Enter hotel ID: ");
+            int hotelID = Integer.parseInt( in .readLine().trim());
+
+            // Check if the hotel ID is valid
+            while (!esql.hotelExists(hotelID)) {
+                System.out.print("\tInvalid Hotel ID. Enter hotel ID: ");
+                hotelID = Integer.parseInt( in .readLine().trim());
+            }
+
+            System.out.println("Check-in date:");
+            LocalDate checkIn = toSqlDate(promptDate()).toLocalDate();
+            System.out.println("Check-out date:");
+            LocalDate checkOut = toSqlDate(promptDate()).toLocalDate();
+
+            List < List < String >> results = esql.listRoomsForStay(hotelID, checkIn, checkOut);
+
+            System.out.println("-------------------------------------------------------");
+            System.out.printf("| %-10s | %-10s | %-10s | %-12s |\n", "Room Number", "Price", "Total", "Availability");
+            System.out.println("-------------------------------------------------------");
+            for (List < String > row: results) {
+                System.out.printf("| %-11s | $%-9s | $%-9s | %-12s |\n", row.get(0), row.get(1), row.get(2), row.get(3));
+            }
+            System.out.println("Total row(s): " + results.size());
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    public static void bookStay(Hotel esql) {
+        try {
+            // Ask the user for the hotel ID
+            System.out.print("\tEnter Hotel ID: ");
+            int hotelID = Integer.parseInt( in .readLine().trim());
+
+            // Check if the hotel ID is valid
+            while (!esql.hotelExists(hotelID)) {
+                System.out.print("\tInvalid Hotel ID. Enter hotel ID: ");
+                hotelID = Integer.parseInt( in .readLine().trim());
+            }
+
+            // Ask the user for the room number
+            System.out.print("\tEnter Room Number: ");
+            int roomNumber = Integer.parseInt( in .readLine().trim());
+
+            // Check if the room number is valid for the given hotel ID
+            while (!esql.roomExists(hotelID, roomNumber)) {
+                System.out.print("\tInvalid Room No. Enter Room no: ");
+                roomNumber = Integer.parseInt( in .readLine().trim());
+            }
+
+            System.out.println("\tCheck-in date:");
+            LocalDate checkIn = toSqlDate(promptDate()).toLocalDate();
+            System.out.println("\tCheck-out date:");
+            LocalDate checkOut = toSqlDate(promptDate()).toLocalDate();
+
+            BookingResult booking = esql.bookStay(Integer.parseInt(curruserID), hotelID, roomNumber, checkIn, checkOut);
+            if (booking.isBooked()) {
+                System.out.println("Booking successful! \nYour cost: $" + booking.price);
+            } else if (booking.status == BookingResult.Status.UNDER_REPAIR) {
+                System.out.println("Sorry, that room is under repair for part of the stay.");
+            } else {
+                // Room is taken at least one of the nights
+                System.out.println("Sorry, that room is booked for part of the stay.");
+            }
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    public static void bookBlock(Hotel esql) {
+        try {
+            // Ask the user for the hotel ID
+            System.out.print("\tEnter Hotel ID: ");
+            int hotelID = Integer.parseInt( in .readLine().trim());
+
+            // Check if the hotel ID is valid
+            while (!esql.hotelExists(hotelID)) {
+                System.out.print("\tInvalid Hotel ID. Enter hotel ID: ");
+                hotelID = Integer.parseInt( in .readLine().trim());
+            }
+
+            // Ask for the rooms, e.g. 1,2,10-20
+            System.out.print("\tEnter Room Numbers (e.g. 1,2,10-20): ");
+            List < Integer > rooms = parseRoomList( in .readLine());
+
+            System.out.println("\tCheck-in date:");
+            LocalDate checkIn = toSqlDate(promptDate()).toLocalDate();
+            System.out.println("\tCheck-out date:");
+            LocalDate checkOut = toSqlDate(promptDate()).toLocalDate();
+            Hotel.nights(checkIn, checkOut);
+
+            List < BookingRequest > items = new ArrayList < BookingRequest > ();
+            for (int room: rooms)
+                for (LocalDate night = checkIn; night.isBefore(checkOut); night = night.plusDays(1))
+                    items.add(new BookingRequest(hotelID, room, night));
+
+            List < BookingResult > results = esql.bookBlock(Integer.parseInt(curruserID), items);
+
+            int booked = 0;
+            long cost = 0;
+            System.out.println("--------------------------------------------------");
+            System.out.printf("| %-11s | %-12s | %-17s |\n", "Room Number", "Date", "Result");
+            System.out.println("--------------------------------------------------");
+            for (int i = 0; i < items.size(); i++) {
+                BookingResult r = results.get(i);
+                if (r.isBooked()) {
+                    booked++;
+                    cost += Long.parseLong(r.price.trim());
+                }
+                System.out.printf("| %-11s | %-12s | %-17s |\n", items.get(i).roomNumber, items.get(i).date, r.status);
+            }
+            System.out.println("--------------------------------------------------");
+            System.out.println("Booked " + booked + " of " + items.size() + " room-nights. \nYour cost: $" + cost);
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    public static void viewRecentBookingsfromCustomer(Hotel esql) {
+        try {
+            // Get the user ID of the currently logged in user
+            int userID = Integer.parseInt(curruserID);
+
+            List < List < String >> results = esql.recentBookings(userID);
+            if (results.isEmpty()) {
+                System.out.println("No bookings found for current customer.");
+            } else {
+                System.out.println("Recent bookings for current customer:");
+                System.out.println("-----------------------------------------------------");
+                System.out.printf("| %-10s | %-10s | %-15s | %-10s |\n", "hotelID", "roomNumber", "bookingDate", "price");
+                System.out.println("-----------------------------------------------------");
+                for (List < String > row: results) {
+                    System.out.printf("| %-10s | %-10s | %-15s | %-10s |\n", row.get(0), row.get(1), row.get(2), row.get(3));
+                }
+                System.out.println("-----------------------------------------------------");
+            }
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+        }
+    }
+    public static void updateRoomInfo(Hotel esql) {
+        try {
+            // the role was read once, at log in
+            if (!session.isManager()) {
+                System.out.println("Only managers can access this option.");
+                return;
+            }
+
+            // Get the user ID of the logged in manager
+            int managerID = Integer.parseInt(curruserID);
+
+            // Ask for the hotel ID and room number to update
+            System.out.print("Enter hotel ID: ");
+            int hotelID = Integer.parseInt( in .readLine());
+            System.out.print("Enter room number: ");
+            int roomNumber = Integer.parseInt( in .readLine());
+
+            // Check if the manager manages the specified hotel
+            if (!session.manages(hotelID)) {
+                System.out.println("You don't manage the specified hotel.");
+                return;
+            }
+
+            // Check the room exists
+            if (!esql.roomExists(hotelID, roomNumber)) {
+                System.out.println("Room not found.");
+                return;
+            }
+
+            // Ask for the new room information
+            System.out.print("Enter new price: ");
+            int price = Integer.parseInt( in .readLine());
+            System.out.print("Enter new image URL: ");
+            String imageURL = in .readLine();
+
+            // Update the Rooms table and log the room update in the RoomUpdatesLog table
+            esql.updateRoom(managerID, hotelID, roomNumber, price, imageURL);
+
+            System.out.println("Room information updated successfully.");
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    public static void repriceRooms(Hotel esql) {
+        try {
+            if (!session.isManager()) {
+                System.out.println("Only managers can access this option.");
+                return;
+            }
+            int hotelID = isHotelManager(esql);
+
+            // Ask which rooms change; blank answers leave that filter open
+            int fromRoom = readInt("Enter lowest room number (blank for all): ", Integer.MIN_VALUE);
+            int toRoom = readInt("Enter highest room number (blank for all): ", Integer.MAX_VALUE);
+            int minPrice = readInt("Enter lowest current price (blank for any): ", Integer.MIN_VALUE);
+            int maxPrice = readInt("Enter highest current price (blank for any): ", Integer.MAX_VALUE);
+
+            // Ask how the prices change
+            System.out.print("Enter change in percent, e.g. -10 (blank for none): ");
+            String percent = in .readLine().trim();
+            int amount = readInt("Enter change in dollars, e.g. 25 (blank for none): ", 0);
+            System.out.print("Enter new image URL (blank to keep): ");
+            String imageURL = in .readLine().trim();
+
+            List < List < String >> changed = esql.repriceRooms(session.userID, new PriceChange(hotelID, fromRoom, toRoom,
+                minPrice, maxPrice, percent.isEmpty() ? 0 : Double.parseDouble(percent), amount, imageURL.isEmpty() ? null : imageURL));
+
+            System.out.println("------------------------------------------");
+            System.out.printf("| %-11s | %-10s | %-10s |\n", "Room Number", "Old Price", "New Price");
+            System.out.println("------------------------------------------");
+            for (List < String > row: changed)
+                System.out.printf("| %-11s | %-10s | %-10s |\n", row.get(0), row.get(1), row.get(2));
+            System.out.println("------------------------------------------");
+            System.out.println("Repriced " + changed.size() + " room(s).");
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    public static void viewOccupancy(Hotel esql) {
+        try {
+            if (!session.isManager()) {
+                System.out.println("Only managers can access this option.");
+                return;
+            }
+            int hotelID = isHotelManager(esql);
+
+            // Every year at a glance, or one year by month and by room
+            int year = readInt("Enter year (blank for every year): ", 0);
+            if (year == 0) {
+                printOccupancy("Year", esql.occupancyByYear(hotelID));
+            } else {
+                printOccupancy("Month", esql.occupancyByMonth(hotelID, year));
+                printOccupancy("Room Number", esql.occupancyByRoom(hotelID, year));
+            }
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    public static void printOccupancy(String label, List < List < String >> rows) {
+        System.out.println("------------------------------------------------------------------------");
+        System.out.printf("| %-11s | %-12s | %-12s | %-11s | %-12s |\n", label, "Booked", "Room-nights", "Occupancy %", "Revenue");
+        System.out.println("------------------------------------------------------------------------");
+        for (List < String > row: rows)
+            System.out.printf("| %-11s | %-12s | %-12s | %-11s | %-12s |\n", row.get(0), row.get(1), row.get(2), row.get(3), row.get(4));
+        System.out.println("------------------------------------------------------------------------");
+    }
+
+    public static void viewRecentUpdates(Hotel esql) {
+        try {
+            // the role was read once, at log in
+            if (!session.isManager()) {
+                System.out.println("Only managers can access this option.");
+                return;
+            }
+
+            // Get the user ID of the logged in manager
+            int managerID = Integer.parseInt(curruserID);
+
+            // Get the recent room updates for the specified hotel
+            List < List < String >> updatesResult = esql.recentUpdates(managerID);
+
+            // Print the recent room updates
+            System.out.println("Recent room updates :");
+            if (updatesResult.isEmpty()) {
+                System.out.println("No updates found.");
+            } else {
+                for (List < String > update: updatesResult) {
+                    String manager = update.get(0);
+                    String room = update.get(2);
+                    String date = update.get(3);
+                    System.out.println("- Manager " + manager + " updated room " + room + " on " + date);
+                }
+            }
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    public static void viewBookingHistoryofHotel(Hotel esql) {
+        try {
+            // the role was read once, at log in
+            if (!session.isManager()) {
+                System.out.println("Only managers can access this option.");
+                return;
+            }
+
+            // Ask for the hotel ID to view booking history
+            System.out.print("Enter hotel ID: ");
+            int hotelID = Integer.parseInt( in .readLine());
+
+            // Check if the manager manages the specified hotel
+            if (!session.manages(hotelID)) {
+                System.out.println("You don't manage the specified hotel.");
+                return;
+            }
+
+            // Ask for the date range to view booking history
+            SimpleDateFormat sdf = new SimpleDateFormat("MM/dd/yyyy");
+            System.out.print("Enter start date (mm/dd/yyyy): ");
+            String startDateStr = in .readLine();
+            System.out.print("Enter end date (mm/dd/yyyy): ");
+            String endDateStr = in .readLine();
+
+            // Parse the date range
+            Date startDate = sdf.parse(startDateStr);
+            Date endDate = sdf.parse(endDateStr);
+
+            // Query the RoomBookings table to get the booking history for the specified hotel and date range,
+            // printing each booking as it arrives
+            System.out.println("Booking history for hotel " + hotelID + " from " + startDateStr + " to " + endDateStr + ":");
+            long numBookings = esql.bookingHistory(hotelID,
+                new java.sql.Date(startDate.getTime()).toLocalDate(), new java.sql.Date(endDate.getTime()).toLocalDate(),
+                new RowHandler() {
+                    public void row(ResultSet booking) throws SQLException {
+                        String bookingID = booking.getString(1);
+                        String customerName = booking.getString(2);
+                        String roomNumber = booking.getString(4);
+                        String bookingDate = booking.getString(5);
+                        System.out.println("- Booking ID: " + bookingID + ", Customer Name: " + customerName.trim() + ", Room Number: " + roomNumber + ", Booking Date: " + bookingDate);
+                    }
+                });
+            if (numBookings == 0) {
+                System.out.println("No bookings found.");
+            }
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    public static void viewRegularCustomers(Hotel esql) {
+        try {
+            // the role was read once, at log in
+            if (!session.isManager()) {
+                System.out.println("Only managers can access this option.");
+                return;
+            }
+
+            // Ask for the hotel ID to view regular customers
+            System.out.print("Enter hotel ID: ");
+            int hotelID = Integer.parseInt( in .readLine());
+
+            // Check if the manager manages the specified hotel
+            if (!session.manages(hotelID)) {
+                System.out.println("You don't manage the specified hotel.");
+                return;
+            }
+
+            // Query the RoomBookings table to get the top 5 regular customers for the specified hotel
+            List < List < String >> regularCustomersResult = esql.regularCustomers(hotelID);
+
+            // Print the regular customers in a table format
+            System.out.println("------------------------------------------------");
+            System.out.printf("| %-20s | %-20s |\n", "Customer Name", "Number of Bookings");
+            System.out.println("------------------------------------------------");
+            if (regularCustomersResult.isEmpty()) {
+                System.out.println("| No regular customers found.                |");
+            } else {
+                for (List < String > customer: regularCustomersResult) {
+                    String customerName = customer.get(0);
+                    String numBookings = customer.get(1);
+                    System.out.printf("| %-20s | %-20s |\n", customerName.trim(), numBookings);
+                }
+            }
+            System.out.println("------------------------------------------------");
+            System.out.println("Total row(s): " + regularCustomersResult.size());
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    public static void placeRoomRepairRequests(Hotel esql) {
+        try {
+
+            // Ask for the hotel ID, room, companyID, DATE
+            //System.out.print("Enter hotel ID: ");
+            int hotelID = isHotelManager(esql);
+            List < Integer > rooms = validRooms(esql, hotelID);
+            int companyID = validCompany(esql);
+            LocalDate repairDate = toSqlDate(promptDate()).toLocalDate();
+            int days = readInt("Enter number of days out of service (1-" + Hotel.MAX_REPAIR_DAYS + ", default 1): ", 1);
+
+            // INSERT INTO RoomRepairs table, every room in one statement
+            List < RepairRequest > items = new ArrayList < RepairRequest > (rooms.size());
+            for (int room: rooms)
+                items.add(new RepairRequest(companyID, hotelID, room, repairDate, days));
+            List < Integer > repairIDs = esql.placeRepairs(items);
+            System.out.println("Scheduled " + repairIDs.size() + " repair(s) from " + repairDate + " for " + days + " day(s), repairIDs " + repairIDs + ".");
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    public static void viewRoomRepairHistory(Hotel esql) {
+        try {
+
+            final boolean[] header = { false };
+            long numRepairs = esql.repairHistory(Integer.parseInt(curruserID), new RowHandler() {
+                public void row(ResultSet row) throws SQLException {
+                    if (!header[0]) {
+                        System.out.println("Room Repair History:");
+                        System.out.println("-------------------------------------------------------------");
+                        System.out.printf("| %-10s | %-10s | %-10s | %-10s | %-4s |\n", "CompanyID", "HotelID", "Room Number", "RepairDate", "Days");
+                        System.out.println("-------------------------------------------------------------");
+                        header[0] = true;
+                    }
+                    System.out.printf("| %-10s | %-10s | %-11s | %-10s | %-4s |\n", row.getString(1), row.getString(2), row.getString(3), row.getString(4), row.getString(5));
+                }
+            });
+            if (numRepairs == 0) {
+                System.out.println("No bookings found for current customer.");
+            } else {
+                System.out.println("-------------------------------------------------------------");
+            }
+        } catch (Exception e) {
+            System.err.println(e.getMessage());
+        }
+    }
+
+    /*================= HELPER FUNC ====================*/
+
+    public static void printHotels(List < HotelLocator.Match > results) {
+        System.out.println("-------------------------------------------------------------------------------------------");
+        System.out.printf("| %-10s | %-30s | %-15s | %-15s | %-8s |\n", "Hotel ID", "Hotel Name", "Latitude", "Longitude", "Distance");
+        System.out.println("-------------------------------------------------------------------------------------------");
+        for (HotelLocator.Match m: results) {
+            System.out.printf("| %-10s | %-30s | %-15s | %-15s | %-8.2f |\n", m.hotel.hotelID, m.hotel.hotelName, m.hotel.latitude, m.hotel.longitude, m.distance);
+        }
+        System.out.println("-------------------------------------------------------------------------------------------");
+        System.out.println("Total row(s): " + results.size());
+    }
+
+    public static int isHotelManager(Hotel esql) {
+
+        int hotelID;
+        do { // Ask for the hotel ID and room number to update
+            try {
+                System.out.print("Enter hotel ID: ");
+                hotelID = Integer.parseInt( in .readLine());
+
+                // Check if the manager manages the specified hotel
+                if (!session.manages(hotelID)) {
+                    System.out.println("You don't manage the specified hotel.\n");
+
+                } else
+                    return hotelID;
+            } catch (Exception e) {
+                System.err.println(e.getMessage());
+            }
+        } while (true);
+    }
+
+    // reads an integer, or returns fallback when the answer is blank
+    public static int readInt(String prompt, int fallback) throws IOException {
+        System.out.print(prompt);
+        String input = in .readLine().trim();
+        return input.isEmpty() ? fallback : Integer.parseInt(input);
+    }
+
+    public static String promptDate() {
+        String inputDate;
+        Date currDate = new Date();
+        do {
+            try { // Ask the user for the booking date
+                System.out.print("\tEnter Date (mm/dd/yyyy): ");
+
+                inputDate = in .readLine().trim();
+                DateTimeFormatter formatter = DateTimeFormatter.ofPattern("MM/dd/yyyy");
+                LocalDate formattedDate = LocalDate.parse(inputDate, formatter);
+                if (formattedDate.isBefore(LocalDate.now())) {
+                    System.out.print("\t The date you entered is not valid. Please enter a date that has not yet passed.  \n");
+                    continue;
+                } else
+                    break;
+            } catch (Exception e) {
+                System.err.println(e.getMessage());
+                continue;
+            }
+        } while (true);
+        return inputDate;
+    }
+
+    // most rooms in one range of a room list
+    static final int MAX_ROOM_RANGE = 10000;
+
+    /*
+     * Parses a list of room numbers and ranges such as "1,2,10-20".
+     **/
+    public static List < Integer > parseRoomList(String text) {
+        return parseRoomList(text, Integer.MAX_VALUE);
+    }
+
+    /*
+     * Parses a list of room numbers and ranges, refusing one of more than
+     * maxRooms rooms before building it.
+     **/
+    public static List < Integer > parseRoomList(String text, int maxRooms) {
+        List < Integer > rooms = new ArrayList < Integer > ();
+        for (String part: text.split(",")) {
+            part = part.trim();
+            if (part.isEmpty())
+                continue;
+            int dash = part.indexOf('-');
+            if (dash < 0) {
+                if (rooms.size() >= maxRooms)
+                    throw new IllegalArgumentException("More than " + maxRooms + " rooms given");
+                rooms.add(Integer.parseInt(part));
+            } else {
+                int first = Integer.parseInt(part.substring(0, dash).trim());
+                int last = Integer.parseInt(part.substring(dash + 1).trim());
+                if ((long) last - first >= MAX_ROOM_RANGE)
+                    throw new IllegalArgumentException("Room range too large: " + part);
+                if ((long) rooms.size() + last - first >= maxRooms)
+                    throw new IllegalArgumentException("More than " + maxRooms + " rooms given");
+                for (int room = first; room <= last; room++)
+                    rooms.add(room);
+            }
+        }
+        return rooms;
+    }
+
+    public static java.sql.Date toSqlDate(String mmddyyyy) {
+        return java.sql.Date.valueOf(LocalDate.parse(mmddyyyy.trim(), DateTimeFormatter.ofPattern("MM/dd/yyyy")));
+    }
+
+    /*
+     * Asks for room numbers and ranges such as "1,2,10-20" until every room
+     * exists in the hotel.
+     **/
+    public static List < Integer > validRooms(Hotel esql, int hotelID) {
+        while (true) {
+            try {
+                System.out.print("Enter room numbers (e.g. 1,2,10-20): ");
+                List < Integer > rooms = parseRoomList( in .readLine());
+                if (rooms.isEmpty()) {
+                    System.out.println("No rooms entered.");
+                    continue;
+                }
+                List < Integer > missing = new ArrayList < Integer > ();
+                for (int room: rooms)
+                    if (!esql.roomExists(hotelID, room))
+                        missing.add(room);
+                if (missing.isEmpty())
+                    return rooms;
+                System.out.println("No such room(s) in hotel " + hotelID + ": " + missing);
+            } catch (Exception e) {
+                System.out.println("Your input is invalid!");
+            }
+        }
+    }
+
+    public static int validRoom(Hotel esql, int hotelID) {
+        int roomNumber;
+        do {
+            try {
+                System.out.print("Enter room number: ");
+                roomNumber = Integer.parseInt( in .readLine());
+
+                // Check the room exists
+                if (!esql.roomExists(hotelID, roomNumber)) {
+                    System.out.println("Room not found.");
+                    continue;
+                } else
+                    return roomNumber;
+            } catch (Exception e) {
+                System.err.println(e.getMessage());
+            }
+        } while (true);
+    }
+
+    public static int validCompany(Hotel esql) {
+        int companyID;
+        do {
+            try {
+                System.out.print("Enter Company ID: ");
+                companyID = Integer.parseInt( in .readLine());
+
+                // Check the company exists
+                if (!esql.companyExists(companyID)) {
+                    System.out.println("Room not found.");
+                    continue;
+                } else
+                    return companyID;
+            } catch (Exception e) {
+                System.err.println(e.getMessage());
+            }
+        } while (true);
+    }
+
+
+    /*============== END HELPER FUNC ==========================*/
+
+} //end HotelConsole
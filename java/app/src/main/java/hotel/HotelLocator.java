@@ -0,0 +1,269 @@
+package hotel;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+
+/**
+ * In-process proximity index over the Hotel table.  Hotels are bucketed into
+ * a uniform grid of square cells so that a radius or k-nearest search only
+ * visits the cells around the search point instead of every hotel.  The exact
+ * distance check uses Hotel.calculateDistance, which matches the
+ * calculate_distance() SQL function.
+ *
+ */
+public class HotelLocator {
+
+    /**
+     * A hotel as seen by the locator.
+     */
+    public static class Location {
+        public final int hotelID;
+        public final String hotelName;
+        public final double latitude;
+        public final double longitude;
+
+        public Location(int hotelID, String hotelName, double latitude, double longitude) {
+            this.hotelID = hotelID;
+            this.hotelName = hotelName;
+            this.latitude = latitude;
+            this.longitude = longitude;
+        }
+    } //end Location
+
+    /**
+     * A search hit: the hotel and its distance from the search point.
+     */
+    public static class Match {
+        public final Location hotel;
+        public final double distance;
+
+        public Match(Location hotel, double distance) {
+            this.hotel = hotel;
+            this.distance = distance;
+        }
+    } //end Match
+
+    private static final Comparator < Match > BY_DISTANCE = new Comparator < Match > () {
+        public int compare(Match a, Match b) {
+            int c = Double.compare(a.distance, b.distance);
+            return c != 0 ? c : Integer.compare(a.hotel.hotelID, b.hotel.hotelID);
+        }
+    };
+
+    // aim for roughly this many hotels per grid cell
+    private static final double HOTELS_PER_CELL = 2.0;
+
+    private final double cellSize;
+    private final Map < Long, List < Location >> cells = new HashMap < Long, List < Location >> ();
+    private final int size;
+    private int minCellX = Integer.MAX_VALUE, maxCellX = Integer.MIN_VALUE;
+    private int minCellY = Integer.MAX_VALUE, maxCellY = Integer.MIN_VALUE;
+
+    /**
+     * Builds the grid over the given hotels.  The cell size is derived from the
+     * bounding box of the data so that cells hold a handful of hotels each.
+     *
+     * @param hotels the hotels to index
+     */
+    public HotelLocator(List < Location > hotels) {
+        this.size = hotels.size();
+        this.cellSize = chooseCellSize(hotels);
+        for (Location h: hotels) {
+            int cx = cellOf(h.latitude);
+            int cy = cellOf(h.longitude);
+            List < Location > cell = cells.get(key(cx, cy));
+            if (cell == null) {
+                cell = new ArrayList < Location > (4);
+                cells.put(key(cx, cy), cell);
+            }
+            cell.add(h);
+            minCellX = Math.min(minCellX, cx);
+            maxCellX = Math.max(maxCellX, cx);
+            minCellY = Math.min(minCellY, cy);
+            maxCellY = Math.max(maxCellY, cy);
+        }
+    } //end HotelLocator
+
+    /**
+     * Loads every hotel from every shard and builds a locator over them.
+     *
+     * @param esql the database handle
+     * @return a locator over the current contents of the Hotel table
+     * @throws java.sql.SQLException when failed to execute the query
+     */
+    public static HotelLocator load(Hotel esql) throws SQLException {
+        List < List < String >> rows = esql.executeQueryOnAllShards(
+            "SELECT hotelID, hotelName, latitude, longitude FROM Hotel");
+        List < Location > hotels = new ArrayList < Location > (rows.size());
+        for (List < String > row: rows) {
+            if (row.get(2) == null || row.get(3) == null)
+                continue; // no coordinates, can never be within any radius
+            hotels.add(new Location(Integer.parseInt(row.get(0).trim()), row.get(1).trim(),
+                Double.parseDouble(row.get(2)), Double.parseDouble(row.get(3))));
+        }
+        return new HotelLocator(hotels);
+    } //end load
+
+    /**
+     * @return the number of hotels in the index
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Finds every hotel within the given distance of a point.  Only the cells
+     * overlapping the bounding box of the search circle are visited.
+     *
+     * @param latitude latitude of the search point
+     * @param longitude longitude of the search point
+     * @param radius the maximum distance (inclusive)
+     * @return the matching hotels ordered by distance
+     */
+    public List < Match > withinRadius(double latitude, double longitude, double radius) {
+        List < Match > result = new ArrayList < Match > ();
+        if (size == 0 || radius < 0)
+            return result;
+        int x0 = Math.max(cellOf(latitude - radius), minCellX);
+        int x1 = Math.min(cellOf(latitude + radius), maxCellX);
+        int y0 = Math.max(cellOf(longitude - radius), minCellY);
+        int y1 = Math.min(cellOf(longitude + radius), maxCellY);
+        for (int cx = x0; cx <= x1; cx++) {
+            for (int cy = y0; cy <= y1; cy++) {
+                List < Location > cell = cells.get(key(cx, cy));
+                if (cell == null)
+                    continue;
+                for (Location h: cell) {
+                    double d = Hotel.calculateDistance(latitude, longitude, h.latitude, h.longitude);
+                    if (d <= radius)
+                        result.add(new Match(h, d));
+                }
+            }
+        }
+        Collections.sort(result, BY_DISTANCE);
+        return result;
+    } //end withinRadius
+
+    /**
+     * Finds the k hotels closest to a point.  The search visits rings of cells
+     * around the point's cell, walking only the part of each ring's perimeter
+     * that lies on the grid, and stops as soon as no unvisited cell can hold
+     * a hotel closer than the current k-th best or the rings have passed the
+     * whole grid.  A point far outside the grid starts at the first ring that
+     * reaches it, so the work is bounded by the grid, not by the distance.
+     *
+     * @param latitude latitude of the search point
+     * @param longitude longitude of the search point
+     * @param k the number of hotels wanted
+     * @return up to k hotels ordered by distance
+     */
+    public List < Match > nearest(double latitude, double longitude, int k) {
+        List < Match > result = new ArrayList < Match > ();
+        if (size == 0 || k <= 0)
+            return result;
+        k = Math.min(k, size);
+
+        // max-heap on distance holding the best k seen so far
+        PriorityQueue < Match > best = new PriorityQueue < Match > (k + 1, Collections.reverseOrder(BY_DISTANCE));
+        long px = cellOf(latitude);
+        long py = cellOf(longitude);
+        // rings before firstRing miss the grid, rings after lastRing lie wholly outside it
+        long firstRing = Math.max(Math.max(minCellX - px, px - maxCellX), Math.max(minCellY - py, py - maxCellY));
+        firstRing = Math.max(firstRing, 0);
+        long lastRing = Math.max(Math.max(px - minCellX, maxCellX - px), Math.max(py - minCellY, maxCellY - py));
+
+        for (long ring = firstRing; ring <= lastRing; ring++) {
+            if (best.size() == k) {
+                // every hotel in this ring or beyond is at least this far away
+                double ringDistance = distanceToRing(latitude, longitude, px, py, ring);
+                if (ringDistance > best.peek().distance)
+                    break;
+            }
+            long y0 = Math.max(py - ring, minCellY);
+            long y1 = Math.min(py + ring, maxCellY);
+            // top and bottom rows of the ring, corners included
+            if (px - ring >= minCellX)
+                scanRow(px - ring, y0, y1, latitude, longitude, k, best);
+            if (ring > 0 && px + ring <= maxCellX)
+                scanRow(px + ring, y0, y1, latitude, longitude, k, best);
+            // left and right columns, without the corners
+            long x0 = Math.max(px - ring + 1, minCellX);
+            long x1 = Math.min(px + ring - 1, maxCellX);
+            for (long cx = x0; cx <= x1; cx++) {
+                if (py - ring >= minCellY)
+                    scanCell(cx, py - ring, latitude, longitude, k, best);
+                if (ring > 0 && py + ring <= maxCellY)
+                    scanCell(cx, py + ring, latitude, longitude, k, best);
+            }
+        }
+        result.addAll(best);
+        Collections.sort(result, BY_DISTANCE);
+        return result;
+    } //end nearest
+
+    private void scanRow(long cx, long y0, long y1, double latitude, double longitude, int k, PriorityQueue < Match > best) {
+        for (long cy = y0; cy <= y1; cy++)
+            scanCell(cx, cy, latitude, longitude, k, best);
+    }
+
+    /*
+     * Offers the hotels of one cell to the heap of the k best.
+     **/
+    private void scanCell(long cx, long cy, double latitude, double longitude, int k, PriorityQueue < Match > best) {
+        List < Location > cell = cells.get(key((int) cx, (int) cy));
+        if (cell == null)
+            return;
+        for (Location h: cell) {
+            Match m = new Match(h, Hotel.calculateDistance(latitude, longitude, h.latitude, h.longitude));
+            if (best.size() < k) {
+                best.add(m);
+            } else if (BY_DISTANCE.compare(m, best.peek()) < 0) {
+                best.poll();
+                best.add(m);
+            }
+        }
+    } //end scanCell
+
+    /*
+     * Lower bound on the distance from the point to any cell in the given
+     * ring: the gap between the point and the inner edge of the ring.
+     **/
+    private double distanceToRing(double latitude, double longitude, long px, long py, long ring) {
+        if (ring == 0)
+            return 0;
+        double inX = Math.min(latitude - (px - ring + 1) * cellSize, (px + ring) * cellSize - latitude);
+        double inY = Math.min(longitude - (py - ring + 1) * cellSize, (py + ring) * cellSize - longitude);
+        return Math.max(0, Math.min(inX, inY));
+    }
+
+    private int cellOf(double coordinate) {
+        return (int) Math.floor(coordinate / cellSize);
+    }
+
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+
+    private static double chooseCellSize(List < Location > hotels) {
+        if (hotels.size() < 2)
+            return 1.0;
+        double minX = Double.MAX_VALUE, maxX = -Double.MAX_VALUE;
+        double minY = Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (Location h: hotels) {
+            minX = Math.min(minX, h.latitude);
+            maxX = Math.max(maxX, h.latitude);
+            minY = Math.min(minY, h.longitude);
+            maxY = Math.max(maxY, h.longitude);
+        }
+        double area = Math.max(maxX - minX, 1e-6) * Math.max(maxY - minY, 1e-6);
+        return Math.max(Math.sqrt(area * HOTELS_PER_CELL / hotels.size()), 1e-6);
+    }
+
+} //end HotelLocator
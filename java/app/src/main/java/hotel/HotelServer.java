@@ -0,0 +1,865 @@
+package hotel;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.security.SecureRandom;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * HTTP/JSON front end for the Hotel operations.  Every request is handled on
+ * its own thread (a virtual thread when the JVM supports them) and carries
+ * its own Session, looked up from the bearer token issued by POST /login, so
+ * one process can serve many guests and managers over the shared connection
+ * pool.
+ *
+ * Parameters are read from the query string and, for POST requests, from an
+ * application/x-www-form-urlencoded body.  Dates use the ISO yyyy-mm-dd form.
+ *
+ */
+public class HotelServer {
+
+    public static final int DEFAULT_HTTP_PORT = 8080;
+    public static final int DEFAULT_POOL_SIZE = 32;
+
+    // most hotels returned by /hotels/nearest, as RoomSearch.MAX_LIMIT caps a search page
+    public static final int MAX_NEAREST = 100;
+
+    // sessions idle for longer than this are dropped
+    static final long SESSION_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    // most sessions held at once; logging in beyond this drops the least recently used ones
+    static final int MAX_SESSIONS = Integer.getInteger("hotel.server.maxSessions", 100000);
+
+    // largest request body, or query string, that is read
+    public static final int MAX_BODY_BYTES = 256 * 1024;
+
+    // most room-nights in one POST /bookings/block, and rooms in one POST /manager/repairs/block
+    public static final int MAX_BLOCK_ITEMS = 2000;
+
+    enum Access { PUBLIC, USER, MANAGER }
+
+    /**
+     * One API operation.  Returns an object that is rendered as JSON.
+     */
+    interface Route {
+        Object handle(Request req) throws Exception;
+    }
+
+    /**
+     * A streamed report: runs a query and hands its rows to the handler as
+     * they arrive from the database.
+     */
+    interface RowSource {
+        long run(RowHandler handler) throws SQLException;
+    }
+
+    /**
+     * A route result that is written to the client row by row as a JSON
+     * array, instead of being built in memory first.
+     */
+    static class StreamedRows {
+        final RowSource source;
+        final String[] names;
+
+        StreamedRows(RowSource source, String... names) {
+            this.source = source;
+            this.names = names;
+        }
+    } //end StreamedRows
+
+    /**
+     * Thrown by a route to answer with a specific HTTP status.
+     */
+    static class HttpError extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        HttpError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    } //end HttpError
+
+    /**
+     * The parsed parameters and session of one HTTP request.
+     */
+    static class Request {
+        final Map < String, String > params;
+        final Session session;
+        final String token;
+
+        Request(Map < String, String > params, Session session, String token) {
+            this.params = params;
+            this.session = session;
+            this.token = token;
+        }
+
+        String string(String name) {
+            String v = params.get(name);
+            if (v == null || v.isEmpty())
+                throw new HttpError(400, "Missing parameter: " + name);
+            return v;
+        }
+
+        String string(String name, String fallback) {
+            String v = params.get(name);
+            return v == null || v.isEmpty() ? fallback : v;
+        }
+
+        int integer(String name) {
+            try {
+                return Integer.parseInt(string(name).trim());
+            } catch (NumberFormatException e) {
+                throw new HttpError(400, "Invalid integer for " + name);
+            }
+        }
+
+        int integer(String name, int fallback) {
+            return params.containsKey(name) ? integer(name) : fallback;
+        }
+
+        double decimal(String name) {
+            try {
+                return Double.parseDouble(string(name).trim());
+            } catch (NumberFormatException e) {
+                throw new HttpError(400, "Invalid number for " + name);
+            }
+        }
+
+        double decimal(String name, double fallback) {
+            return params.containsKey(name) ? decimal(name) : fallback;
+        }
+
+        double decimal(String name, double min, double max) {
+            double v = decimal(name);
+            if (!(v >= min && v <= max)) // also rejects NaN
+                throw new HttpError(400, name + " must be " + min + " to " + max);
+            return v;
+        }
+
+        LocalDate date(String name) {
+            try {
+                return LocalDate.parse(string(name).trim());
+            } catch (DateTimeParseException e) {
+                throw new HttpError(400, "Invalid date for " + name + ", expected yyyy-mm-dd");
+            }
+        }
+
+        LocalDate futureDate(String name) {
+            LocalDate d = date(name);
+            if (d.isBefore(LocalDate.now()))
+                throw new HttpError(400, name + " must be today or a future date");
+            return d;
+        }
+    } //end Request
+
+    private static class SessionEntry {
+        final Session session;
+        volatile long lastSeen;
+
+        SessionEntry(Session session) {
+            this.session = session;
+            this.lastSeen = System.currentTimeMillis();
+        }
+    } //end SessionEntry
+
+    private final Hotel esql;
+    private final Map < String, Route > routes = new HashMap < String, Route > ();
+    private final Map < String, Access > access = new HashMap < String, Access > ();
+    private final ConcurrentHashMap < String, SessionEntry > sessions = new ConcurrentHashMap < String, SessionEntry > ();
+    private final SecureRandom random = new SecureRandom();
+
+    public HotelServer(Hotel esql) {
+        this.esql = esql;
+        registerRoutes();
+    }
+
+    /**
+     * The main execution method
+     *
+     * @param args <dbname> <port> <user> [httpPort] [poolSize] [<replica dbname> <replica port>]...
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println(
+                "Usage: " +
+                "java [-classpath <classpath>] " +
+                HotelServer.class.getName() +
+                " <dbname> <port> <user> [httpPort] [poolSize] [<replica dbname> <replica port>]...");
+            return;
+        } //end if
+
+        Class.forName("org.postgresql.Driver");
+        int httpPort = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_HTTP_PORT;
+        int poolSize = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_POOL_SIZE;
+        String[] replicas = args.length > 5 ? Arrays.copyOfRange(args, 5, args.length) : new String[0];
+        final Hotel esql = new Hotel(args[0], args[1], args[2], "", poolSize, replicas);
+
+        final HotelServer server = new HotelServer(esql);
+        final HttpServer http = server.start(httpPort);
+        Runtime.getRuntime().addShutdownHook(new Thread() {
+            public void run() {
+                http.stop(1);
+                esql.cleanup();
+            }
+        });
+        System.out.println("Listening on port " + httpPort);
+    } //end main
+
+    /**
+     * Binds the HTTP listener and starts serving.
+     *
+     * @param httpPort the TCP port to listen on
+     * @return the running server
+     * @throws java.io.IOException when the port cannot be bound
+     */
+    public HttpServer start(int httpPort) throws IOException {
+        HttpServer http = HttpServer.create(new InetSocketAddress(httpPort), 1024);
+        http.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                dispatch(exchange);
+            }
+        });
+        http.setExecutor(newRequestExecutor());
+        http.start();
+
+        ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(daemonThreads());
+        sweeper.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                expireSessions();
+            }
+        }, 1, 1, TimeUnit.MINUTES);
+        return http;
+    } //end start
+
+    /*
+     * One virtual thread per request when running on a JVM that has them,
+     * otherwise a plain thread per request.
+     **/
+    static ExecutorService newRequestExecutor() {
+        try {
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (Exception e) {
+            return Executors.newCachedThreadPool(daemonThreads());
+        }
+    }
+
+    private static java.util.concurrent.ThreadFactory daemonThreads() {
+        return new java.util.concurrent.ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r);
+                t.setDaemon(true);
+                return t;
+            }
+        };
+    }
+
+    private void route(String method, String path, Access level, Route r) {
+        routes.put(method + " " + path, r);
+        access.put(method + " " + path, level);
+    }
+
+    /*================= ROUTES ====================*/
+
+    private void registerRoutes() {
+        route("POST", "/users", Access.PUBLIC, new Route() {
+            public Object handle(Request req) throws Exception {
+                int userID = esql.createUser(req.string("name"), req.string("password"));
+                return object("userID", userID);
+            }
+        });
+        route("POST", "/login", Access.PUBLIC, new Route() {
+            public Object handle(Request req) throws Exception {
+                Session session = esql.logIn(req.integer("userID"), req.string("password"));
+                if (session == null)
+                    throw new HttpError(401, "Invalid userID or password");
+                String token = newToken();
+                if (sessions.size() >= MAX_SESSIONS)
+                    evictSessions();
+                sessions.put(token, new SessionEntry(session));
+                return object("token", token, "userID", session.userID, "userType", session.userType);
+            }
+        });
+        route("POST", "/logout", Access.USER, new Route() {
+            public Object handle(Request req) throws Exception {
+                sessions.remove(req.token);
+                return object("loggedOut", true);
+            }
+        });
+        route("GET", "/hotels", Access.USER, new Route() {
+            public Object handle(Request req) throws Exception {
+                return matches(esql.getHotelLocator().withinRadius(
+                    req.decimal("latitude", -90, 90), req.decimal("longitude", -180, 180), req.decimal("radius", 30)));
+            }
+        });
+        route("GET", "/hotels/nearest", Access.USER, new Route() {
+            public Object handle(Request req) throws Exception {
+                int k = req.integer("k", 5);
+                if (k < 1 || k > MAX_NEAREST)
+                    throw new HttpError(400, "k must be 1 to " + MAX_NEAREST);
+                return matches(esql.getHotelLocator().nearest(
+                    req.decimal("latitude", -90, 90), req.decimal("longitude", -180, 180), k));
+            }
+        });
+        route("GET", "/rooms/search", Access.USER, new Route() {
+            public Object handle(Request req) throws Exception {
+                String order = req.string("order", "price");
+                if (!order.equals("price") && !order.equals("distance"))
+                    throw new HttpError(400, "order must be price or distance");
+                RoomSearch search = new RoomSearch(req.decimal("latitude", -90, 90), req.decimal("longitude", -180, 180), req.decimal("radius", 30),
+                    req.futureDate("date"), req.integer("maxPrice", Integer.MAX_VALUE),
+                    order.equals("price") ? RoomSearch.Order.PRICE : RoomSearch.Order.DISTANCE,
+                    req.integer("offset", 0), req.integer("limit", 20));
+                List < Map < String, Object >> out = new ArrayList < Map < String, Object >> ();
+                for (RoomSearch.Hit h: esql.searchRooms(search))
+                    out.add(object("hotelID", h.hotel.hotelID, "hotelName", h.hotel.hotelName, "distance", h.distance,
+                        "roomNumber", h.roomNumber, "price", h.price));
+                return out;
+            }
+        });
+        route("GET", "/rooms", Access.USER, new Route() {
+            public Object handle(Request req) throws Exception {
+                int hotelID = req.integer("hotelID");
+                LocalDate date = req.futureDate("date");
+                if (!esql.hotelExists(hotelID))
+                    throw new HttpError(404, "No such hotel");
+                return rows(esql.listRooms(hotelID, date), "roomNumber", "price", "availability");
+            }
+        });
+        route("POST", "/bookings", Access.USER, new Route() {
+            public Object handle(Request req) throws Exception {
+                int hotelID = req.integer("hotelID");
+                int roomNumber = req.integer("roomNumber");
+                LocalDate date = req.futureDate("date");
+                BookingResult booking = esql.bookRoom(req.session.userID, hotelID, roomNumber, date);
+                if (booking.status == BookingResult.Status.NO_SUCH_ROOM)
+                    throw new HttpError(404, "No such room");
+                if (booking.status == BookingResult.Status.ALREADY_BOOKED)
+                    throw new HttpError(409, "Room already booked");
+                if (booking.status == BookingResult.Status.UNDER_REPAIR)
+                    throw new HttpError(409, "Room under repair");
+                return object("bookingID", booking.bookingID, "hotelID", hotelID, "roomNumber", roomNumber,
+                    "date", date.toString(), "price", booking.price);
+            }
+        });
+        route("GET", "/stays", Access.USER, new Route() {
+            public Object handle(Request req) throws Exception {
+                int hotelID = req.integer("hotelID");
+                LocalDate checkIn = req.futureDate("checkIn");
+                LocalDate checkOut = req.date("checkOut");
+                if (!esql.hotelExists(hotelID))
+                    throw new HttpError(404, "No such hotel");
+                return rows(esql.listRoomsForStay(hotelID, checkIn, checkOut), "roomNumber", "price", "total", "availability");
+            }
+        });
+        route("POST", "/stays", Access.USER, new Route() {
+            public Object handle(Request req) throws Exception {
+                int hotelID = req.integer("hotelID");
+                int roomNumber = req.integer("roomNumber");
+                LocalDate checkIn = req.futureDate("checkIn");
+                LocalDate checkOut = req.date("checkOut");
+                BookingResult booking = esql.bookStay(req.session.userID, hotelID, roomNumber, checkIn, checkOut);
+                if (booking.status == BookingResult.Status.NO_SUCH_ROOM)
+                    throw new HttpError(404, "No such room");
+                if (booking.status == BookingResult.Status.ALREADY_BOOKED)
+                    throw new HttpError(409, "Room already booked for part of the stay");
+                if (booking.status == BookingResult.Status.UNDER_REPAIR)
+                    throw new HttpError(409, "Room under repair for part of the stay");
+                return object("bookingID", booking.bookingID, "hotelID", hotelID, "roomNumber", roomNumber,
+                    "checkIn", checkIn.toString(), "checkOut", checkOut.toString(), "total", booking.price);
+            }
+        });
+        route("POST", "/bookings/block", Access.USER, new Route() {
+            public Object handle(Request req) throws Exception {
+                // items=hotelID:roomNumber:yyyy-mm-dd,hotelID:roomNumber:yyyy-mm-dd,...
+                String[] given = req.string("items").split(",");
+                if (given.length > MAX_BLOCK_ITEMS)
+                    throw new HttpError(400, "At most " + MAX_BLOCK_ITEMS + " items can be booked at once");
+                List < BookingRequest > items = new ArrayList < BookingRequest > (given.length);
+                for (String item: given) {
+                    String[] parts = item.trim().split(":");
+                    if (parts.length != 3)
+                        throw new HttpError(400, "Invalid item, expected hotelID:roomNumber:yyyy-mm-dd: " + item);
+                    LocalDate date = LocalDate.parse(parts[2].trim());
+                    if (date.isBefore(LocalDate.now()))
+                        throw new HttpError(400, "Dates must be today or in the future: " + item);
+                    items.add(new BookingRequest(Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()), date));
+                }
+                List < BookingResult > results = esql.bookBlock(req.session.userID, items);
+                List < Map < String, Object >> out = new ArrayList < Map < String, Object >> (items.size());
+                for (int i = 0; i < items.size(); i++) {
+                    BookingRequest item = items.get(i);
+                    BookingResult r = results.get(i);
+                    out.add(object("hotelID", item.hotelID, "roomNumber", item.roomNumber, "date", item.date.toString(),
+                        "status", r.status.name(), "bookingID", r.isBooked() ? r.bookingID : null,
+                        "price", r.price == null ? null : r.price.trim()));
+                }
+                return out;
+            }
+        });
+        route("GET", "/bookings", Access.USER, new Route() {
+            public Object handle(Request req) throws Exception {
+                return rows(esql.recentBookings(req.session.userID), "hotelID", "roomNumber", "bookingDate", "price");
+            }
+        });
+        route("POST", "/manager/rooms", Access.MANAGER, new Route() {
+            public Object handle(Request req) throws Exception {
+                int hotelID = managedHotel(req);
+                int roomNumber = req.integer("roomNumber");
+                if (!esql.updateRoom(req.session.userID, hotelID, roomNumber, req.integer("price"), req.string("imageURL", "")))
+                    throw new HttpError(404, "No such room");
+                return object("hotelID", hotelID, "roomNumber", roomNumber, "updated", true);
+            }
+        });
+        route("POST", "/manager/rooms/prices", Access.MANAGER, new Route() {
+            public Object handle(Request req) throws Exception {
+                int hotelID = managedHotel(req);
+                PriceChange change = new PriceChange(hotelID,
+                    req.integer("fromRoom", Integer.MIN_VALUE), req.integer("toRoom", Integer.MAX_VALUE),
+                    req.integer("minPrice", Integer.MIN_VALUE), req.integer("maxPrice", Integer.MAX_VALUE),
+                    req.decimal("percent", 0), req.integer("amount", 0), req.string("imageURL", null));
+                return rows(esql.repriceRooms(req.session.userID, change), "roomNumber", "oldPrice", "newPrice");
+            }
+        });
+        route("GET", "/manager/occupancy/years", Access.MANAGER, new Route() {
+            public Object handle(Request req) throws Exception {
+                return rows(esql.occupancyByYear(managedHotel(req)), "year", "bookedNights", "roomNights", "occupancy", "revenue");
+            }
+        });
+        route("GET", "/manager/occupancy/months", Access.MANAGER, new Route() {
+            public Object handle(Request req) throws Exception {
+                int hotelID = managedHotel(req);
+                return rows(esql.occupancyByMonth(hotelID, req.integer("year")), "month", "bookedNights", "roomNights", "occupancy", "revenue");
+            }
+        });
+        route("GET", "/manager/occupancy/rooms", Access.MANAGER, new Route() {
+            public Object handle(Request req) throws Exception {
+                int hotelID = managedHotel(req);
+                return rows(esql.occupancyByRoom(hotelID, req.integer("year")), "roomNumber", "bookedNights", "nights", "occupancy", "revenue");
+            }
+        });
+        route("GET", "/manager/updates", Access.MANAGER, new Route() {
+            public Object handle(Request req) throws Exception {
+                return rows(esql.recentUpdates(req.session.userID), "managerID", "hotelID", "roomNumber", "updatedOn");
+            }
+        });
+        route("GET", "/manager/bookings", Access.MANAGER, new Route() {
+            public Object handle(Request req) throws Exception {
+                final int hotelID = managedHotel(req);
+                final LocalDate from = req.date("from");
+                final LocalDate to = req.date("to");
+                return new StreamedRows(new RowSource() {
+                    public long run(RowHandler handler) throws SQLException {
+                        return esql.bookingHistory(hotelID, from, to, handler);
+                    }
+                }, "bookingID", "customerName", "hotelID", "roomNumber", "bookingDate");
+            }
+        });
+        route("GET", "/manager/regulars", Access.MANAGER, new Route() {
+            public Object handle(Request req) throws Exception {
+                return rows(esql.regularCustomers(managedHotel(req)), "customerName", "numBookings");
+            }
+        });
+        route("POST", "/manager/repairs", Access.MANAGER, new Route() {
+            public Object handle(Request req) throws Exception {
+                int hotelID = managedHotel(req);
+                int roomNumber = req.integer("roomNumber");
+                int companyID = req.integer("companyID");
+                LocalDate date = req.futureDate("date");
+                int days = req.integer("days", 1);
+                if (!esql.roomExists(hotelID, roomNumber))
+                    throw new HttpError(404, "No such room");
+                if (!esql.companyExists(companyID))
+                    throw new HttpError(404, "No such company");
+                int repairID = esql.placeRepair(companyID, hotelID, roomNumber, date, days);
+                return object("repairID", repairID, "hotelID", hotelID, "roomNumber", roomNumber, "companyID", companyID, "date", date.toString(), "days", days);
+            }
+        });
+        route("POST", "/manager/repairs/block", Access.MANAGER, new Route() {
+            public Object handle(Request req) throws Exception {
+                // rooms=1,2,10-20
+                int hotelID = managedHotel(req);
+                int companyID = req.integer("companyID");
+                LocalDate date = req.futureDate("date");
+                int days = req.integer("days", 1);
+                if (!esql.companyExists(companyID))
+                    throw new HttpError(404, "No such company");
+                List < RepairRequest > items = new ArrayList < RepairRequest > ();
+                for (int roomNumber: HotelConsole.parseRoomList(req.string("rooms"), MAX_BLOCK_ITEMS)) {
+                    if (!esql.roomExists(hotelID, roomNumber))
+                        throw new HttpError(404, "No such room: " + roomNumber);
+                    items.add(new RepairRequest(companyID, hotelID, roomNumber, date, days));
+                }
+                if (items.isEmpty())
+                    throw new HttpError(400, "No rooms given");
+                List < Integer > repairIDs = esql.placeRepairs(items);
+                return object("hotelID", hotelID, "companyID", companyID, "date", date.toString(), "days", days,
+                    "scheduled", repairIDs.size(), "repairIDs", repairIDs);
+            }
+        });
+        route("GET", "/manager/repairs", Access.MANAGER, new Route() {
+            public Object handle(Request req) throws Exception {
+                final int managerID = req.session.userID;
+                return new StreamedRows(new RowSource() {
+                    public long run(RowHandler handler) throws SQLException {
+                        return esql.repairHistory(managerID, handler);
+                    }
+                }, "companyID", "hotelID", "roomNumber", "repairDate", "repairDays");
+            }
+        });
+    } //end registerRoutes
+
+    /*
+     * Reads the hotelID parameter and checks the session's manager runs it.
+     **/
+    private int managedHotel(Request req) throws SQLException {
+        int hotelID = req.integer("hotelID");
+        if (!req.session.manages(hotelID))
+            throw new HttpError(403, "You don't manage the specified hotel");
+        return hotelID;
+    }
+
+    /*================= END ROUTES ====================*/
+
+    private void dispatch(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        String key = exchange.getRequestMethod() + " " + exchange.getRequestURI().getPath();
+        Route r = routes.get(key);
+        try {
+            respond(exchange, key, r);
+        } finally {
+            // per route, including writing the response; unknown paths are not counted
+            if (r != null)
+                esql.getMetrics().operation(key, start);
+        }
+    } //end dispatch
+
+    private void respond(HttpExchange exchange, String key, Route r) throws IOException {
+        int status = 200;
+        Object body;
+        try {
+            if (r == null)
+                throw new HttpError(404, "Unknown operation: " + key);
+
+            String token = bearerToken(exchange);
+            Session session = token == null ? null : lookupSession(token);
+            Access level = access.get(key);
+            if (level != Access.PUBLIC && session == null)
+                throw new HttpError(401, "Log in first");
+            if (level == Access.MANAGER && !session.isManager())
+                throw new HttpError(403, "Only managers can access this option");
+
+            body = r.handle(new Request(readParams(exchange), session, token));
+        } catch (HttpError e) {
+            status = e.status;
+            body = object("error", e.getMessage());
+        } catch (DateTimeParseException e) {
+            status = 400;
+            body = object("error", e.getMessage());
+        } catch (IllegalArgumentException e) {
+            status = 400;
+            body = object("error", e.getMessage());
+        } catch (SQLException e) {
+            status = 500;
+            body = object("error", e.getMessage());
+        } catch (Exception e) {
+            status = 500;
+            body = object("error", String.valueOf(e.getMessage()));
+        }
+
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        if (body instanceof StreamedRows) {
+            streamRows(exchange, (StreamedRows) body);
+            return;
+        }
+        byte[] bytes = toJson(body).getBytes("UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        OutputStream out = exchange.getResponseBody();
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+    } //end respond
+
+    /*
+     * Writes a streamed report as a chunked JSON array.  The status line is
+     * already sent when the first row arrives, so a failure part way through
+     * aborts the connection and the client sees a truncated body.
+     **/
+    private static void streamRows(HttpExchange exchange, final StreamedRows rows) throws IOException {
+        exchange.sendResponseHeaders(200, 0);
+        final Writer out = new BufferedWriter(new OutputStreamWriter(exchange.getResponseBody(), "UTF-8"), 8192);
+        final StringBuilder sb = new StringBuilder(256);
+        try {
+            out.write('[');
+            rows.source.run(new RowHandler() {
+                boolean first = true;
+
+                public void row(ResultSet rs) throws SQLException {
+                    sb.setLength(0);
+                    if (!first)
+                        sb.append(',');
+                    first = false;
+                    sb.append('{');
+                    for (int i = 0; i < rows.names.length; i++) {
+                        if (i > 0)
+                            sb.append(',');
+                        appendString(sb, rows.names[i]);
+                        sb.append(':');
+                        String v = rs.getString(i + 1);
+                        appendJson(sb, v == null ? null : v.trim());
+                    }
+                    sb.append('}');
+                    try {
+                        out.append(sb);
+                    } catch (IOException e) {
+                        throw new SQLException("Client went away: " + e.getMessage());
+                    }
+                }
+            });
+            out.write(']');
+            out.close();
+        } catch (Exception e) {
+            exchange.close();
+        }
+    } //end streamRows
+
+    private Session lookupSession(String token) {
+        SessionEntry entry = sessions.get(token);
+        if (entry == null)
+            return null;
+        long now = System.currentTimeMillis();
+        if (now - entry.lastSeen > SESSION_TIMEOUT_MILLIS) {
+            sessions.remove(token);
+            return null;
+        }
+        entry.lastSeen = now;
+        return entry.session;
+    }
+
+    private void expireSessions() {
+        long cutoff = System.currentTimeMillis() - SESSION_TIMEOUT_MILLIS;
+        for (Iterator < SessionEntry > it = sessions.values().iterator(); it.hasNext();) {
+            if (it.next().lastSeen < cutoff)
+                it.remove();
+        }
+    }
+
+    /*
+     * Makes room for a new session when MAX_SESSIONS are held: drops the
+     * expired ones, and if that is not enough, the least recently used eighth,
+     * so a burst of logins pays for one scan per eighth instead of one each.
+     **/
+    private synchronized void evictSessions() {
+        if (sessions.size() < MAX_SESSIONS)
+            return;
+        expireSessions();
+        if (sessions.size() < MAX_SESSIONS)
+            return;
+        long[] seen = new long[sessions.size()];
+        int n = 0;
+        for (SessionEntry entry: sessions.values())
+            if (n < seen.length)
+                seen[n++] = entry.lastSeen;
+        if (n == 0)
+            return;
+        Arrays.sort(seen, 0, n);
+        long cutoff = seen[Math.min(n - 1, MAX_SESSIONS / 8)];
+        for (Iterator < SessionEntry > it = sessions.values().iterator(); it.hasNext();) {
+            if (it.next().lastSeen <= cutoff)
+                it.remove();
+        }
+    }
+
+    private String newToken() {
+        byte[] bytes = new byte[16];
+        random.nextBytes(bytes);
+        StringBuilder sb = new StringBuilder(32);
+        for (byte b: bytes)
+            sb.append(String.format("%02x", b & 0xff));
+        return sb.toString();
+    }
+
+    private static String bearerToken(HttpExchange exchange) {
+        String auth = exchange.getRequestHeaders().getFirst("Authorization");
+        if (auth == null || !auth.startsWith("Bearer "))
+            return null;
+        return auth.substring("Bearer ".length()).trim();
+    }
+
+    /*
+     * Reads the query string and a form body.  Either one larger than
+     * MAX_BODY_BYTES is refused before it is parsed, and a body is read no
+     * further than that, whatever its Content-Length says.
+     **/
+    private static Map < String, String > readParams(HttpExchange exchange) throws IOException {
+        Map < String, String > params = new HashMap < String, String > ();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null && query.length() > MAX_BODY_BYTES)
+            throw new HttpError(414, "Query string larger than " + MAX_BODY_BYTES + " bytes");
+        parseForm(query, params);
+        String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+        if (contentType != null && contentType.startsWith("application/x-www-form-urlencoded")) {
+            String length = exchange.getRequestHeaders().getFirst("Content-Length");
+            if (length != null && length.trim().length() > 0 && Long.parseLong(length.trim()) > MAX_BODY_BYTES)
+                throw new HttpError(413, "Request body larger than " + MAX_BODY_BYTES + " bytes");
+            InputStream body = exchange.getRequestBody();
+            ByteArrayOutputStream buf = new ByteArrayOutputStream();
+            byte[] chunk = new byte[4096];
+            for (int n; (n = body.read(chunk)) > 0;) {
+                if (buf.size() + n > MAX_BODY_BYTES)
+                    throw new HttpError(413, "Request body larger than " + MAX_BODY_BYTES + " bytes");
+                buf.write(chunk, 0, n);
+            }
+            parseForm(buf.toString("UTF-8"), params);
+        }
+        return params;
+    }
+
+    private static void parseForm(String form, Map < String, String > into) throws IOException {
+        if (form == null || form.isEmpty())
+            return;
+        for (String pair: form.split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            into.put(URLDecoder.decode(name, "UTF-8"), URLDecoder.decode(value, "UTF-8"));
+        }
+    }
+
+    /*================= JSON ====================*/
+
+    static Map < String, Object > object(Object... keysAndValues) {
+        Map < String, Object > m = new LinkedHashMap < String, Object > ();
+        for (int i = 0; i + 1 < keysAndValues.length; i += 2)
+            m.put((String) keysAndValues[i], keysAndValues[i + 1]);
+        return m;
+    }
+
+    /*
+     * Turns query rows into JSON objects with the given field names.  Values
+     * from char(n) columns are trimmed.
+     **/
+    static List < Map < String, Object >> rows(List < List < String >> rows, String... names) {
+        List < Map < String, Object >> out = new ArrayList < Map < String, Object >> (rows.size());
+        for (List < String > row: rows) {
+            Map < String, Object > m = new LinkedHashMap < String, Object > ();
+            for (int i = 0; i < names.length && i < row.size(); i++)
+                m.put(names[i], row.get(i) == null ? null : row.get(i).trim());
+            out.add(m);
+        }
+        return out;
+    }
+
+    static List < Map < String, Object >> matches(List < HotelLocator.Match > matches) {
+        List < Map < String, Object >> out = new ArrayList < Map < String, Object >> (matches.size());
+        for (HotelLocator.Match m: matches)
+            out.add(object("hotelID", m.hotel.hotelID, "hotelName", m.hotel.hotelName,
+                "latitude", m.hotel.latitude, "longitude", m.hotel.longitude, "distance", m.distance));
+        return out;
+    }
+
+    static String toJson(Object value) {
+        StringBuilder sb = new StringBuilder();
+        appendJson(sb, value);
+        return sb.toString();
+    }
+
+    @SuppressWarnings("unchecked")
+    static void appendJson(StringBuilder sb, Object value) {
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof Number || value instanceof Boolean) {
+            sb.append(value);
+        } else if (value instanceof Map) {
+            sb.append('{');
+            boolean first = true;
+            for (Map.Entry < String, Object > e: ((Map < String, Object > ) value).entrySet()) {
+                if (!first)
+                    sb.append(',');
+                first = false;
+                appendString(sb, e.getKey());
+                sb.append(':');
+                appendJson(sb, e.getValue());
+            }
+            sb.append('}');
+        } else if (value instanceof Collection) {
+            sb.append('[');
+            boolean first = true;
+            for (Object o: (Collection < Object > ) value) {
+                if (!first)
+                    sb.append(',');
+                first = false;
+                appendJson(sb, o);
+            }
+            sb.append(']');
+        } else {
+            appendString(sb, value.toString());
+        }
+    }
+
+    private static void appendString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20)
+                        sb.append(String.format("\\u%04x", (int) c));
+                    else
+                        sb.append(c);
+            }
+        }
+        sb.append('"');
+    }
+
+    /*================= END JSON ====================*/
+
+} //end HotelServer
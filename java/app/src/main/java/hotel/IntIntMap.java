@@ -0,0 +1,111 @@
+package hotel;
+
+import java.util.Arrays;
+
+
+/**
+ * A map from int to int with open addressing and linear probing, so lookups
+ * neither box their keys nor allocate.  It is filled once and then only read:
+ * put is not thread safe, and a filled map must be published (e.g. through a
+ * volatile field) before other threads read it.
+ *
+ */
+public class IntIntMap {
+
+    private static final int FREE = 0; // marks an empty slot; key 0 is kept aside
+
+    private final int[] keys;
+    private final int[] values;
+    private final int mask;
+    private boolean hasZero = false;
+    private int zeroValue;
+    private int size = 0;
+
+    /**
+     * @param expected the number of entries the map will hold
+     */
+    public IntIntMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Adds or replaces an entry.  The map never grows past the expected size
+     * given to the constructor by more than a factor of two.
+     *
+     * @throws IllegalStateException when the map is full
+     */
+    public void put(int key, int value) {
+        if (key == FREE) {
+            if (!hasZero)
+                size++;
+            hasZero = true;
+            zeroValue = value;
+            return;
+        }
+        int i = slot(key);
+        while (keys[i] != FREE && keys[i] != key)
+            i = (i + 1) & mask;
+        if (keys[i] == FREE) {
+            if (size >= mask)
+                throw new IllegalStateException("IntIntMap is full");
+            size++;
+        }
+        keys[i] = key;
+        values[i] = value;
+    } //end put
+
+    /**
+     * @return the value of the key, or missing if it has none
+     */
+    public int get(int key, int missing) {
+        if (key == FREE)
+            return hasZero ? zeroValue : missing;
+        int i = slot(key);
+        while (keys[i] != FREE) {
+            if (keys[i] == key)
+                return values[i];
+            i = (i + 1) & mask;
+        }
+        return missing;
+    }
+
+    public boolean containsKey(int key) {
+        if (key == FREE)
+            return hasZero;
+        int i = slot(key);
+        while (keys[i] != FREE) {
+            if (keys[i] == key)
+                return true;
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return the keys, in ascending order
+     */
+    public int[] keys() {
+        int[] result = new int[size];
+        int n = 0;
+        if (hasZero)
+            result[n++] = FREE;
+        for (int k: keys)
+            if (k != FREE)
+                result[n++] = k;
+        Arrays.sort(result);
+        return result;
+    }
+
+    private int slot(int key) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+} //end IntIntMap
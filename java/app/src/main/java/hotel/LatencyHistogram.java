@@ -0,0 +1,124 @@
+package hotel;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+
+/**
+ * A lock-free histogram of latencies in nanoseconds.  Values are counted in
+ * log-linear buckets: every power of two is split into eight equal buckets,
+ * so a percentile read back is at most 12.5% above the true value, over the
+ * whole range from a nanosecond to centuries, in a fixed 488 counters.
+ * Recording is a few atomic increments and never blocks, so it can sit on
+ * every query without becoming the bottleneck it is meant to find.
+ *
+ */
+public class LatencyHistogram {
+
+    // each power of two is split into 2^SUB_BITS buckets
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = bucket(Long.MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records one latency.
+     *
+     * @param nanos the elapsed time; negative values count as zero
+     */
+    public void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        counts.incrementAndGet(bucket(nanos));
+        total.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    /**
+     * @return a consistent copy of the counts, for reading percentiles
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(copy, count, total.sum(), max.get());
+    }
+
+    /**
+     * Clears the counts.  Values recorded while resetting may be lost.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++)
+            counts.set(i, 0);
+        total.reset();
+        max.reset();
+    }
+
+    /**
+     * The counts of a histogram at one moment.
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        public final long count;
+        public final long totalNanos;
+        public final long maxNanos;
+
+        Snapshot(long[] counts, long count, long totalNanos, long maxNanos) {
+            this.counts = counts;
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+        }
+
+        /**
+         * @param p the percentile, 0 to 100
+         * @return the upper bound of the bucket holding the p-th percentile, in nanoseconds
+         */
+        public long percentile(double p) {
+            if (count == 0)
+                return 0;
+            long rank = Math.max(1, (long) Math.ceil(count * p / 100));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank)
+                    return Math.min(upperBound(i), maxNanos);
+            }
+            return maxNanos;
+        }
+
+        public long meanNanos() {
+            return count == 0 ? 0 : totalNanos / count;
+        }
+    } //end Snapshot
+
+    /*
+     * Values below 2 * SUB_BUCKETS get a bucket each; above that, the top
+     * SUB_BITS bits after the leading one pick one of SUB_BUCKETS buckets
+     * within the value's power of two.
+     **/
+    static int bucket(long nanos) {
+        if (nanos < 2 * SUB_BUCKETS)
+            return (int) nanos;
+        int msb = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int)(nanos >>> (msb - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return ((msb - SUB_BITS) << SUB_BITS) + sub + SUB_BUCKETS;
+    }
+
+    static long upperBound(int bucket) {
+        if (bucket < 2 * SUB_BUCKETS)
+            return bucket;
+        int msb = ((bucket - SUB_BUCKETS) >> SUB_BITS) + SUB_BITS;
+        int sub = (bucket - SUB_BUCKETS) & (SUB_BUCKETS - 1);
+        long width = 1L << (msb - SUB_BITS);
+        return ((SUB_BUCKETS + sub) * width) + width - 1;
+    }
+
+} //end LatencyHistogram
@@ -0,0 +1,72 @@
+package hotel;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * The hotels one manager runs, kept in memory so that ownership checks do not
+ * query the Hotel table.  Hotel keeps one instance per manager and shares it
+ * between that manager's sessions; when Hotel.managerUserID changes, the
+ * hotel_managers notification drops the set and the next check reloads it.
+ *
+ */
+public class ManagedHotels {
+
+    public final int managerID;
+    private final Hotel esql;
+    private volatile Set < Integer > hotels; // null when it has to be reloaded
+    private long generation = 0; // bumped by every invalidate(), guarded by this
+
+    ManagedHotels(Hotel esql, int managerID) {
+        this.esql = esql;
+        this.managerID = managerID;
+    }
+
+    /**
+     * @return true if the manager runs the hotel
+     * @throws java.sql.SQLException when failed to reload the set
+     */
+    public boolean contains(int hotelID) throws SQLException {
+        return get().contains(hotelID);
+    }
+
+    /**
+     * @return the IDs of the hotels the manager runs
+     * @throws java.sql.SQLException when failed to reload the set
+     */
+    public Set < Integer > get() throws SQLException {
+        Set < Integer > current = hotels;
+        if (current != null && esql.isListening())
+            return current;
+
+        long loadedAt;
+        synchronized(this) {
+            loadedAt = generation;
+        }
+        Set < Integer > loaded = new HashSet < Integer > ();
+        List < List < String >> rows = esql.executeQueryOnAllShards(
+            "SELECT hotelID FROM Hotel WHERE managerUserID = ?", managerID);
+        for (List < String > row: rows)
+            loaded.add(Integer.parseInt(row.get(0).trim()));
+        loaded = Collections.unmodifiableSet(loaded);
+        synchronized(this) {
+            // a change arrived while loading; keep the result for this call only
+            if (generation == loadedAt)
+                hotels = loaded;
+        }
+        return loaded;
+    } //end get
+
+    /**
+     * Drops the set; the next check reloads it.
+     */
+    public synchronized void invalidate() {
+        generation++;
+        hotels = null;
+    }
+
+} //end ManagedHotels
@@ -0,0 +1,256 @@
+package hotel;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Array;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.management.ObjectName;
+
+
+/**
+ * Latency histograms per operation and per SQL statement, and a log of the
+ * slowest statements with their bind values.  Hotel records every operation
+ * and every statement that goes through its JDBC helpers here; the numbers
+ * can be read over JMX (hotel:type=Metrics) or dumped as text periodically.
+ *
+ * Statements are keyed by their SQL text.  Values are always bound to '?'
+ * placeholders, so the text is the statement's shape and the number of keys
+ * stays small.
+ *
+ */
+public class Metrics implements MetricsMBean {
+
+    // slow statements kept for reading back
+    public static final int SLOW_LOG_SIZE = 100;
+
+    // longest SQL text and bind list shown in reports
+    private static final int MAX_SQL_CHARS = 100;
+    private static final int MAX_BIND_CHARS = 200;
+
+    private static final String HEADER = "%9s %9s %9s %9s %9s %9s %9s  %s%n";
+    private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    private static final AtomicInteger INSTANCES = new AtomicInteger();
+
+    private final ConcurrentHashMap < String, LatencyHistogram > operations = new ConcurrentHashMap < String, LatencyHistogram > ();
+    private final ConcurrentHashMap < String, LatencyHistogram > statements = new ConcurrentHashMap < String, LatencyHistogram > ();
+    private final AtomicReferenceArray < String > slowLog = new AtomicReferenceArray < String > (SLOW_LOG_SIZE);
+    private final AtomicLong slowCount = new AtomicLong();
+    private volatile long slowQueryNanos;
+    private ObjectName name;
+    private ScheduledExecutorService dumper;
+
+    /**
+     * @param slowQueryMillis statements taking at least this long are logged
+     */
+    public Metrics(long slowQueryMillis) {
+        setSlowQueryMillis(slowQueryMillis);
+    }
+
+    /**
+     * Records an operation that started at startNanos (from System.nanoTime()).
+     */
+    public void operation(String op, long startNanos) {
+        histogram(operations, op).record(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Records a statement that started at startNanos, and logs it with its
+     * bind values if it was slow.
+     */
+    public void statement(String sql, Object[] params, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        histogram(statements, sql).record(nanos);
+        if (nanos >= slowQueryNanos) {
+            String entry = String.format("%s %9.3f ms  %s  %s", now(),
+                nanos / 1e6, shorten(sql, Integer.MAX_VALUE), binds(sql, params));
+            slowLog.set((int)(slowCount.getAndIncrement() % SLOW_LOG_SIZE), entry);
+        }
+    }
+
+    /**
+     * @return the histogram of one operation, or null if it never ran
+     */
+    public LatencyHistogram getOperation(String op) {
+        return operations.get(op);
+    }
+
+    public String[] getOperations() {
+        return lines(operations, false);
+    }
+
+    public String[] getStatements() {
+        return lines(statements, true);
+    }
+
+    public String[] getSlowQueries() {
+        long n = slowCount.get();
+        List < String > entries = new ArrayList < String > ();
+        for (long i = Math.max(0, n - SLOW_LOG_SIZE); i < n; i++) {
+            String e = slowLog.get((int)(i % SLOW_LOG_SIZE));
+            if (e != null)
+                entries.add(e);
+        }
+        return entries.toArray(new String[0]);
+    }
+
+    public long getSlowQueryMillis() {
+        return slowQueryNanos / 1000000;
+    }
+
+    public void setSlowQueryMillis(long millis) {
+        slowQueryNanos = millis * 1000000;
+    }
+
+    public String dump() {
+        StringBuilder out = new StringBuilder();
+        out.append("---- metrics at ").append(now()).append(" (times in ms) ----\n");
+        out.append(String.format(HEADER, "count", "mean", "p50", "p90", "p99", "p99.9", "max", "operation"));
+        for (String line: getOperations())
+            out.append(line).append('\n');
+        out.append(String.format(HEADER, "count", "mean", "p50", "p90", "p99", "p99.9", "max", "statement"));
+        for (String line: getStatements())
+            out.append(line).append('\n');
+        String[] slow = getSlowQueries();
+        out.append("slow statements (>= ").append(getSlowQueryMillis()).append(" ms): ").append(slowCount.get()).append('\n');
+        for (String line: slow)
+            out.append("  ").append(line).append('\n');
+        return out.toString();
+    }
+
+    public void reset() {
+        for (LatencyHistogram h: operations.values())
+            h.reset();
+        for (LatencyHistogram h: statements.values())
+            h.reset();
+        for (int i = 0; i < SLOW_LOG_SIZE; i++)
+            slowLog.set(i, null);
+        slowCount.set(0);
+    }
+
+    /**
+     * Registers these metrics with the platform MBean server, under a name
+     * unique to this instance.  Failures are reported and otherwise ignored;
+     * metrics are still recorded.
+     */
+    public synchronized void register() {
+        try {
+            ObjectName n = new ObjectName("hotel:type=Metrics,name=hotel-" + INSTANCES.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, n);
+            name = n;
+        } catch (Exception e) {
+            System.err.println("Unable to register metrics MBean: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes dump() to out every periodSeconds, on a daemon thread.
+     */
+    public synchronized void startDump(long periodSeconds, final PrintStream out) {
+        if (dumper != null)
+            return;
+        dumper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "metrics-dump");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        dumper.scheduleAtFixedRate(new Runnable() {
+            public void run() {
+                out.print(dump());
+                out.flush();
+            }
+        }, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops the periodic dump and unregisters the MBean.
+     */
+    public synchronized void close() {
+        if (dumper != null)
+            dumper.shutdownNow();
+        dumper = null;
+        if (name != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (Exception e) {
+                // ignored.
+            }
+        }
+        name = null;
+    }
+
+    private static LatencyHistogram histogram(ConcurrentHashMap < String, LatencyHistogram > map, String key) {
+        LatencyHistogram h = map.get(key);
+        if (h == null) {
+            LatencyHistogram created = new LatencyHistogram();
+            h = map.putIfAbsent(key, created);
+            if (h == null)
+                h = created;
+        }
+        return h;
+    }
+
+    private static String[] lines(Map < String, LatencyHistogram > map, boolean sql) {
+        List < String > lines = new ArrayList < String > ();
+        for (Map.Entry < String, LatencyHistogram > e: new TreeMap < String, LatencyHistogram > (map).entrySet()) {
+            LatencyHistogram.Snapshot s = e.getValue().snapshot();
+            if (s.count == 0)
+                continue;
+            String label = sql ? shorten(e.getKey(), MAX_SQL_CHARS) : e.getKey();
+            lines.add(String.format("%9d %9.3f %9.3f %9.3f %9.3f %9.3f %9.3f  %s", s.count,
+                s.meanNanos() / 1e6, s.percentile(50) / 1e6, s.percentile(90) / 1e6, s.percentile(99) / 1e6,
+                s.percentile(99.9) / 1e6, s.maxNanos / 1e6, label));
+        }
+        return lines.toArray(new String[0]);
+    }
+
+    private static String now() {
+        return LocalDateTime.now().format(TIMESTAMP);
+    }
+
+    private static String shorten(String sql, int max) {
+        String s = sql.replaceAll("\\s+", " ").trim();
+        return s.length() <= max ? s : s.substring(0, max - 3) + "...";
+    }
+
+    /*
+     * Bind values as text.  Strings bound to a statement that mentions a
+     * password are masked, so credentials never reach the log.
+     **/
+    private static String binds(String sql, Object[] params) {
+        boolean secret = sql.toLowerCase().contains("password");
+        StringBuilder b = new StringBuilder("[");
+        for (int i = 0; i < params.length; i++) {
+            if (i > 0)
+                b.append(", ");
+            if (params[i] instanceof String)
+                b.append('\'').append(secret ? "***" : params[i]).append('\'');
+            else if (params[i] != null && params[i].getClass().isArray())
+                b.append(params[i].getClass().getComponentType().getSimpleName()).append('[')
+                    .append(Array.getLength(params[i])).append(']');
+            else
+                b.append(params[i]);
+            if (b.length() > MAX_BIND_CHARS) {
+                b.setLength(MAX_BIND_CHARS);
+                b.append("... ").append(params.length).append(" values");
+                break;
+            }
+        }
+        return b.append(']').toString();
+    }
+
+} //end Metrics
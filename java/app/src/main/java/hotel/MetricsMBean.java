@@ -0,0 +1,38 @@
+package hotel;
+
+/**
+ * The JMX view of {@link Metrics}, registered as hotel:type=Metrics.
+ *
+ */
+public interface MetricsMBean {
+
+    /**
+     * @return one line per operation: count, then mean, p50, p90, p99, p99.9 and max in milliseconds, then the name
+     */
+    String[] getOperations();
+
+    /**
+     * @return one line per SQL statement shape, as for getOperations()
+     */
+    String[] getStatements();
+
+    /**
+     * @return the most recent slow statements with their bind values, newest last
+     */
+    String[] getSlowQueries();
+
+    long getSlowQueryMillis();
+
+    void setSlowQueryMillis(long millis);
+
+    /**
+     * @return the full text report, as written by the periodic dump
+     */
+    String dump();
+
+    /**
+     * Clears every histogram and the slow query log.
+     */
+    void reset();
+
+} //end MetricsMBean
@@ -0,0 +1,165 @@
+package hotel;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+
+/**
+ * Receives Postgres NOTIFY messages on a dedicated connection and hands them
+ * to the handler registered for their channel, so in-memory caches can drop
+ * what another session changed.  Triggers in triggers.sql send the
+ * notifications.
+ *
+ * Notifications sent while the listener is disconnected are lost, so after
+ * every (re)connect each handler is told to reset, and isListening() tells
+ * callers whether cached state can currently be trusted.
+ *
+ */
+public class NotificationListener {
+
+    // how long one wait for notifications blocks, which bounds how long close() takes
+    static final int POLL_MILLIS = 500;
+
+    // pause before reconnecting after the connection was lost
+    static final long RECONNECT_MILLIS = 1000;
+
+    /**
+     * Reacts to the notifications of one channel.
+     */
+    public interface Handler {
+
+        /**
+         * @param payload the payload given to pg_notify
+         */
+        void received(String payload);
+
+        /**
+         * Notifications may have been missed: forget everything.
+         */
+        void reset();
+    } //end Handler
+
+    private final String url;
+    private final String user;
+    private final String passwd;
+    private final Map < String, Handler > handlers = new ConcurrentHashMap < String, Handler > ();
+    private volatile boolean listening = false;
+    private volatile boolean closed = false;
+    private Thread thread;
+
+    public NotificationListener(String url, String user, String passwd) {
+        this.url = url;
+        this.user = user;
+        this.passwd = passwd;
+    }
+
+    /**
+     * Registers the handler of a channel.  Must be called before start().
+     */
+    public void listen(String channel, Handler handler) {
+        handlers.put(channel, handler);
+    }
+
+    /**
+     * @return true while connected and listening on every channel
+     */
+    public boolean isListening() {
+        return listening;
+    }
+
+    /**
+     * Waits until the listener is connected and listening.
+     *
+     * @return true if it is listening, false if the time ran out
+     * @throws InterruptedException when interrupted while waiting
+     */
+    public synchronized boolean awaitListening(long millis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + millis;
+        while (!listening) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0)
+                return false;
+            wait(left);
+        }
+        return true;
+    }
+
+    /**
+     * Starts listening on a daemon thread.
+     */
+    public synchronized void start() {
+        if (thread != null)
+            return;
+        thread = new Thread("notification-listener") {
+            public void run() {
+                loop();
+            }
+        };
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops listening and closes the connection.
+     */
+    public synchronized void close() {
+        closed = true;
+        if (thread != null)
+            thread.interrupt();
+    }
+
+    private void loop() {
+        while (!closed) {
+            Connection conn = null;
+            try {
+                conn = DriverManager.getConnection(url, user, passwd);
+                Statement stmt = conn.createStatement();
+                for (String channel: handlers.keySet())
+                    stmt.execute("LISTEN " + channel);
+                stmt.close();
+                // anything sent before LISTEN took effect is lost
+                for (Handler h: handlers.values())
+                    h.reset();
+                synchronized(this) {
+                    listening = true;
+                    notifyAll();
+                }
+
+                PGConnection pg = conn.unwrap(PGConnection.class);
+                while (!closed) {
+                    PGNotification[] received = pg.getNotifications(POLL_MILLIS);
+                    if (received == null)
+                        continue;
+                    for (PGNotification n: received) {
+                        Handler h = handlers.get(n.getName());
+                        if (h != null)
+                            h.received(n.getParameter());
+                    }
+                }
+            } catch (SQLException e) {
+                if (!closed)
+                    System.err.println("Lost the notification connection: " + e.getMessage());
+            } finally {
+                listening = false;
+                ConnectionPool.closeQuietly(conn);
+            }
+            if (!closed) {
+                for (Handler h: handlers.values())
+                    h.reset();
+                try {
+                    Thread.sleep(RECONNECT_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    } //end loop
+
+} //end NotificationListener
@@ -0,0 +1,57 @@
+package hotel;
+
+
+/**
+ * A repricing of many rooms of one hotel at once: which rooms, chosen by
+ * room number range and current price band, and how their prices change.
+ * The new price is the old one scaled by percent and then moved by amount,
+ * rounded to a whole number and never below zero.
+ *
+ */
+public class PriceChange {
+
+    public final int hotelID;
+    public final int fromRoom;
+    public final int toRoom;
+    public final int minPrice;
+    public final int maxPrice;
+    public final double percent;
+    public final int amount;
+    public final String imageURL; // null to keep each room's image
+
+    /**
+     * @param hotelID the hotel whose rooms are repriced
+     * @param fromRoom the lowest room number changed
+     * @param toRoom the highest room number changed
+     * @param minPrice only rooms priced at least this are changed
+     * @param maxPrice only rooms priced at most this are changed
+     * @param percent the change in percent, e.g. -10 for ten percent off
+     * @param amount the absolute change, added after the percentage
+     * @param imageURL the new image of every changed room, or null
+     */
+    public PriceChange(int hotelID, int fromRoom, int toRoom, int minPrice, int maxPrice,
+        double percent, int amount, String imageURL) {
+        this.hotelID = hotelID;
+        this.fromRoom = fromRoom;
+        this.toRoom = toRoom;
+        this.minPrice = minPrice;
+        this.maxPrice = maxPrice;
+        this.percent = percent;
+        this.amount = amount;
+        this.imageURL = imageURL;
+    }
+
+    /**
+     * @return the change applied to every room of the hotel
+     */
+    public static PriceChange wholeHotel(int hotelID, double percent, int amount) {
+        return new PriceChange(hotelID, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MIN_VALUE, Integer.MAX_VALUE,
+            percent, amount, null);
+    }
+
+    public String toString() {
+        return "hotel " + hotelID + " rooms " + fromRoom + ".." + toRoom + " priced " + minPrice + ".." + maxPrice +
+            " by " + percent + "% " + (amount >= 0 ? "+" : "") + amount;
+    }
+
+} //end PriceChange
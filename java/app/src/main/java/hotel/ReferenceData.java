@@ -0,0 +1,295 @@
+package hotel;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+
+/**
+ * In-memory copy of the tables that almost never change: the hotel IDs, every
+ * hotel's rooms with their prices, and the maintenance company IDs.  The
+ * existence checks behind the console prompts and the HTTP routes are
+ * answered from here without a round trip.
+ *
+ * Everything is held in primitive int-keyed maps and arrays.  Triggers in
+ * triggers.sql send a notification when a Hotel, Rooms or MaintenanceCompany
+ * row changes, and Hotel passes them on: a Rooms change drops the rooms of
+ * that hotel only, a Hotel or MaintenanceCompany change drops that table.
+ * Dropped data is reloaded on its next use.  While notifications cannot be
+ * received, every lookup goes to the database instead, so other instances'
+ * changes are never missed.
+ *
+ */
+public class ReferenceData {
+
+    /**
+     * The rooms of one hotel, ordered by room number.
+     */
+    public static class Rooms {
+        public final int[] numbers;
+        public final int[] prices;
+
+        Rooms(int[] numbers, int[] prices) {
+            this.numbers = numbers;
+            this.prices = prices;
+        }
+
+        /**
+         * @return the room's price per night, or -1 if there is no such room
+         */
+        public int price(int roomNumber) {
+            int i = Arrays.binarySearch(numbers, roomNumber);
+            return i < 0 ? -1 : prices[i];
+        }
+    } //end Rooms
+
+    /*
+     * The hotel IDs, each mapped to a slot of rooms, the cached room lists
+     * (null when not loaded) and a generation per slot bumped by every
+     * invalidation, so that a concurrent load does not cache stale rooms.
+     **/
+    private static class Hotels {
+        final IntIntMap slots;
+        final AtomicReferenceArray < Rooms > rooms;
+        final AtomicIntegerArray generations;
+
+        Hotels(IntIntMap slots) {
+            this.slots = slots;
+            this.rooms = new AtomicReferenceArray < Rooms > (slots.size());
+            this.generations = new AtomicIntegerArray(slots.size());
+        }
+    } //end Hotels
+
+    /*
+     * Splits a scan of Rooms ordered by hotelID into one room list per hotel.
+     **/
+    private static class RoomLoader implements RowHandler {
+        final Hotels hotels;
+        int slot = -1;
+        int hotelID;
+        int generation;
+        int count = 0;
+        int[] numbers = new int[16];
+        int[] prices = new int[16];
+
+        RoomLoader(Hotels hotels) {
+            this.hotels = hotels;
+        }
+
+        public void row(ResultSet rs) throws SQLException {
+            int id = rs.getInt(1);
+            if (count == 0 || id != hotelID) {
+                flush();
+                hotelID = id;
+                slot = hotels.slots.get(id, -1);
+                generation = slot < 0 ? 0 : hotels.generations.get(slot);
+            }
+            if (count == numbers.length) {
+                numbers = Arrays.copyOf(numbers, count * 2);
+                prices = Arrays.copyOf(prices, count * 2);
+            }
+            numbers[count] = rs.getInt(2);
+            prices[count] = rs.getInt(3);
+            count++;
+        }
+
+        /*
+         * Stores the rooms of the hotel read last.
+         **/
+        void flush() {
+            if (count > 0 && slot >= 0)
+                store(hotels, slot, generation, new Rooms(Arrays.copyOf(numbers, count), Arrays.copyOf(prices, count)));
+            count = 0;
+        }
+    } //end RoomLoader
+
+    private final Hotel esql;
+    private volatile Hotels hotels; // null when it has to be reloaded
+    private volatile IntIntMap companies; // null when it has to be reloaded
+    private long hotelsGeneration = 0; // guarded by this
+    private long companiesGeneration = 0; // guarded by this
+
+    public ReferenceData(Hotel esql) {
+        this.esql = esql;
+    }
+
+    /**
+     * Loads every table, so the first lookups need no query.
+     *
+     * @throws java.sql.SQLException when failed to load a table
+     */
+    public void warm() throws SQLException {
+        companies();
+        RoomLoader loader = new RoomLoader(hotels());
+        // shard by shard, so each hotel's rooms still arrive together
+        esql.streamQueryOnAllShards("SELECT hotelID, roomNumber, price FROM Rooms ORDER BY hotelID, roomNumber", loader);
+        loader.flush();
+    } //end warm
+
+    /**
+     * @return true if the hotel exists
+     * @throws java.sql.SQLException when failed to load the hotels
+     */
+    public boolean hotelExists(int hotelID) throws SQLException {
+        if (!esql.isListening())
+            return !esql.executeShardQuery(hotelID, "SELECT hotelID FROM Hotel WHERE hotelID = ?", hotelID).isEmpty();
+        return hotels().slots.containsKey(hotelID);
+    }
+
+    /**
+     * @return true if the hotel has the room
+     * @throws java.sql.SQLException when failed to load the rooms
+     */
+    public boolean roomExists(int hotelID, int roomNumber) throws SQLException {
+        return price(hotelID, roomNumber) >= 0;
+    }
+
+    /**
+     * @return the room's price per night, or -1 if there is no such room
+     * @throws java.sql.SQLException when failed to load the rooms
+     */
+    public int price(int hotelID, int roomNumber) throws SQLException {
+        Rooms r = rooms(hotelID);
+        return r == null ? -1 : r.price(roomNumber);
+    }
+
+    /**
+     * @return true if the maintenance company exists
+     * @throws java.sql.SQLException when failed to load the companies
+     */
+    public boolean companyExists(int companyID) throws SQLException {
+        if (!esql.isListening())
+            return esql.executeQuery("SELECT companyID FROM MaintenanceCompany WHERE companyID = ?", companyID) > 0;
+        return companies().containsKey(companyID);
+    }
+
+    /**
+     * @return the hotel's rooms and prices, or null if there is no such hotel
+     * @throws java.sql.SQLException when failed to load the rooms
+     */
+    public Rooms rooms(int hotelID) throws SQLException {
+        if (!esql.isListening())
+            return hotelExists(hotelID) ? loadRooms(hotelID) : null;
+
+        Hotels h = hotels();
+        int slot = h.slots.get(hotelID, -1);
+        if (slot < 0)
+            return null;
+        Rooms r = h.rooms.get(slot);
+        if (r != null)
+            return r;
+        int generation = h.generations.get(slot);
+        r = loadRooms(hotelID);
+        store(h, slot, generation, r);
+        return r;
+    } //end rooms
+
+    /**
+     * Drops the hotel IDs, and with them every cached room list.
+     */
+    public synchronized void invalidateHotels() {
+        hotelsGeneration++;
+        hotels = null;
+    }
+
+    /**
+     * Drops the rooms of one hotel, e.g. after a price change.
+     */
+    public void invalidateRooms(int hotelID) {
+        Hotels h = hotels;
+        if (h == null)
+            return;
+        int slot = h.slots.get(hotelID, -1);
+        if (slot < 0)
+            return;
+        h.generations.incrementAndGet(slot);
+        h.rooms.set(slot, null);
+    }
+
+    /**
+     * Drops the maintenance company IDs.
+     */
+    public synchronized void invalidateCompanies() {
+        companiesGeneration++;
+        companies = null;
+    }
+
+    /**
+     * Drops everything.
+     */
+    public void invalidate() {
+        invalidateHotels();
+        invalidateCompanies();
+    }
+
+    private Hotels hotels() throws SQLException {
+        Hotels current = hotels;
+        if (current != null)
+            return current;
+
+        long loadedAt;
+        synchronized(this) {
+            loadedAt = hotelsGeneration;
+        }
+        List < List < String >> rows = esql.executeQueryOnAllShards("SELECT hotelID FROM Hotel");
+        IntIntMap slots = new IntIntMap(rows.size());
+        for (int i = 0; i < rows.size(); i++)
+            slots.put(Integer.parseInt(rows.get(i).get(0).trim()), i);
+        Hotels loaded = new Hotels(slots);
+        synchronized(this) {
+            // a change arrived while loading; use the result for this call only
+            if (hotelsGeneration == loadedAt)
+                hotels = loaded;
+        }
+        return loaded;
+    } //end hotels
+
+    private IntIntMap companies() throws SQLException {
+        IntIntMap current = companies;
+        if (current != null)
+            return current;
+
+        long loadedAt;
+        synchronized(this) {
+            loadedAt = companiesGeneration;
+        }
+        List < List < String >> rows = esql.executeQueryAndReturnResult("SELECT companyID FROM MaintenanceCompany");
+        IntIntMap loaded = new IntIntMap(rows.size());
+        for (List < String > row: rows)
+            loaded.put(Integer.parseInt(row.get(0).trim()), 1);
+        synchronized(this) {
+            if (companiesGeneration == loadedAt)
+                companies = loaded;
+        }
+        return loaded;
+    } //end companies
+
+    private Rooms loadRooms(int hotelID) throws SQLException {
+        List < List < String >> rows = esql.executeShardQuery(hotelID,
+            "SELECT roomNumber, price FROM Rooms WHERE hotelID = ? ORDER BY roomNumber", hotelID);
+        int[] numbers = new int[rows.size()];
+        int[] prices = new int[rows.size()];
+        for (int i = 0; i < numbers.length; i++) {
+            numbers[i] = Integer.parseInt(rows.get(i).get(0).trim());
+            prices[i] = Integer.parseInt(rows.get(i).get(1).trim());
+        }
+        return new Rooms(numbers, prices);
+    }
+
+    /*
+     * Caches a room list unless the hotel's rooms were invalidated since the
+     * load began at the given generation.  An invalidation can land between
+     * the check and the store, so the generation is read again once the list
+     * is in and the list taken back out if it moved.
+     **/
+    private static void store(Hotels h, int slot, int generation, Rooms r) {
+        if (h.generations.get(slot) != generation || !h.rooms.compareAndSet(slot, null, r))
+            return;
+        if (h.generations.get(slot) != generation)
+            h.rooms.compareAndSet(slot, r, null);
+    }
+
+} //end ReferenceData
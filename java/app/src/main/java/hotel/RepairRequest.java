@@ -0,0 +1,34 @@
+package hotel;
+
+import java.time.LocalDate;
+
+
+/**
+ * One room repair, as asked for in a bulk repair scheduling.
+ *
+ */
+public class RepairRequest {
+
+    public final int companyID;
+    public final int hotelID;
+    public final int roomNumber;
+    public final LocalDate date;
+    public final int days; // nights the room is out of service, from date on
+
+    public RepairRequest(int companyID, int hotelID, int roomNumber, LocalDate date) {
+        this(companyID, hotelID, roomNumber, date, 1);
+    }
+
+    public RepairRequest(int companyID, int hotelID, int roomNumber, LocalDate date, int days) {
+        this.companyID = companyID;
+        this.hotelID = hotelID;
+        this.roomNumber = roomNumber;
+        this.date = date;
+        this.days = days;
+    }
+
+    public String toString() {
+        return companyID + ":" + hotelID + ":" + roomNumber + ":" + date + "+" + days;
+    }
+
+} //end RepairRequest
@@ -0,0 +1,220 @@
+package hotel;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * Chooses a streaming read replica for the read-only report queries, so
+ * month-end reporting does not compete with bookings on the primary.
+ *
+ * Every replica is checked once a second: it must be in recovery, receiving
+ * WAL from the primary, and have replayed everything it received or be at
+ * most maxLagMillis behind the last transaction it replayed.  Reports are
+ * spread round-robin over the replicas that pass; when none does, pick()
+ * returns null and the caller runs the report on the primary.  Bookings and
+ * updates never come here.
+ *
+ */
+public class ReplicaRouter {
+
+    public static final long DEFAULT_MAX_LAG_MILLIS = 5000;
+
+    // how often each replica's state and lag are read
+    static final long CHECK_MILLIS = 1000;
+
+    // zero when everything received has been replayed, as an idle primary sends nothing to replay
+    private static final String LAG_QUERY = "SELECT pg_is_in_recovery(), " +
+        "COALESCE((SELECT status = 'streaming' FROM pg_stat_wal_receiver), false), " +
+        "CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() THEN 0 " +
+        "ELSE COALESCE(CAST(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000 AS bigint), 0) END";
+
+    /**
+     * One replica endpoint and what its last check found.
+     */
+    public static class Replica {
+        public final String url;
+        private final String user;
+        private final String passwd;
+        private final int poolSize;
+        private volatile ConnectionPool pool; // null until it could be reached
+        private volatile boolean usable = false;
+        private volatile long lagMillis = -1;
+        private volatile String state = "not checked";
+
+        Replica(String url, String user, String passwd, int poolSize) {
+            this.url = url;
+            this.user = user;
+            this.passwd = passwd;
+            this.poolSize = poolSize;
+        }
+
+        public boolean isUsable() {
+            return usable;
+        }
+
+        /**
+         * @return the replay lag found by the last check, or -1 if unknown
+         */
+        public long getLagMillis() {
+            return lagMillis;
+        }
+
+        public String toString() {
+            return url + " " + state + (lagMillis >= 0 ? ", lag " + lagMillis + " ms" : "");
+        }
+    } //end Replica
+
+    private final List < Replica > replicas = new ArrayList < Replica > ();
+    private final long maxLagMillis;
+    private final AtomicInteger next = new AtomicInteger();
+    private final AtomicLong routed = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+    private ScheduledExecutorService checker;
+
+    /**
+     * @param urls the JDBC URLs of the replicas
+     * @param poolSize the most connections opened to each replica
+     * @param maxLagMillis replicas further behind than this are not used
+     */
+    public ReplicaRouter(List < String > urls, String user, String passwd, int poolSize, long maxLagMillis) {
+        for (String url: urls)
+            replicas.add(new Replica(url, user, passwd, poolSize));
+        this.maxLagMillis = maxLagMillis;
+    }
+
+    /**
+     * Checks every replica now, then again every CHECK_MILLIS on a daemon
+     * thread.
+     */
+    public synchronized void start() {
+        if (checker != null || replicas.isEmpty())
+            return;
+        checkAll();
+        checker = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "replica-checker");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        checker.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                checkAll();
+            }
+        }, CHECK_MILLIS, CHECK_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the pool of a replica fit to serve a report, or null when the
+     * report has to run on the primary
+     */
+    public ConnectionPool pick() {
+        int n = replicas.size();
+        if (n > 0) {
+            int first = Math.floorMod(next.getAndIncrement(), n);
+            for (int i = 0; i < n; i++) {
+                Replica r = replicas.get((first + i) % n);
+                ConnectionPool pool = r.pool;
+                if (r.usable && pool != null) {
+                    routed.incrementAndGet();
+                    return pool;
+                }
+            }
+        }
+        fallbacks.incrementAndGet();
+        return null;
+    } //end pick
+
+    /**
+     * Takes a replica out of use until its next successful check, after a
+     * query on it failed.
+     */
+    public void failed(ConnectionPool pool) {
+        for (Replica r: replicas) {
+            if (r.pool == pool) {
+                r.usable = false;
+                r.state = "failed a query";
+            }
+        }
+    }
+
+    public List < Replica > getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * @return the reports sent to a replica
+     */
+    public long getRouted() {
+        return routed.get();
+    }
+
+    /**
+     * @return the reports that ran on the primary because no replica was fit
+     */
+    public long getFallbacks() {
+        return fallbacks.get();
+    }
+
+    /**
+     * Stops checking and closes the replica connections.
+     */
+    public synchronized void close() {
+        if (checker != null)
+            checker.shutdownNow();
+        checker = null;
+        for (Replica r: replicas) {
+            r.usable = false;
+            if (r.pool != null)
+                r.pool.close();
+        }
+    }
+
+    private void checkAll() {
+        for (Replica r: replicas)
+            check(r);
+    }
+
+    private void check(Replica r) {
+        ConnectionPool.PooledConnection conn = null;
+        ResultSet rs = null;
+        try {
+            if (r.pool == null)
+                r.pool = new ConnectionPool(r.url, r.user, r.passwd, r.poolSize);
+            conn = r.pool.acquire();
+            rs = conn.prepare(LAG_QUERY).executeQuery();
+            rs.next();
+            boolean recovering = rs.getBoolean(1);
+            boolean streaming = rs.getBoolean(2);
+            long lag = rs.getLong(3);
+            r.lagMillis = lag;
+            if (!recovering)
+                r.state = "not a replica";
+            else if (!streaming)
+                r.state = "not streaming from the primary";
+            else if (lag > maxLagMillis)
+                r.state = "lagging";
+            else
+                r.state = "streaming";
+            r.usable = recovering && streaming && lag <= maxLagMillis;
+        } catch (SQLException e) {
+            r.usable = false;
+            r.lagMillis = -1;
+            r.state = "unreachable: " + e.getMessage();
+        } finally {
+            ConnectionPool.closeQuietly(rs);
+            if (conn != null)
+                r.pool.release(conn);
+        }
+    } //end check
+
+} //end ReplicaRouter
@@ -0,0 +1,209 @@
+package hotel;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+
+/**
+ * Lets only one booking attempt per room-night reach the database at a time.
+ * On a flash sale thousands of guests ask for the same few rooms and nights;
+ * without this they all reach Postgres, where every attempt but one waits on
+ * the winner's uncommitted row and then fails on the unique constraint.  Here
+ * the first attempt for a room-night claims it, and every attempt that
+ * arrives while the claim is held is told at once that the room is taken.
+ *
+ * A room-night is packed into a long: 22 bits of hotelID, 20 bits of room
+ * number and 21 bits of epoch day.  Claims are kept in open-addressing sets
+ * of longs, one per stripe, each guarded by its own lock, so threads booking
+ * different room-nights rarely meet and nothing is boxed or allocated per
+ * claim.  Rooms whose key does not fit are not coordinated and go straight
+ * to the database, which stays the judge of what is booked: claims only live
+ * in this process, and a turned-away guest is told the room is taken even if
+ * the attempt holding the claim then fails.
+ *
+ */
+public class ReservationCoordinator {
+
+    public static final int DEFAULT_STRIPES = 256;
+
+    private static final long FREE = -1; // marks an empty slot; packed keys are never negative
+    private static final int HOTEL_BITS = 22;
+    private static final int ROOM_BITS = 20;
+    private static final int DAY_BITS = 21;
+
+    // an empty array: nothing claimed, nothing to release
+    private static final long[] UNCOORDINATED = new long[0];
+
+    /*
+     * The claimed keys of one stripe, with linear probing.  Removal shifts the
+     * following entries back, so there are no tombstones and a set that was
+     * once busy does not stay slow.
+     **/
+    private static class Stripe {
+        long[] keys = newTable(16);
+        int size = 0;
+
+        synchronized boolean add(long key) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (keys[i] != FREE) {
+                if (keys[i] == key)
+                    return false;
+                i = (i + 1) & mask;
+            }
+            keys[i] = key;
+            if (++size * 2 > keys.length)
+                grow();
+            return true;
+        } //end add
+
+        synchronized void remove(long key) {
+            int mask = keys.length - 1;
+            int i = slot(key, mask);
+            while (keys[i] != key) {
+                if (keys[i] == FREE)
+                    return;
+                i = (i + 1) & mask;
+            }
+            // move back every following entry that may no longer be reachable
+            int hole = i;
+            for (int j = (i + 1) & mask; keys[j] != FREE; j = (j + 1) & mask) {
+                int home = slot(keys[j], mask);
+                if (((j - home) & mask) >= ((j - hole) & mask)) {
+                    keys[hole] = keys[j];
+                    hole = j;
+                }
+            }
+            keys[hole] = FREE;
+            size--;
+        } //end remove
+
+        private void grow() {
+            long[] old = keys;
+            keys = newTable(old.length * 2);
+            int mask = keys.length - 1;
+            for (long k: old) {
+                if (k == FREE)
+                    continue;
+                int i = slot(k, mask);
+                while (keys[i] != FREE)
+                    i = (i + 1) & mask;
+                keys[i] = k;
+            }
+        }
+    } //end Stripe
+
+    private final Stripe[] stripes;
+
+    public ReservationCoordinator() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * @param stripes the number of independently locked sets, 1 to 65536,
+     * rounded up to a power of two
+     */
+    public ReservationCoordinator(int stripes) {
+        if (stripes < 1 || stripes > 1 << 16)
+            throw new IllegalArgumentException("The stripes must be 1 to 65536");
+        int n = stripes == 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.stripes = new Stripe[n];
+        for (int i = 0; i < n; i++)
+            this.stripes[i] = new Stripe();
+    }
+
+    /**
+     * Packs a room-night into a long.
+     *
+     * @return the key, or -1 if the hotelID, room number or date does not fit
+     */
+    public static long key(int hotelID, int roomNumber, long epochDay) {
+        if (hotelID < 0 || hotelID >= 1 << HOTEL_BITS || roomNumber < 0 || roomNumber >= 1 << ROOM_BITS ||
+            epochDay < 0 || epochDay >= 1L << DAY_BITS)
+            return FREE;
+        return ((long) hotelID << (ROOM_BITS + DAY_BITS)) | ((long) roomNumber << DAY_BITS) | epochDay;
+    }
+
+    /**
+     * Claims one room-night.
+     *
+     * @return false if another attempt holds the claim
+     */
+    public boolean tryAcquire(long key) {
+        return stripe(key).add(key);
+    }
+
+    public void release(long key) {
+        stripe(key).remove(key);
+    }
+
+    /**
+     * Claims every night of a stay, or none of them.  Claims are only tried,
+     * never waited for, so two stays that overlap in any order cannot
+     * deadlock.
+     *
+     * @return the claimed keys, to be given back to release, or null if
+     * another attempt holds one of the nights
+     */
+    public long[] tryAcquire(int hotelID, int roomNumber, LocalDate checkIn, int nights) {
+        long first = key(hotelID, roomNumber, checkIn.toEpochDay());
+        if (first == FREE || key(hotelID, roomNumber, checkIn.toEpochDay() + nights - 1) == FREE)
+            return UNCOORDINATED;
+        long[] keys = new long[nights];
+        for (int n = 0; n < nights; n++) {
+            keys[n] = first + n; // the day is the low field, and the last night fits
+            if (!tryAcquire(keys[n])) {
+                for (int m = 0; m < n; m++)
+                    release(keys[m]);
+                return null;
+            }
+        }
+        return keys;
+    } //end tryAcquire
+
+    /**
+     * Gives back the claims of tryAcquire.
+     */
+    public void release(long[] keys) {
+        for (long key: keys)
+            release(key);
+    }
+
+    /**
+     * @return the number of independently locked sets
+     */
+    int stripes() {
+        return stripes.length;
+    }
+
+    /**
+     * @return the number of room-nights currently claimed
+     */
+    public int claimed() {
+        int n = 0;
+        for (Stripe s: stripes) {
+            synchronized(s) {
+                n += s.size;
+            }
+        }
+        return n;
+    }
+
+    private Stripe stripe(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return stripes[(int)(h >>> 48) & (stripes.length - 1)];
+    }
+
+    // package-private so the tests can build keys that collide in a table
+    static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int)(h >>> 16) & mask; // below the bits that pick the stripe
+    }
+
+    private static long[] newTable(int capacity) {
+        long[] table = new long[capacity];
+        Arrays.fill(table, FREE);
+        return table;
+    }
+
+} //end ReservationCoordinator
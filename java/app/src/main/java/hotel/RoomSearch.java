@@ -0,0 +1,112 @@
+package hotel;
+
+import java.time.LocalDate;
+import java.util.Comparator;
+
+
+/**
+ * A search for free rooms on one night across every hotel near a point:
+ * where, how far, which night, the most a guest will pay, how to rank the
+ * rooms found, and which page of them to return.
+ *
+ */
+public class RoomSearch {
+
+    public enum Order {
+        PRICE, // cheapest first, then nearest
+        DISTANCE // nearest first, then cheapest
+    }
+
+    // most rooms returned by one page, and the deepest page start
+    public static final int MAX_LIMIT = 100;
+    public static final int MAX_OFFSET = 10000;
+
+    public final double latitude;
+    public final double longitude;
+    public final double radius;
+    public final LocalDate date;
+    public final int maxPrice;
+    public final Order order;
+    public final int offset;
+    public final int limit;
+
+    /**
+     * @param latitude latitude of the search point
+     * @param longitude longitude of the search point
+     * @param radius the farthest hotel considered (inclusive)
+     * @param date the night wanted
+     * @param maxPrice only rooms priced at most this are returned
+     * @param order how the rooms are ranked
+     * @param offset the number of ranked rooms skipped, for paging, at most MAX_OFFSET
+     * @param limit the most rooms returned, 1 to MAX_LIMIT
+     */
+    public RoomSearch(double latitude, double longitude, double radius, LocalDate date, int maxPrice,
+        Order order, int offset, int limit) {
+        if (offset < 0 || offset > MAX_OFFSET || limit < 1 || limit > MAX_LIMIT)
+            throw new IllegalArgumentException("A page must start at 0 to " + MAX_OFFSET + " and hold 1 to " + MAX_LIMIT + " rooms");
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.radius = radius;
+        this.date = date;
+        this.maxPrice = maxPrice;
+        this.order = order;
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    /**
+     * @return the same search for the page after this one
+     */
+    public RoomSearch next() {
+        return new RoomSearch(latitude, longitude, radius, date, maxPrice, order, offset + limit, limit);
+    }
+
+    /**
+     * A free room found by the search.
+     */
+    public static class Hit {
+        public final HotelLocator.Location hotel;
+        public final double distance;
+        public final int roomNumber;
+        public final int price;
+
+        public Hit(HotelLocator.Location hotel, double distance, int roomNumber, int price) {
+            this.hotel = hotel;
+            this.distance = distance;
+            this.roomNumber = roomNumber;
+            this.price = price;
+        }
+    } //end Hit
+
+    private static final Comparator < Hit > BY_PRICE = new Comparator < Hit > () {
+        public int compare(Hit a, Hit b) {
+            int c = Integer.compare(a.price, b.price);
+            if (c == 0)
+                c = Double.compare(a.distance, b.distance);
+            return c != 0 ? c : tieBreak(a, b);
+        }
+    };
+
+    private static final Comparator < Hit > BY_DISTANCE = new Comparator < Hit > () {
+        public int compare(Hit a, Hit b) {
+            int c = Double.compare(a.distance, b.distance);
+            if (c == 0)
+                c = Integer.compare(a.price, b.price);
+            return c != 0 ? c : tieBreak(a, b);
+        }
+    };
+
+    // a total order, so that pages do not overlap or skip rooms
+    private static int tieBreak(Hit a, Hit b) {
+        int c = Integer.compare(a.hotel.hotelID, b.hotel.hotelID);
+        return c != 0 ? c : Integer.compare(a.roomNumber, b.roomNumber);
+    }
+
+    /**
+     * @return the ranking of the search's order, best first
+     */
+    public Comparator < Hit > ranking() {
+        return order == Order.PRICE ? BY_PRICE : BY_DISTANCE;
+    }
+
+} //end RoomSearch
@@ -0,0 +1,251 @@
+package hotel;
+
+import java.sql.SQLException;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * Writes RoomUpdatesLog rows behind the room updates that cause them.  An
+ * update only queues its rows; a background thread takes whatever has queued
+ * up, up to a batch, and inserts it in one statement.  The queue is bounded:
+ * when the writer falls that far behind, callers wait for room rather than
+ * grow the heap or lose audit rows.
+ *
+ * Each row keeps the time it was queued, so a late write records when the
+ * room actually changed.  close() writes everything still queued.
+ *
+ */
+public class RoomUpdateLogger {
+
+    public static final int DEFAULT_CAPACITY = 10000;
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+
+    // how long the writer waits for a first row before checking for close()
+    static final long POLL_MILLIS = 100;
+
+    // attempts at writing one batch before its rows are reported lost
+    static final int MAX_ATTEMPTS = 3;
+    static final long RETRY_MILLIS = 1000;
+
+    // how long close() waits for the queue to drain
+    static final long CLOSE_MILLIS = 30000;
+
+    private static final String INSERT = "INSERT INTO RoomUpdatesLog (managerID, hotelID, roomNumber, updatedOn) " +
+        "SELECT managerID, hotelID, roomNumber, updatedOn AT TIME ZONE 'US/Pacific' " +
+        "FROM unnest(CAST(? AS integer[]), CAST(? AS integer[]), CAST(? AS integer[]), CAST(? AS timestamptz[])) " +
+        "AS u(managerID, hotelID, roomNumber, updatedOn)";
+
+    private static class Entry {
+        final int managerID;
+        final int hotelID;
+        final int roomNumber;
+        final OffsetDateTime updatedOn;
+
+        Entry(int managerID, int hotelID, int roomNumber, OffsetDateTime updatedOn) {
+            this.managerID = managerID;
+            this.hotelID = hotelID;
+            this.roomNumber = roomNumber;
+            this.updatedOn = updatedOn;
+        }
+    } //end Entry
+
+    private final Hotel esql;
+    private final int batchSize;
+    private final BlockingQueue < Entry > queue;
+    private final Thread writer;
+    private volatile boolean closed = false;
+
+    // rows queued, and rows written or given up on; guarded by this
+    private long queued = 0;
+    private long done = 0;
+    private long written = 0;
+    private long lost = 0;
+
+    public RoomUpdateLogger(Hotel esql) {
+        this(esql, DEFAULT_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * @param esql the database handle the rows are written through
+     * @param capacity the most rows queued before callers wait
+     * @param batchSize the most rows written by one statement
+     */
+    public RoomUpdateLogger(Hotel esql, int capacity, int batchSize) {
+        this.esql = esql;
+        this.batchSize = batchSize;
+        this.queue = new ArrayBlockingQueue < Entry > (capacity);
+        this.writer = new Thread("room-update-logger") {
+            public void run() {
+                drain();
+            }
+        };
+        this.writer.setDaemon(true);
+        this.writer.start();
+    } //end RoomUpdateLogger
+
+    /**
+     * Queues the log row of one room update.  Once the logger is closed, or
+     * if interrupted while waiting for room, the row is written directly.
+     *
+     * @throws java.sql.SQLException when failed to write the row directly
+     */
+    public void log(int managerID, int hotelID, int roomNumber) throws SQLException {
+        Entry e = new Entry(managerID, hotelID, roomNumber, OffsetDateTime.now());
+        if (!closed) {
+            synchronized(this) {
+                queued++;
+            }
+            try {
+                queue.put(e);
+                // close() may have come in between and the writer already found the queue empty
+                // and stopped; take the row back and write it here, unless the writer has it
+                if (!closed || !queue.remove(e))
+                    return;
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+            synchronized(this) {
+                queued--;
+            }
+        }
+        List < Entry > single = new ArrayList < Entry > (1);
+        single.add(e);
+        write(single);
+    } //end log
+
+    /**
+     * Waits until every row queued so far is written.
+     *
+     * @return false if the time ran out first
+     * @throws InterruptedException when interrupted while waiting
+     */
+    public synchronized boolean flush(long millis) throws InterruptedException {
+        long target = queued;
+        long deadline = System.currentTimeMillis() + millis;
+        while (done < target) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0 || !writer.isAlive())
+                return false;
+            wait(left);
+        }
+        return true;
+    }
+
+    public synchronized long getWritten() {
+        return written;
+    }
+
+    /**
+     * @return the rows that could not be written and were given up on
+     */
+    public synchronized long getLost() {
+        return lost;
+    }
+
+    /**
+     * Stops taking rows and writes everything still queued.
+     */
+    public void close() {
+        closed = true;
+        try {
+            writer.join(CLOSE_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!queue.isEmpty())
+            System.err.println("RoomUpdatesLog: " + queue.size() + " rows not written at close");
+    }
+
+    private void drain() {
+        List < Entry > batch = new ArrayList < Entry > (batchSize);
+        while (true) {
+            try {
+                Entry first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (closed && queue.isEmpty())
+                        return;
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+            } catch (InterruptedException e) {
+                // close() decides when to stop
+                continue;
+            }
+
+            // each shard's rows are retried on their own, so a retry never repeats rows already written
+            for (List < Entry > part: byShard(batch)) {
+                if (part.isEmpty())
+                    continue;
+                boolean ok = false;
+                for (int attempt = 1; attempt <= MAX_ATTEMPTS && !ok; attempt++) {
+                    try {
+                        write(part);
+                        ok = true;
+                    } catch (SQLException e) {
+                        System.err.println("RoomUpdatesLog: failed to write " + part.size() + " rows: " + e.getMessage());
+                        if (attempt < MAX_ATTEMPTS)
+                            sleep(RETRY_MILLIS);
+                    }
+                }
+                synchronized(this) {
+                    if (ok)
+                        written += part.size();
+                    else
+                        lost += part.size();
+                    done += part.size();
+                    notifyAll();
+                }
+            }
+            batch.clear();
+        }
+    } //end drain
+
+    /*
+     * Splits a batch by the shard holding each row's hotel, in shard order.
+     **/
+    private List < List < Entry >> byShard(List < Entry > batch) {
+        ShardRouter shards = esql.getShardRouter();
+        List < List < Entry >> parts = new ArrayList < List < Entry >> (shards.size());
+        for (int i = 0; i < shards.size(); i++)
+            parts.add(shards.size() == 1 ? batch : new ArrayList < Entry > ());
+        if (shards.size() > 1) {
+            for (Entry e: batch)
+                parts.get(shards.shardOf(e.hotelID)).add(e);
+        }
+        return parts;
+    }
+
+    /*
+     * Writes rows whose hotels all live on one shard, in one statement.
+     **/
+    private void write(List < Entry > batch) throws SQLException {
+        int n = batch.size();
+        int[] managers = new int[n];
+        int[] hotels = new int[n];
+        int[] rooms = new int[n];
+        String[] times = new String[n];
+        for (int i = 0; i < n; i++) {
+            Entry e = batch.get(i);
+            managers[i] = e.managerID;
+            hotels[i] = e.hotelID;
+            rooms[i] = e.roomNumber;
+            times[i] = e.updatedOn.toString();
+        }
+        esql.executeShardUpdate(hotels[0], INSERT, managers, hotels, rooms, times);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+} //end RoomUpdateLogger
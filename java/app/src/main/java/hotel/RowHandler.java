@@ -0,0 +1,16 @@
+package hotel;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+
+/**
+ * Receives the rows of a streamed query one at a time.  The ResultSet is
+ * positioned on the current row and must not be advanced or kept.
+ *
+ */
+public interface RowHandler {
+
+    void row(ResultSet rs) throws SQLException;
+
+} //end RowHandler
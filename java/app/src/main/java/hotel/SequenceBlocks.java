@@ -0,0 +1,95 @@
+package hotel;
+
+import java.sql.SQLException;
+import java.util.List;
+
+
+/**
+ * Hands out the generated keys of one table from blocks of sequence values
+ * reserved ahead, so that a batched insert can number its rows before it is
+ * sent and needs no nextval() call per row.  A block is reserved with one
+ * statement that calls nextval() blockSize times on the table's sequence, on
+ * the shard the rows go to: the values are valid for whatever increment the
+ * sequence has (ShardRouter interleaves them), and rows inserted with the
+ * column default never collide with them.
+ *
+ * Values that are reserved but never used leave gaps in the numbering, as a
+ * rolled back nextval() does; keys are unique, not consecutive.
+ *
+ */
+public class SequenceBlocks {
+
+    // values reserved per round trip, unless -Dhotel.keys.blockSize says otherwise
+    public static final int DEFAULT_BLOCK_SIZE = 256;
+
+    private static final String RESERVE = "SELECT nextval(pg_get_serial_sequence(?, ?)) FROM generate_series(1, ?)";
+
+    /*
+     * Reserved values of one shard's sequence not handed out yet.
+     **/
+    private static class Block {
+        int[] values = new int[0];
+        int next = 0;
+    } //end Block
+
+    private final Hotel esql;
+    private final String table;
+    private final String column;
+    private final int blockSize;
+    private Block[] blocks; // one per shard, made on first use
+
+    /**
+     * @param esql the database handle
+     * @param table the table whose keys are handed out
+     * @param column its serial key column
+     * @param blockSize the fewest values reserved at a time
+     */
+    public SequenceBlocks(Hotel esql, String table, String column, int blockSize) {
+        if (blockSize < 1)
+            throw new IllegalArgumentException("The block size must be at least 1");
+        this.esql = esql;
+        this.table = table;
+        this.column = column.toLowerCase(); // pg_get_serial_sequence does not fold the column's case
+        this.blockSize = blockSize;
+    }
+
+    /**
+     * Takes keys for rows of a hotel, reserving a new block when the shard's
+     * current one runs out.
+     *
+     * @param hotelID a hotel on the shard the rows are inserted on
+     * @param n the number of keys wanted
+     * @return n keys unused by any other row, in increasing order
+     * @throws java.sql.SQLException when failed to reserve a block
+     */
+    public int[] next(int hotelID, int n) throws SQLException {
+        Block block = block(esql.getShardRouter().shardOf(hotelID));
+        int[] keys = new int[n];
+        synchronized(block) {
+            int taken = Math.min(n, block.values.length - block.next);
+            System.arraycopy(block.values, block.next, keys, 0, taken);
+            block.next += taken;
+            if (taken < n) {
+                // one round trip covers the rest of this request and the next block
+                List < List < String >> rows = esql.executeShardQuery(hotelID, RESERVE, table, column, n - taken + blockSize);
+                int[] values = new int[rows.size()];
+                for (int i = 0; i < values.length; i++)
+                    values[i] = Integer.parseInt(rows.get(i).get(0));
+                System.arraycopy(values, 0, keys, taken, n - taken);
+                block.values = values;
+                block.next = n - taken;
+            }
+        }
+        return keys;
+    } //end next
+
+    private synchronized Block block(int shard) {
+        if (blocks == null) {
+            blocks = new Block[esql.getShardRouter().size()];
+            for (int i = 0; i < blocks.length; i++)
+                blocks[i] = new Block();
+        }
+        return blocks[shard];
+    }
+
+} //end SequenceBlocks
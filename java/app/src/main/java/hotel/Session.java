@@ -0,0 +1,45 @@
+package hotel;
+
+import java.sql.SQLException;
+
+/**
+ * The identity of a logged in user.  The console keeps one Session for the
+ * person at the keyboard; the HTTP server keeps one per login token.  A
+ * manager's session also holds the hotels they run, so authorization checks
+ * are answered in memory.
+ *
+ */
+public class Session {
+
+    public static final String MANAGER = "manager";
+
+    public final int userID;
+    public final String userType;
+    private final ManagedHotels hotels; // null unless a manager
+
+    public Session(int userID, String userType) {
+        this(userID, userType, null);
+    }
+
+    public Session(int userID, String userType, ManagedHotels hotels) {
+        this.userID = userID;
+        this.userType = userType;
+        this.hotels = hotels;
+    }
+
+    /**
+     * @return true when the user may use the manager operations
+     */
+    public boolean isManager() {
+        return MANAGER.equals(userType);
+    }
+
+    /**
+     * @return true when the user is a manager of the hotel
+     * @throws java.sql.SQLException when failed to reload the manager's hotels
+     */
+    public boolean manages(int hotelID) throws SQLException {
+        return isManager() && hotels != null && hotels.contains(hotelID);
+    }
+
+} //end Session
@@ -0,0 +1,247 @@
+package hotel;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Spreads the hotels over several databases by hotelID.  Hotel n lives on
+ * shard floorMod(n, size()) together with its rooms, bookings, repairs,
+ * update log and rollups, so every single-hotel statement runs on exactly one
+ * shard.  Shard 0 is the home database: Users and MaintenanceCompany are
+ * written there and copied to the other shards, where the foreign keys and
+ * joins of the hotel tables need them.
+ *
+ * Queries that span hotels are scattered to every shard in parallel and the
+ * rows gathered in shard order; the caller merges them.  The caller's thread
+ * runs the home database's part itself and the other shards' parts run on a
+ * cached pool, which starts a thread whenever none is idle, so concurrent
+ * scatters, or a scatter started from inside another one, never wait for a
+ * thread; the shards' connection pools are what limits them.  With a single
+ * shard everything runs on the home database, on the caller's thread.
+ *
+ * setup() turns a database loaded with the whole data set into one shard:
+ * it deletes the other shards' hotels and interleaves the sequences, so that
+ * bookingIDs, repairIDs and the other generated keys never collide.
+ *
+ */
+public class ShardRouter {
+
+    /**
+     * Work run against one shard.
+     */
+    public interface ShardTask < T > {
+        T run(int shard, ConnectionPool pool) throws SQLException;
+    } //end ShardTask
+
+    // tables whose rows belong to one hotel, children before parents
+    static final String[] HOTEL_TABLES = {
+        "RoomUpdatesLog", "RoomBookings", "RoomRepairs", "CustomerBookingCounts",
+        "HotelDailyStats", "RoomMonthlyStats", "Rooms", "Hotel"
+    };
+
+    // serial columns of the hotel tables, {table, column}
+    static final String[][] SHARDED_SEQUENCES = {
+        {"RoomBookings", "bookingID"}, {"RoomRepairs", "repairID"},
+        {"RoomRepairRequests", "requestNumber"}, {"RoomUpdatesLog", "updateNumber"}
+    };
+
+    private final ConnectionPool[] pools;
+    private final String[] urls;
+    private ExecutorService scatter;
+
+    /**
+     * @param home the pool of the home database, shard 0
+     * @param homeUrl the JDBC URL of the home database
+     * @param urls the JDBC URLs of shards 1 and up, in shard order
+     * @param poolSize the most connections opened to each shard
+     */
+    public ShardRouter(ConnectionPool home, String homeUrl, List < String > urls, String user, String passwd, int poolSize) throws SQLException {
+        this.pools = new ConnectionPool[urls.size() + 1];
+        this.urls = new String[urls.size() + 1];
+        this.pools[0] = home;
+        this.urls[0] = homeUrl;
+        for (int i = 0; i < urls.size(); i++) {
+            this.urls[i + 1] = urls.get(i);
+            this.pools[i + 1] = new ConnectionPool(urls.get(i), user, passwd, poolSize);
+        }
+        if (pools.length > 1) {
+            final AtomicInteger threads = new AtomicInteger();
+            this.scatter = Executors.newCachedThreadPool(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "shard-scatter-" + threads.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+    } //end ShardRouter
+
+    /**
+     * @return the number of shards, including the home database
+     */
+    public int size() {
+        return pools.length;
+    }
+
+    /**
+     * @return the shard that holds the hotel
+     */
+    public int shardOf(int hotelID) {
+        return Math.floorMod(hotelID, pools.length);
+    }
+
+    /**
+     * @return the pool of the shard that holds the hotel
+     */
+    public ConnectionPool pool(int hotelID) {
+        return pools[shardOf(hotelID)];
+    }
+
+    /**
+     * @return the pool of a shard by number; 0 is the home database
+     */
+    public ConnectionPool shard(int shard) {
+        return pools[shard];
+    }
+
+    public String url(int shard) {
+        return urls[shard];
+    }
+
+    /**
+     * Runs a task on every shard at once, the home database's on the
+     * caller's thread.
+     *
+     * @return the tasks' results, in shard order
+     * @throws java.sql.SQLException the first failure, in shard order
+     */
+    public < T > List < T > scatter(final ShardTask < T > task) throws SQLException {
+        List < T > results = new ArrayList < T > (pools.length);
+        if (pools.length == 1) {
+            results.add(task.run(0, pools[0]));
+            return results;
+        }
+        List < Future < T >> futures = new ArrayList < Future < T >> (pools.length - 1);
+        for (int i = 1; i < pools.length; i++) {
+            final int shard = i;
+            futures.add(scatter.submit(() -> task.run(shard, pools[shard])));
+        }
+        SQLException failure = null;
+        try {
+            results.add(task.run(0, pools[0]));
+        } catch (SQLException e) {
+            failure = e;
+            results.add(null);
+        } catch (RuntimeException e) {
+            failure = new SQLException("Shard query failed: " + e, e);
+            results.add(null);
+        }
+        for (Future < T > f: futures) {
+            try {
+                results.add(f.get());
+            } catch (ExecutionException e) {
+                if (failure == null)
+                    failure = e.getCause() instanceof SQLException ? (SQLException) e.getCause() :
+                        new SQLException("Shard query failed: " + e.getCause(), e.getCause());
+                results.add(null);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for the shards", e);
+            }
+        }
+        if (failure != null)
+            throw failure;
+        return results;
+    } //end scatter
+
+    /**
+     * Closes the shards' pools, except the home database's, which belongs to
+     * the caller.
+     */
+    public void close() {
+        if (scatter != null)
+            scatter.shutdownNow();
+        for (int i = 1; i < pools.length; i++)
+            pools[i].close();
+    }
+
+    /**
+     * Turns a database loaded with every hotel into one shard of a set: the
+     * hotels of the other shards are deleted with everything that belongs to
+     * them, and every sequence of the hotel tables is set to hand out only
+     * numbers that are congruent to the shard number modulo the shard count,
+     * above the highest number any shard was loaded with.
+     *
+     * @param pool the database to trim
+     * @param shard this database's shard number, 0 to shards - 1
+     * @param shards the number of shards
+     * @throws java.sql.SQLException when a statement fails
+     */
+    public static void setup(ConnectionPool pool, int shard, int shards) throws SQLException {
+        ConnectionPool.PooledConnection conn = pool.acquire();
+        try (Statement stmt = conn.getConnection().createStatement()) {
+            String elsewhere = "mod(hotelID, " + shards + ") + " + shards + " <> " + shard + " AND mod(hotelID, " + shards + ") <> " + shard;
+
+            // sequences first, while the table maxima still cover every shard
+            for (String[] s: SHARDED_SEQUENCES) {
+                ResultSet rs = stmt.executeQuery("SELECT pg_get_serial_sequence('" + s[0] + "', '" + s[1].toLowerCase() + "'), " +
+                    "COALESCE(MAX(" + s[1] + "), 0) FROM " + s[0]);
+                rs.next();
+                String sequence = rs.getString(1);
+                long next = (rs.getLong(2) / shards + 1) * shards + shard;
+                rs.close();
+                stmt.execute("ALTER SEQUENCE " + sequence + " INCREMENT BY " + shards + " RESTART WITH " + next);
+                System.out.println(sequence + " restarts at " + next + " by " + shards);
+            }
+
+            // the requests go with their repairs, the rest by hotelID
+            int deleted = stmt.executeUpdate("DELETE FROM RoomRepairRequests WHERE repairID IN " +
+                "(SELECT repairID FROM RoomRepairs WHERE " + elsewhere + ")");
+            System.out.println("RoomRepairRequests: deleted " + deleted);
+            for (String table: HOTEL_TABLES) {
+                deleted = stmt.executeUpdate("DELETE FROM " + table + " WHERE " + elsewhere);
+                System.out.println(table + ": deleted " + deleted);
+            }
+        } finally {
+            pool.release(conn);
+        }
+    } //end setup
+
+    /**
+     * The main execution method
+     *
+     * @param args setup <shard> <shards> <dbname> <port> <user>
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length != 6 || !args[0].equals("setup")) {
+            System.err.println(
+                "Usage: " +
+                "java [-classpath <classpath>] " +
+                ShardRouter.class.getName() +
+                " setup <shard> <shards> <dbname> <port> <user>");
+            return;
+        }
+        int shard = Integer.parseInt(args[1]);
+        int shards = Integer.parseInt(args[2]);
+        if (shards < 1 || shard < 0 || shard >= shards)
+            throw new IllegalArgumentException("The shard must be 0 to " + (shards - 1));
+        Class.forName("org.postgresql.Driver");
+        ConnectionPool pool = new ConnectionPool("jdbc:postgresql://localhost:" + args[4] + "/" + args[3], args[5], "", 1);
+        try {
+            setup(pool, shard, shards);
+        } finally {
+            pool.close();
+        }
+    } //end main
+
+} //end ShardRouter
@@ -0,0 +1,211 @@
+package hotel;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+
+/**
+ * Tests of the claim sets behind ReservationCoordinator.  A coordinator with
+ * one stripe keeps every key in the same table, which starts at 16 slots, so
+ * keys can be picked to collide, wrap around the end of the table and make
+ * it grow.
+ *
+ */
+class ReservationCoordinatorTest {
+
+    private static final int MAX_HOTEL = (1 << 22) - 1;
+    private static final int MAX_ROOM = (1 << 20) - 1;
+    private static final long MAX_DAY = (1L << 21) - 1;
+
+    @Test
+    void collidingKeysSurviveRemovalAcrossTheTableWrap() {
+        ReservationCoordinator c = single();
+        // three keys at home in the last slot, so two of them wrap to slots 0 and 1,
+        // and one at home in slot 0 that has to probe past them
+        List < Long > last = keysInSlot(15, 3);
+        long first = keysInSlot(0, 1).get(0);
+        for (long k: last)
+            assertTrue(c.tryAcquire(k));
+        assertTrue(c.tryAcquire(first));
+        assertEquals(4, c.claimed());
+
+        // removing the key in the last slot shifts the wrapped ones back
+        c.release(last.get(0));
+        assertFalse(held(c, last.get(0)));
+        assertTrue(held(c, last.get(1)));
+        assertTrue(held(c, last.get(2)));
+        assertTrue(held(c, first));
+        assertEquals(3, c.claimed());
+
+        // and the freed key can be claimed again, once
+        assertTrue(c.tryAcquire(last.get(0)));
+        assertFalse(c.tryAcquire(last.get(0)));
+
+        for (long k: last)
+            c.release(k);
+        c.release(first);
+        assertEquals(0, c.claimed());
+        assertFalse(held(c, first));
+        assertFalse(held(c, last.get(2)));
+    }
+
+    @Test
+    void collidingKeysSurviveGrowth() {
+        ReservationCoordinator c = single();
+        // more keys in one slot than the first table holds
+        List < Long > keys = keysInSlot(7, 40);
+        for (long k: keys)
+            assertTrue(c.tryAcquire(k));
+        for (long k: keys)
+            assertFalse(c.tryAcquire(k));
+        for (int i = 0; i < keys.size(); i += 2)
+            c.release(keys.get(i));
+        for (int i = 0; i < keys.size(); i++)
+            assertEquals(i % 2 == 1, held(c, keys.get(i)));
+        assertEquals(20, c.claimed());
+    }
+
+    @Test
+    void matchesASetUnderRandomClaimsAndReleases() {
+        ReservationCoordinator c = single();
+        Random random = new Random(42);
+        // few distinct keys, most of them sharing slots, so probes and shifts overlap constantly
+        List < Long > pool = new ArrayList < Long > ();
+        for (int slot = 0; slot < 16; slot += 3)
+            pool.addAll(keysInSlot(slot, 8));
+        Set < Long > model = new HashSet < Long > ();
+        for (int step = 0; step < 100000; step++) {
+            long k = pool.get(random.nextInt(pool.size()));
+            if (random.nextBoolean()) {
+                assertEquals(model.add(k), c.tryAcquire(k));
+            } else {
+                c.release(k);
+                model.remove(k);
+            }
+            assertEquals(model.size(), c.claimed());
+        }
+        for (long k: pool)
+            assertEquals(model.contains(k), held(c, k));
+    }
+
+    @Test
+    void packsKeysUpToTheFieldLimits() {
+        assertEquals(Long.MAX_VALUE, ReservationCoordinator.key(MAX_HOTEL, MAX_ROOM, MAX_DAY));
+        assertEquals(0, ReservationCoordinator.key(0, 0, 0));
+        assertEquals(-1, ReservationCoordinator.key(MAX_HOTEL + 1, 0, 0));
+        assertEquals(-1, ReservationCoordinator.key(0, MAX_ROOM + 1, 0));
+        assertEquals(-1, ReservationCoordinator.key(0, 0, MAX_DAY + 1));
+        assertEquals(-1, ReservationCoordinator.key(-1, 0, 0));
+        assertEquals(-1, ReservationCoordinator.key(0, -1, 0));
+        assertEquals(-1, ReservationCoordinator.key(0, 0, -1));
+
+        // the last day of one room is next to the first day of the next
+        assertEquals(ReservationCoordinator.key(5, 9, MAX_DAY) + 1, ReservationCoordinator.key(5, 10, 0));
+    }
+
+    @Test
+    void staysUpToTheLastDayAreCoordinatedAndNoFurther() {
+        ReservationCoordinator c = new ReservationCoordinator();
+        long[] claimed = c.tryAcquire(MAX_HOTEL, 9, LocalDate.ofEpochDay(MAX_DAY - 2), 3);
+        assertNotNull(claimed);
+        assertArrayEquals(new long[] {
+            ReservationCoordinator.key(MAX_HOTEL, 9, MAX_DAY - 2),
+            ReservationCoordinator.key(MAX_HOTEL, 9, MAX_DAY - 1),
+            ReservationCoordinator.key(MAX_HOTEL, 9, MAX_DAY)
+        }, claimed);
+        // the next room's first day is not taken by the stay
+        assertFalse(held(c, ReservationCoordinator.key(MAX_HOTEL, 10, 0)));
+        c.release(claimed);
+        assertEquals(0, c.claimed());
+
+        // a stay running past the last day, or a hotel that does not fit, is not coordinated
+        assertEquals(0, c.tryAcquire(1, 1, LocalDate.ofEpochDay(MAX_DAY - 1), 3).length);
+        assertEquals(0, c.tryAcquire(MAX_HOTEL + 1, 1, LocalDate.of(2030, 1, 1), 1).length);
+        assertEquals(0, c.tryAcquire(1, 1, LocalDate.of(1960, 1, 1), 1).length);
+        assertEquals(0, c.claimed());
+        c.release(new long[0]);
+    }
+
+    @Test
+    void aStayThatMeetsAClaimedNightGivesBackTheNightsItTook() {
+        ReservationCoordinator c = new ReservationCoordinator();
+        LocalDate checkIn = LocalDate.of(2030, 6, 1);
+        long third = ReservationCoordinator.key(3, 101, checkIn.plusDays(2).toEpochDay());
+        assertTrue(c.tryAcquire(third));
+
+        assertNull(c.tryAcquire(3, 101, checkIn, 5));
+        assertEquals(1, c.claimed());
+        for (int n = 0; n < 5; n++)
+            assertEquals(n == 2, held(c, ReservationCoordinator.key(3, 101, checkIn.plusDays(n).toEpochDay())));
+
+        // a stay that ends before the claimed night is not held up by it
+        long[] before = c.tryAcquire(3, 101, checkIn, 2);
+        assertNotNull(before);
+        c.release(before);
+
+        c.release(third);
+        long[] stay = c.tryAcquire(3, 101, checkIn, 5);
+        assertNotNull(stay);
+        assertEquals(5, c.claimed());
+        c.release(stay);
+        assertEquals(0, c.claimed());
+    }
+
+    @Test
+    void roundsStripesUpToAPowerOfTwo() {
+        assertEquals(1, new ReservationCoordinator(1).stripes());
+        assertEquals(2, new ReservationCoordinator(2).stripes());
+        assertEquals(4, new ReservationCoordinator(3).stripes());
+        assertEquals(256, new ReservationCoordinator().stripes());
+        assertEquals(1 << 16, new ReservationCoordinator(1 << 16).stripes());
+        assertThrows(IllegalArgumentException.class, () -> new ReservationCoordinator(0));
+        assertThrows(IllegalArgumentException.class, () -> new ReservationCoordinator((1 << 16) + 1));
+    }
+
+    /*
+     * A coordinator whose keys all share one table, so slots alone decide collisions.
+     **/
+    private static ReservationCoordinator single() {
+        ReservationCoordinator c = new ReservationCoordinator(1);
+        assertEquals(1, c.stripes());
+        return c;
+    }
+
+    /*
+     * Whether a key is claimed, leaving the coordinator as it was.
+     **/
+    private static boolean held(ReservationCoordinator c, long key) {
+        if (!c.tryAcquire(key))
+            return true;
+        c.release(key);
+        return false;
+    }
+
+    /*
+     * n distinct keys whose home is the given slot of a 16-slot table.
+     **/
+    private static List < Long > keysInSlot(int slot, int n) {
+        List < Long > keys = new ArrayList < Long > (n);
+        for (long day = 0; keys.size() < n; day++) {
+            long k = ReservationCoordinator.key(0, 1, day);
+            if (ReservationCoordinator.slot(k, 15) == slot)
+                keys.add(k);
+        }
+        return keys;
+    }
+
+} //end ReservationCoordinatorTest
@@ -0,0 +1,104 @@
+package hotel.bench;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import hotel.Hotel;
+
+
+/**
+ * Measures reservation throughput against one contended "hot" room.  Every
+ * thread keeps booking the same room for random nights inside a small window
+ * of far-future dates, so most attempts collide with another thread.  At the
+ * end the benchmark checks that no night was booked twice and removes the
+ * rows it created.
+ *
+ */
+public class BookingBenchmark {
+
+    // the benchmark books nights starting here, far away from real bookings
+    static final LocalDate FIRST_NIGHT = LocalDate.of(2100, 1, 1);
+
+    /**
+     * @param args <dbname> <port> <user> [threads] [seconds] [hotelID] [roomNumber] [nights] [customerID]
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println(
+                "Usage: " +
+                "java [-classpath <classpath>] " +
+                BookingBenchmark.class.getName() +
+                " <dbname> <port> <user> [threads] [seconds] [hotelID] [roomNumber] [nights] [customerID]");
+            return;
+        } //end if
+
+        final int threads = args.length > 3 ? Integer.parseInt(args[3]) : 16;
+        final int seconds = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+        final int hotelID = args.length > 5 ? Integer.parseInt(args[5]) : 1;
+        final int roomNumber = args.length > 6 ? Integer.parseInt(args[6]) : 1;
+        final int nights = args.length > 7 ? Integer.parseInt(args[7]) : 365;
+        final int customerID = args.length > 8 ? Integer.parseInt(args[8]) : 1;
+
+        Class.forName("org.postgresql.Driver");
+        final Hotel esql = new Hotel(args[0], args[1], args[2], "", threads);
+        clear(esql, hotelID, roomNumber, nights);
+
+        final AtomicLong booked = new AtomicLong();
+        final AtomicLong conflicts = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final long deadline = System.nanoTime() + seconds * 1000000000L;
+        final CountDownLatch done = new CountDownLatch(threads);
+
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            final Random random = new Random(t);
+            new Thread() {
+                public void run() {
+                    try {
+                        while (System.nanoTime() < deadline) {
+                            LocalDate night = FIRST_NIGHT.plusDays(random.nextInt(nights));
+                            try {
+                                if (esql.bookRoom(customerID, hotelID, roomNumber, night).isBooked())
+                                    booked.incrementAndGet();
+                                else
+                                    conflicts.incrementAndGet();
+                            } catch (Exception e) {
+                                errors.incrementAndGet();
+                            }
+                        }
+                    } finally {
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        done.await();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        long attempts = booked.get() + conflicts.get() + errors.get();
+        System.out.printf("threads=%d seconds=%.1f room=%d/%d nights=%d%n", threads, elapsed, hotelID, roomNumber, nights);
+        System.out.printf("attempts: %d (%.0f/s)%n", attempts, attempts / elapsed);
+        System.out.printf("booked:   %d (%.0f/s)%n", booked.get(), booked.get() / elapsed);
+        System.out.printf("conflict: %d (%.0f/s)%n", conflicts.get(), conflicts.get() / elapsed);
+        System.out.printf("errors:   %d%n", errors.get());
+
+        List < List < String >> check = esql.executeQueryAndReturnResult(
+            "SELECT COUNT(*), COUNT(DISTINCT bookingDate) FROM RoomBookings WHERE hotelID = ? AND roomNumber = ? AND bookingDate >= ? AND bookingDate < ?",
+            hotelID, roomNumber, java.sql.Date.valueOf(FIRST_NIGHT), java.sql.Date.valueOf(FIRST_NIGHT.plusDays(nights)));
+        long rows = Long.parseLong(check.get(0).get(0));
+        long distinct = Long.parseLong(check.get(0).get(1));
+        System.out.println("double bookings: " + (rows - distinct) + (rows == booked.get() ? "" : " (row count " + rows + " != booked " + booked.get() + ")"));
+
+        clear(esql, hotelID, roomNumber, nights);
+        esql.cleanup();
+    } //end main
+
+    private static void clear(Hotel esql, int hotelID, int roomNumber, int nights) throws Exception {
+        esql.executeUpdate("DELETE FROM RoomBookings WHERE hotelID = ? AND roomNumber = ? AND bookingDate >= ? AND bookingDate < ?",
+            hotelID, roomNumber, java.sql.Date.valueOf(FIRST_NIGHT), java.sql.Date.valueOf(FIRST_NIGHT.plusDays(nights)));
+    }
+
+} //end BookingBenchmark
@@ -0,0 +1,181 @@
+package hotel.bench;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import hotel.Hotel;
+
+
+/**
+ * Measures bookings per second and booking latency when many guests go for
+ * the same few room-nights, with the ReservationCoordinator off and then on.
+ * Room-nights are drawn from a Zipfian distribution over the rooms of one
+ * hotel and a short window of far-future nights, so a handful of keys get
+ * most of the attempts.  Every round the window moves on to nights nobody
+ * has booked, which brings the rush for the hot keys back; without that the
+ * hot keys are booked once and the rest of the run only measures rejections.
+ * At the end of each mode the benchmark checks that no night was booked
+ * twice and removes the rows it created.
+ *
+ */
+public class ContendedBookingBenchmark {
+
+    // the benchmark books nights starting here, far away from real bookings
+    static final LocalDate FIRST_NIGHT = LocalDate.of(2110, 1, 1);
+
+    /**
+     * @param args <dbname> <port> <user> [threads] [seconds] [hotelID] [rooms] [nights] [roundMillis] [skew] [customerID]
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println(
+                "Usage: " +
+                "java [-classpath <classpath>] " +
+                ContendedBookingBenchmark.class.getName() +
+                " <dbname> <port> <user> [threads] [seconds] [hotelID] [rooms] [nights] [roundMillis] [skew] [customerID]");
+            return;
+        } //end if
+
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : 32;
+        int seconds = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+        int hotelID = args.length > 5 ? Integer.parseInt(args[5]) : 1;
+        int rooms = args.length > 6 ? Integer.parseInt(args[6]) : 10;
+        int nights = args.length > 7 ? Integer.parseInt(args[7]) : 7;
+        int roundMillis = args.length > 8 ? Integer.parseInt(args[8]) : 100;
+        double skew = args.length > 9 ? Double.parseDouble(args[9]) : 1.2;
+        int customerID = args.length > 10 ? Integer.parseInt(args[10]) : 1;
+
+        Class.forName("org.postgresql.Driver");
+        double[] cdf = zipf(rooms * nights, skew);
+        // the run books no further than this many rounds of nights
+        int rounds = (int)(seconds * 1000L / roundMillis) + 1;
+        for (String coordinate: new String[] {"false", "true"}) {
+            // Hotel reads the switch when it is made
+            System.setProperty("hotel.booking.coordinate", coordinate);
+            Hotel esql = new Hotel(args[0], args[1], args[2], "", threads);
+            try {
+                clear(esql, hotelID, rooms, rounds * nights);
+                System.out.printf("coordinate=%s threads=%d hotel=%d rooms=%d nights=%d roundMillis=%d skew=%.2f%n",
+                    coordinate, threads, hotelID, rooms, nights, roundMillis, skew);
+                run(esql, threads, seconds, hotelID, rooms, nights, roundMillis, cdf, customerID);
+                check(esql, hotelID, rooms, rounds * nights);
+                clear(esql, hotelID, rooms, rounds * nights);
+            } finally {
+                esql.cleanup();
+            }
+        }
+    } //end main
+
+    private static void run(final Hotel esql, int threads, int seconds, final int hotelID, final int rooms, final int nights,
+        final int roundMillis, final double[] cdf, final int customerID) throws Exception {
+        final AtomicLong booked = new AtomicLong();
+        final AtomicLong conflicts = new AtomicLong();
+        final AtomicLong errors = new AtomicLong();
+        final long[][] latencies = new long[threads][];
+        final int[] counts = new int[threads];
+        final long begin = System.nanoTime();
+        final long deadline = begin + seconds * 1000000000L;
+        final CountDownLatch done = new CountDownLatch(threads);
+
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            final Random random = new Random(t);
+            new Thread() {
+                public void run() {
+                    long[] nanos = new long[1024];
+                    int n = 0;
+                    try {
+                        for (long now = System.nanoTime(); now < deadline; now = System.nanoTime()) {
+                            int round = (int)((now - begin) / (roundMillis * 1000000L));
+                            int key = sample(cdf, random);
+                            int roomNumber = key % rooms + 1;
+                            LocalDate night = FIRST_NIGHT.plusDays((long) round * nights + key / rooms);
+                            try {
+                                if (esql.bookRoom(customerID, hotelID, roomNumber, night).isBooked())
+                                    booked.incrementAndGet();
+                                else
+                                    conflicts.incrementAndGet();
+                            } catch (Exception e) {
+                                errors.incrementAndGet();
+                            }
+                            if (n == nanos.length)
+                                nanos = Arrays.copyOf(nanos, n * 2);
+                            nanos[n++] = System.nanoTime() - now;
+                        }
+                    } finally {
+                        latencies[thread] = nanos;
+                        counts[thread] = n;
+                        done.countDown();
+                    }
+                }
+            }.start();
+        }
+        done.await();
+        double elapsed = (System.nanoTime() - begin) / 1e9;
+
+        int total = 0;
+        for (int c: counts)
+            total += c;
+        long[] all = new long[total];
+        for (int t = 0, at = 0; t < threads; at += counts[t], t++)
+            System.arraycopy(latencies[t], 0, all, at, counts[t]);
+        Arrays.sort(all);
+
+        long attempts = booked.get() + conflicts.get() + errors.get();
+        System.out.printf("attempts: %d (%.0f/s)%n", attempts, attempts / elapsed);
+        System.out.printf("booked:   %d (%.0f/s)%n", booked.get(), booked.get() / elapsed);
+        System.out.printf("conflict: %d (%.0f/s)%n", conflicts.get(), conflicts.get() / elapsed);
+        System.out.printf("errors:   %d%n", errors.get());
+        System.out.printf("latency:  p50 %.2f ms, p99 %.2f ms, p99.9 %.2f ms, max %.2f ms%n",
+            percentile(all, 0.50), percentile(all, 0.99), percentile(all, 0.999), percentile(all, 1.0));
+    } //end run
+
+    /*
+     * The cumulative probabilities of ranks 0 to n - 1 when rank k is drawn
+     * with weight 1 / (k + 1)^skew.
+     **/
+    static double[] zipf(int n, double skew) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1 / Math.pow(k + 1, skew);
+            cdf[k] = sum;
+        }
+        for (int k = 0; k < n; k++)
+            cdf[k] /= sum;
+        return cdf;
+    }
+
+    static int sample(double[] cdf, Random random) {
+        int k = Arrays.binarySearch(cdf, random.nextDouble());
+        return Math.min(k < 0 ? -k - 1 : k, cdf.length - 1);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0)
+            return 0;
+        int i = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(0, i)] / 1e6;
+    }
+
+    private static void check(Hotel esql, int hotelID, int rooms, int nights) throws Exception {
+        List < List < String >> check = esql.executeShardQuery(hotelID,
+            "SELECT COUNT(*), COUNT(DISTINCT (roomNumber, bookingDate)) FROM RoomBookings " +
+            "WHERE hotelID = ? AND roomNumber <= ? AND bookingDate >= ? AND bookingDate < ?",
+            hotelID, rooms, java.sql.Date.valueOf(FIRST_NIGHT), java.sql.Date.valueOf(FIRST_NIGHT.plusDays(nights)));
+        long rows = Long.parseLong(check.get(0).get(0));
+        long distinct = Long.parseLong(check.get(0).get(1));
+        System.out.println("double bookings: " + (rows - distinct));
+    }
+
+    private static void clear(Hotel esql, int hotelID, int rooms, int nights) throws Exception {
+        esql.executeShardUpdate(hotelID,
+            "DELETE FROM RoomBookings WHERE hotelID = ? AND roomNumber <= ? AND bookingDate >= ? AND bookingDate < ?",
+            hotelID, rooms, java.sql.Date.valueOf(FIRST_NIGHT), java.sql.Date.valueOf(FIRST_NIGHT.plusDays(nights)));
+    }
+
+} //end ContendedBookingBenchmark
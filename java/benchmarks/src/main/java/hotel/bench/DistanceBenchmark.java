@@ -0,0 +1,68 @@
+package hotel.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import hotel.Hotel;
+
+
+/**
+ * The distance math used by the hotel search, over a fixed set of random
+ * coordinates.  Needs no database.
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DistanceBenchmark {
+
+    static final int POINTS = 1024;
+
+    private final double[] latitudes = new double[POINTS];
+    private final double[] longitudes = new double[POINTS];
+
+    @Setup
+    public void points() {
+        Random random = new Random(42);
+        for (int i = 0; i < POINTS; i++) {
+            latitudes[i] = random.nextDouble() * 180 - 90;
+            longitudes[i] = random.nextDouble() * 360 - 180;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public double calculateDistance() {
+        double sum = 0;
+        for (int i = 0; i < POINTS; i++)
+            sum += Hotel.calculateDistance(50, 50, latitudes[i], longitudes[i]);
+        return sum;
+    }
+
+    // the same points filtered by a 30 unit radius, as viewHotels does
+    @Benchmark
+    @OperationsPerInvocation(POINTS)
+    public int withinRadius() {
+        int found = 0;
+        for (int i = 0; i < POINTS; i++)
+            if (Hotel.calculateDistance(50, 50, latitudes[i], longitudes[i]) <= 30)
+                found++;
+        return found;
+    }
+
+} //end DistanceBenchmark
@@ -0,0 +1,47 @@
+package hotel.bench;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import hotel.Hotel;
+
+
+/**
+ * One Hotel handle shared by all benchmark threads, connected to a local
+ * Postgres seeded from data/*.csv by sql/scripts/create_db.sh.  Pass the
+ * database with -p dbname=.. -p port=.. -p user=..
+ *
+ */
+@State(Scope.Benchmark)
+public class HotelState {
+
+    @Param("hotel_DB")
+    public String dbname;
+
+    @Param("5432")
+    public String port;
+
+    @Param("postgres")
+    public String user;
+
+    @Param("8")
+    public int poolSize;
+
+    public Hotel esql;
+
+    @Setup(Level.Trial)
+    public void connect() throws Exception {
+        Class.forName("org.postgresql.Driver");
+        esql = new Hotel(dbname, port, user, "", poolSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void disconnect() {
+        esql.cleanup();
+    }
+
+} //end HotelState
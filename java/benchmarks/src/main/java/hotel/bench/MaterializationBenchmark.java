@@ -0,0 +1,85 @@
+package hotel.bench;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+/**
+ * The cost of turning a result set into something the caller can use: a
+ * row count, printed text, a list of string rows, or rows streamed through
+ * a cursor.  All four read the same rows so the difference is the
+ * materialization alone.
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MaterializationBenchmark {
+
+    static final String QUERY =
+        "SELECT bookingID, customerID, hotelID, roomNumber, bookingDate FROM RoomBookings ORDER BY bookingID LIMIT ?";
+
+    @Param({"10", "500"})
+    public int rows;
+
+    private PrintStream stdout;
+
+    // executeQueryAndPrintResult writes to System.out; keep it off the terminal
+    @Setup(Level.Trial)
+    public void silence() {
+        stdout = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void restore() {
+        System.setOut(stdout);
+    }
+
+    @Benchmark
+    public int executeQuery(HotelState db) throws Exception {
+        return db.esql.executeQuery(QUERY, rows);
+    }
+
+    @Benchmark
+    public int executeQueryAndPrintResult(HotelState db) throws Exception {
+        return db.esql.executeQueryAndPrintResult(QUERY, rows);
+    }
+
+    @Benchmark
+    public List < List < String >> executeQueryAndReturnResult(HotelState db) throws Exception {
+        return db.esql.executeQueryAndReturnResult(QUERY, rows);
+    }
+
+    @Benchmark
+    public long streamQuery(HotelState db, final Blackhole bh) throws Exception {
+        return db.esql.streamQuery(QUERY, rs -> {
+            bh.consume(rs.getInt(1));
+            bh.consume(rs.getInt(2));
+            bh.consume(rs.getInt(3));
+            bh.consume(rs.getInt(4));
+            bh.consume(rs.getDate(5));
+        }, rows);
+    }
+
+} //end MaterializationBenchmark
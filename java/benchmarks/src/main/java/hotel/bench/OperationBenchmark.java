@@ -0,0 +1,150 @@
+package hotel.bench;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import hotel.BookingResult;
+import hotel.Hotel;
+import hotel.HotelLocator;
+
+
+/**
+ * The query path of each menu operation, measured against the seed data:
+ * hotel 1 is managed by user 25 and customer 3 has bookings there.  Each
+ * benchmark runs the same Hotel call the console and the HTTP server make,
+ * so a regression in a query, an index or a cache shows up here.
+ *
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OperationBenchmark {
+
+    static final int HOTEL = 1;
+    static final int ROOM = 1;
+    static final int CUSTOMER = 3;
+    static final int MANAGER = 25;
+    static final double LATITUDE = 50;
+    static final double LONGITUDE = 50;
+    static final LocalDate DATE = LocalDate.of(2015, 5, 12);
+
+    /**
+     * Hands out a fresh far-future night for every booking, and removes the
+     * bookings after each iteration.
+     */
+    @State(Scope.Benchmark)
+    public static class Nights {
+        final AtomicInteger next = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void clearBefore(HotelState db) throws Exception {
+            clear(db);
+        }
+
+        // per iteration, because the shared HotelState is closed before trial teardowns run here
+        @TearDown(Level.Iteration)
+        public void clear(HotelState db) throws Exception {
+            db.esql.executeUpdate("DELETE FROM RoomBookings WHERE hotelID = ? AND bookingDate >= ?",
+                HOTEL, java.sql.Date.valueOf(BookingBenchmark.FIRST_NIGHT));
+            next.set(0);
+        }
+
+        LocalDate next() {
+            return BookingBenchmark.FIRST_NIGHT.plusDays(next.getAndIncrement());
+        }
+    } //end Nights
+
+    @Benchmark
+    public List < HotelLocator.Match > viewHotels(HotelState db) throws Exception {
+        return db.esql.getHotelLocator().withinRadius(LATITUDE, LONGITUDE, 30);
+    }
+
+    // the full-table scan the hotel locator replaced, as a baseline
+    @Benchmark
+    public int viewHotelsScan(HotelState db) throws Exception {
+        int found = 0;
+        for (List < String > row: db.esql.executeQueryAndReturnResult("SELECT hotelID, latitude, longitude FROM Hotel"))
+            if (Hotel.calculateDistance(LATITUDE, LONGITUDE, Double.parseDouble(row.get(1)), Double.parseDouble(row.get(2))) <= 30)
+                found++;
+        return found;
+    }
+
+    @Benchmark
+    public List < HotelLocator.Match > viewNearestHotels(HotelState db) throws Exception {
+        return db.esql.getHotelLocator().nearest(LATITUDE, LONGITUDE, 5);
+    }
+
+    @Benchmark
+    public List < List < String >> viewRooms(HotelState db) throws Exception {
+        return db.esql.listRooms(HOTEL, DATE);
+    }
+
+    // the queries behind a cache miss in viewRooms
+    @Benchmark
+    public void viewRoomsUncached(HotelState db, Blackhole bh) throws Exception {
+        bh.consume(db.esql.executeQueryAndReturnResult(
+            "SELECT roomNumber, price FROM Rooms WHERE hotelID = ? ORDER BY roomNumber", HOTEL));
+        bh.consume(db.esql.executeQueryAndReturnResult(
+            "SELECT roomNumber FROM RoomBookings WHERE hotelID = ? AND bookingDate = ?", HOTEL, java.sql.Date.valueOf(DATE)));
+    }
+
+    @Benchmark
+    public BookingResult bookRoom(HotelState db, Nights nights) throws Exception {
+        return db.esql.bookRoom(CUSTOMER, HOTEL, ROOM, nights.next());
+    }
+
+    // a night that is already taken: the insert finds the conflict and writes nothing
+    @Benchmark
+    public BookingResult bookRoomConflict(HotelState db) throws Exception {
+        return db.esql.bookRoom(CUSTOMER, 1, 5, DATE);
+    }
+
+    @Benchmark
+    public List < List < String >> viewRecentBookings(HotelState db) throws Exception {
+        return db.esql.recentBookings(CUSTOMER);
+    }
+
+    @Benchmark
+    public List < List < String >> viewRecentUpdates(HotelState db) throws Exception {
+        return db.esql.recentUpdates(MANAGER);
+    }
+
+    @Benchmark
+    public long viewBookingHistory(HotelState db, final Blackhole bh) throws Exception {
+        return db.esql.bookingHistory(HOTEL, LocalDate.of(2000, 1, 1), LocalDate.of(2030, 1, 1), rs -> bh.consume(rs.getInt(1)));
+    }
+
+    @Benchmark
+    public List < List < String >> viewRegularCustomers(HotelState db) throws Exception {
+        return db.esql.regularCustomers(HOTEL);
+    }
+
+    @Benchmark
+    public long viewRoomRepairHistory(HotelState db, final Blackhole bh) throws Exception {
+        return db.esql.repairHistory(MANAGER, rs -> bh.consume(rs.getInt(1)));
+    }
+
+    @Benchmark
+    public Object logIn(HotelState db) throws Exception {
+        return db.esql.logIn(CUSTOMER, "xyz");
+    }
+
+} //end OperationBenchmark
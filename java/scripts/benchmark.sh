@@ -0,0 +1,14 @@
+#!/bin/bash
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+# build the application and the JMH benchmarks (needs Maven and JDK 17)
+mvn -B -q -f $DIR/../pom.xml package
+
+#run the benchmarks against the database seeded by sql/scripts/create_db.sh
+#results are kept per commit in benchmarks/results/<commit>.json
+#extra arguments go to JMH, e.g. a benchmark name pattern or -wi 1 -i 3
+RESULTS=$DIR/../benchmarks/results
+mkdir -p $RESULTS
+java -jar $DIR/../benchmarks/target/benchmarks.jar \
+    -p dbname=$USER"_DB" -p port=$PGPORT -p user=$USER \
+    -rf json -rff $RESULTS/$(git -C $DIR rev-parse --short HEAD).json "$@"
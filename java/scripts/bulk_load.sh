@@ -0,0 +1,10 @@
+#!/bin/bash
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+# build the application module (needs Maven and JDK 17)
+mvn -B -q -f $DIR/../pom.xml -pl app -am package
+
+#recreate the tables and load data/*.csv through client-side COPY, like sql/scripts/create_db.sh
+#pass another data directory to load a different set of CSVs, e.g. a hotel chain being onboarded
+DATA=${1:-$DIR/../../data}
+java -cp "$DIR/../app/target/hotel-app.jar:$DIR/../app/target/lib/*" hotel.BulkLoader $USER"_DB" $PGPORT $USER $DATA $DIR/../../sql/src
@@ -1,13 +1,10 @@
 #!/bin/bash
 DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
 
-export JAVA_HOME=/usr/csshare/pkgs/jdk1.7.0_17
-export PATH=$JAVA_HOME/bin:$PATH
-
-# compile the java program
-javac -d $DIR/../classes $DIR/../src/Hotel.java
+# build the application module (needs Maven and JDK 17)
+mvn -B -q -f $DIR/../pom.xml -pl app -am package
 
 #run the java program
 #Use your database name, port number and login
-java -cp $DIR/../classes:$DIR/../lib/pg73jdbc3.jar Hotel $USER"_DB" $PGPORT $USER
+java -cp "$DIR/../app/target/hotel-app.jar:$DIR/../app/target/lib/*" hotel.HotelConsole $USER"_DB" $PGPORT $USER
 
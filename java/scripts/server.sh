@@ -0,0 +1,11 @@
+#!/bin/bash
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+# build the application module (needs Maven and JDK 17)
+mvn -B -q -f $DIR/../pom.xml -pl app -am package
+
+#run the HTTP server on port 8080 with 32 connections, printing latency metrics every minute
+#Use your database name, port number and login
+#Reports go to the read replica on REPLICA_PORT when it is set (see server/startReplica.sh)
+#and the hotels are spread over the shards in HOTEL_SHARDS when it is set (see java/scripts/shards.sh)
+java -Dhotel.metrics.dumpSeconds=60 ${HOTEL_SHARDS:+-Dhotel.shards=$HOTEL_SHARDS} -cp "$DIR/../app/target/hotel-app.jar:$DIR/../app/target/lib/*" hotel.HotelServer $USER"_DB" $PGPORT $USER 8080 32 ${REPLICA_PORT:+$USER"_DB" $REPLICA_PORT}
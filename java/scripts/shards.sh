@@ -0,0 +1,23 @@
+#!/bin/bash
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+# build the application module (needs Maven and JDK 17)
+mvn -B -q -f $DIR/../pom.xml -pl app -am package
+
+#spread the hotels over the database on PGPORT and the shards started by server/startShard.sh,
+#given by port: source ./java/scripts/shards.sh 1035 1036
+#every database is loaded with the whole data set and then keeps only its own hotels (hotelID mod
+#the number of databases); Users and MaintenanceCompany stay whole on every one
+CP="$DIR/../app/target/hotel-app.jar:$DIR/../app/target/lib/*"
+DATA=${DATA:-$DIR/../../data}
+SHARDS=$(($# + 1))
+N=0
+for PORT in $PGPORT "$@"; do
+    java -cp "$CP" hotel.BulkLoader $USER"_DB" $PORT $USER $DATA $DIR/../../sql/src && \
+    java -cp "$CP" hotel.ShardRouter setup $N $SHARDS $USER"_DB" $PORT $USER || break
+    N=$((N + 1))
+done
+
+#server.sh hands the other shards to the application as -Dhotel.shards
+export HOTEL_SHARDS=$(for PORT in "$@"; do printf "%s:%s," $USER"_DB" $PORT; done | sed 's/,$//')
+echo "HOTEL_SHARDS=$HOTEL_SHARDS"
@@ -0,0 +1,12 @@
+#!/bin/bash
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+
+# build the application module (needs Maven and JDK 17)
+mvn -B -q -f $DIR/../pom.xml -pl app -am package
+
+#export RoomBookings, Rooms and Hotel to a columnar snapshot file and report on it
+#the export reads from the replica on $REPLICA_PORT when one is running
+FILE=${1:-bookings.snap}
+CP="$DIR/../app/target/hotel-app.jar:$DIR/../app/target/lib/*"
+java -cp "$CP" hotel.BookingSnapshot export $FILE $USER"_DB" $PGPORT $USER ${REPLICA_PORT:+$USER"_DB" $REPLICA_PORT} && \
+java -cp "$CP" hotel.BookingSnapshot report $FILE
@@ -0,0 +1,16 @@
+#! /bin/bash
+#Starts a streaming read replica of the database started by startPostgreSQL.sh.
+#Run it after startPostgreSQL.sh, in the same shell, so PGPORT names the primary.
+folder=/tmp/$USER
+export REPLICA_PORT=${REPLICA_PORT:-$((PGPORT + 1))}
+export REPLICA_DATA=$folder/myReplica/data
+
+#Clear folder
+rm -rf $folder/myReplica
+mkdir -p $folder/myReplica
+
+#Copy the primary; -R writes standby.signal and primary_conninfo so the copy follows the primary
+pg_basebackup -h $PGSOCKETS -p $PGPORT -D $REPLICA_DATA -R -X stream
+
+#Start the replica on its own port
+pg_ctl -o "-c unix_socket_directories=$PGSOCKETS -p $REPLICA_PORT" -D $REPLICA_DATA -l $folder/replica_logfile start
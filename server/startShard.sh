@@ -0,0 +1,20 @@
+#! /bin/bash
+#Starts another database server to hold a shard of the hotels, see java/scripts/shards.sh.
+#Run it after startPostgreSQL.sh, in the same shell, with the shard number: source ./server/startShard.sh 1
+folder=/tmp/$USER
+SHARD=${1:-1}
+export SHARD_PORT=$((PGPORT + 10 + SHARD))
+SHARD_DATA=$folder/myShard$SHARD/data
+
+#Clear folder
+rm -rf $folder/myShard$SHARD
+mkdir -p $SHARD_DATA
+
+#Initialize DB
+initdb -D $SHARD_DATA
+
+sleep 1
+#Start the shard on its own port, and create the database with the same name as the primary's
+pg_ctl -o "-c unix_socket_directories=$PGSOCKETS -p $SHARD_PORT" -D $SHARD_DATA -l $folder/shard$SHARD"_logfile" start
+sleep 1
+createdb -h localhost -p $SHARD_PORT $USER"_DB"
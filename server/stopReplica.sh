@@ -0,0 +1,2 @@
+#! /bin/bash
+pg_ctl -D /tmp/$USER/myReplica/data stop
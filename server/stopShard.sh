@@ -0,0 +1,2 @@
+#! /bin/bash
+pg_ctl -D /tmp/$USER/myShard${1:-1}/data stop
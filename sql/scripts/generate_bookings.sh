@@ -0,0 +1,5 @@
+#!/bin/bash
+DIR="$( cd "$( dirname "${BASH_SOURCE[0]}" )" && pwd )"
+#Pass psql variables through, e.g. ./generate_bookings.sh -v hotels=1000
+psql -h localhost -p $PGPORT $USER"_DB" "$@" -f $DIR/../src/generate_bookings.sql
+psql -h localhost -p $PGPORT $USER"_DB" -f $DIR/../src/explain_bookings.sql
@@ -7,5 +7,17 @@ CREATE INDEX if NOT EXISTS companyID_idx ON RoomRepairs  (companyID);
 CREATE INDEX if NOT EXISTS hotelID_idx ON RoomRepairs  (hotelID);
 CREATE INDEX if NOT EXISTS roomNumber_idx ON RoomRepairs (roomNumber);
 CREATE INDEX if NOT EXISTS repairDate_idx ON RoomRepairs (repairDate);
+--rooms of a hotel under repair on a date or over a stay (viewRooms, bookRooms): repair windows are
+--at most 30 days, so the repairs overlapping [from, to) start in (from - 30, to) and are one range scan
+CREATE INDEX IF NOT EXISTS hotel_repairdate_idx ON RoomRepairs (hotelID, repairDate) INCLUDE (roomNumber, repairDays);
 
 
+/*covering indexes for RoomBookings, created on every partition*/
+--a customer's latest bookings (viewRecentBookingsfromCustomer)
+CREATE INDEX IF NOT EXISTS customer_bookingdate_idx ON RoomBookings (customerID, bookingDate DESC) INCLUDE (hotelID, roomNumber);
+--a hotel's bookings on a date or in a date range (viewRooms, viewBookingHistoryofHotel)
+CREATE INDEX IF NOT EXISTS hotel_bookingdate_idx ON RoomBookings (hotelID, bookingDate) INCLUDE (roomNumber, customerID, bookingID);
+--a room on a date or over a stay (bookRooms) is served by the UNIQUE(hotelID, roomNumber, bookingDate) index
+
+/*index for CustomerBookingCounts: top customers of a hotel*/
+CREATE INDEX IF NOT EXISTS hotel_numbookings_idx ON CustomerBookingCounts (hotelID, numBookings DESC);
@@ -6,6 +6,9 @@ DROP TABLE IF EXISTS RoomBookings CASCADE;
 DROP TABLE IF EXISTS RoomRepairs CASCADE;
 DROP TABLE IF EXISTS RoomRepairRequests CASCADE;
 DROP TABLE IF EXISTS RoomUpdatesLog CASCADE;
+DROP TABLE IF EXISTS CustomerBookingCounts CASCADE;
+DROP TABLE IF EXISTS HotelDailyStats CASCADE;
+DROP TABLE IF EXISTS RoomMonthlyStats CASCADE;
 
 CREATE TABLE Users ( userID serial,
                      name char(50),
@@ -42,16 +45,31 @@ CREATE TABLE MaintenanceCompany (
 );
 
 
+--RoomBookings is range-partitioned by bookingDate, one partition per year, so that date-range
+--queries only touch the years they ask for and old years can be detached or archived cheaply.
+--Unique keys of a partitioned table must contain bookingDate, hence the two-column primary key.
 CREATE TABLE RoomBookings ( 
                     bookingID serial NOT NULL,
                     customerID integer NOT NULL,
                     hotelID integer NOT NULL,
                     roomNumber integer NOT NULL, 
                     bookingDate date NOT NULL, 
-                    PRIMARY KEY(bookingID),
+                    PRIMARY KEY(bookingID, bookingDate),
+                    UNIQUE(hotelID, roomNumber, bookingDate), --a room can only be booked once per night
                     FOREIGN KEY(customerID) REFERENCES Users(userID),
                     FOREIGN KEY(hotelID, roomNumber) REFERENCES Rooms(hotelID, roomNumber)
-);
+) PARTITION BY RANGE (bookingDate);
+
+DO $partitions$
+BEGIN
+	FOR y IN 2000..2035 LOOP
+		EXECUTE format('CREATE TABLE RoomBookings_%s PARTITION OF RoomBookings FOR VALUES FROM (%L) TO (%L)',
+		               y, make_date(y, 1, 1), make_date(y + 1, 1, 1));
+	END LOOP;
+END;
+$partitions$;
+--bookings outside the yearly partitions
+CREATE TABLE RoomBookings_default PARTITION OF RoomBookings DEFAULT;
 
 CREATE TABLE RoomRepairs (  
                             repairID serial,
@@ -59,6 +77,8 @@ CREATE TABLE RoomRepairs (
                             hotelID integer NOT NULL,
                             roomNumber integer NOT NULL, 
                             repairDate date NOT NULL,
+                            --the room is out of service from repairDate for repairDays nights
+                            repairDays integer NOT NULL DEFAULT 1 CHECK (repairDays BETWEEN 1 AND 30),
                             PRIMARY KEY(repairID),
                             FOREIGN KEY(companyID) REFERENCES MaintenanceCompany(companyID),
                             FOREIGN KEY(hotelID, roomNumber) REFERENCES Rooms(hotelID, roomNumber)
@@ -86,6 +106,42 @@ CREATE TABLE RoomUpdatesLog (
                             FOREIGN KEY(hotelID, roomNumber) REFERENCES Rooms(hotelID, roomNumber)
 );
 
+--The following table keeps the number of bookings each customer has at each hotel.
+--It is maintained by the maintain_customer_booking_counts trigger (triggers.sql) so that
+--the regular customers of a hotel can be read without scanning RoomBookings.
+CREATE TABLE CustomerBookingCounts (
+                            hotelID integer NOT NULL,
+                            customerID integer NOT NULL,
+                            numBookings integer NOT NULL,
+                            PRIMARY KEY(hotelID, customerID),
+                            FOREIGN KEY(hotelID) REFERENCES Hotel(hotelID) ON DELETE CASCADE,
+                            FOREIGN KEY(customerID) REFERENCES Users(userID)
+);
+
+--The following two tables roll up RoomBookings for the occupancy and revenue dashboards. They are
+--maintained by the maintain_booking_stats and maintain_revenue_on_reprice triggers (triggers.sql).
+--A night's revenue is the room's price when it was booked. Repricing a room moves the revenue of its
+--nights from today on, which are not earned yet; nights already past keep what they were booked at.
+CREATE TABLE HotelDailyStats (
+                            hotelID integer NOT NULL,
+                            day date NOT NULL,
+                            bookedNights integer NOT NULL,
+                            revenue bigint NOT NULL,
+                            PRIMARY KEY(hotelID, day),
+                            FOREIGN KEY(hotelID) REFERENCES Hotel(hotelID) ON DELETE CASCADE
+);
+
+--Nights booked and their revenue per room and month, counted like HotelDailyStats.
+CREATE TABLE RoomMonthlyStats (
+                            hotelID integer NOT NULL,
+                            roomNumber integer NOT NULL,
+                            month date NOT NULL, --first day of the month
+                            bookedNights integer NOT NULL,
+                            revenue bigint NOT NULL,
+                            PRIMARY KEY(hotelID, month, roomNumber),
+                            FOREIGN KEY(hotelID, roomNumber) REFERENCES Rooms(hotelID, roomNumber) ON DELETE CASCADE
+);
+
 ---The following is the definition of a user-defined sql function for calculating the distance between two lat-long pairs.
 CREATE OR REPLACE FUNCTION calculate_distance(lat1 decimal, long1 decimal, lat2 decimal, long2 decimal)
 RETURNS decimal AS $dist$
@@ -0,0 +1,22 @@
+--Plans of the RoomBookings access paths used by the Java client, for checking after
+--generate_bookings.sql that they stay index-only at scale. Look for "Index Only Scan"
+--on the covering indexes and for partitions being pruned to the dates asked for.
+
+--viewRecentBookingsfromCustomer: customer_bookingdate_idx, newest partitions first
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT hotelID, roomNumber, bookingDate FROM RoomBookings
+WHERE customerID = 42 ORDER BY bookingDate DESC LIMIT 5;
+
+--viewRooms (AvailabilityCache miss): hotel_bookingdate_idx, one partition
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT roomNumber FROM RoomBookings WHERE hotelID = 1001 AND bookingDate = date '2020-06-15';
+
+--bookRooms / stays: the unique (hotelID, roomNumber, bookingDate) index
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT 1 FROM RoomBookings
+WHERE hotelID = 1001 AND roomNumber = 7 AND bookingDate >= date '2020-06-15' AND bookingDate < date '2020-06-22';
+
+--viewBookingHistoryofHotel: hotel_bookingdate_idx, pruned to the years in range
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT bookingID, customerID, hotelID, roomNumber, bookingDate FROM RoomBookings
+WHERE hotelID = 1001 AND bookingDate BETWEEN date '2019-01-01' AND date '2019-03-31';
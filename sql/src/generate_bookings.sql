@@ -0,0 +1,60 @@
+--Generates a large synthetic booking history for checking query plans at scale.
+--Run after create_db.sh; it adds :hotels synthetic hotels (IDs from 1001) with :rooms rooms each
+--and books each room on a random :occupancy fraction of the nights from :first_year to :last_year.
+--The defaults give about 200 * 50 * 3650 * 0.6 = 22 million bookings.
+--Override with e.g. psql -v hotels=1000 -f generate_bookings.sql
+\if :{?hotels}
+\else
+\set hotels 200
+\endif
+\if :{?rooms}
+\else
+\set rooms 50
+\endif
+\if :{?occupancy}
+\else
+\set occupancy 0.6
+\endif
+\if :{?first_year}
+\else
+\set first_year 2015
+\endif
+\if :{?last_year}
+\else
+\set last_year 2024
+\endif
+
+INSERT INTO Hotel (hotelID, hotelName, latitude, longitude, dateEstablished, managerUserID)
+SELECT 1000 + h, 'Generated ' || h, random() * 180 - 90, random() * 360 - 180, date '1990-01-01', 25
+FROM generate_series(1, :hotels) h
+ON CONFLICT (hotelID) DO NOTHING;
+
+INSERT INTO Rooms (hotelID, roomNumber, price, imageURL)
+SELECT 1000 + h, r, 50 + (random() * 450)::int, 'generated'
+FROM generate_series(1, :hotels) h, generate_series(1, :rooms) r
+ON CONFLICT (hotelID, roomNumber) DO NOTHING;
+
+--one year per statement keeps each transaction (and each trigger transition table) a manageable size;
+--psql does not substitute variables inside the DO body, so they are passed as settings
+SELECT set_config('gen.hotels', :'hotels', false), set_config('gen.occupancy', :'occupancy', false),
+       set_config('gen.first_year', :'first_year', false), set_config('gen.last_year', :'last_year', false);
+DO $generate$
+BEGIN
+	FOR y IN current_setting('gen.first_year')::int..current_setting('gen.last_year')::int LOOP
+		INSERT INTO RoomBookings (customerID, hotelID, roomNumber, bookingDate)
+		SELECT 2 + (random() * 98)::int, r.hotelID, r.roomNumber, d::date
+		FROM Rooms r, generate_series(make_date(y, 1, 1), make_date(y, 12, 31), interval '1 day') d
+		WHERE r.hotelID > 1000 AND r.hotelID <= 1000 + current_setting('gen.hotels')::int
+		  AND random() < current_setting('gen.occupancy')::float
+		ON CONFLICT (hotelID, roomNumber, bookingDate) DO NOTHING;
+		RAISE NOTICE 'generated bookings for %', y;
+		COMMIT;
+	END LOOP;
+END;
+$generate$;
+
+SELECT setval('roombookings_bookingid_seq', (SELECT MAX(bookingID) FROM RoomBookings));
+
+--index-only scans need an up to date visibility map
+VACUUM ANALYZE RoomBookings;
+VACUUM ANALYZE CustomerBookingCounts;
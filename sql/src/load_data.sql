@@ -20,7 +20,7 @@ FROM 'bookings.csv'
 WITH DELIMITER ',' CSV HEADER;
 ALTER SEQUENCE RoomBookings_bookingID_seq RESTART 501; 
 
-COPY RoomRepairs
+COPY RoomRepairs (repairID, companyID, hotelID, roomNumber, repairDate)
 FROM 'roomRepairs.csv'
 WITH DELIMITER ',' CSV HEADER;
 ALTER SEQUENCE roomRepairs_repairID_seq RESTART 11;
@@ -1,21 +1,233 @@
-DROP FUNCTION IF EXISTS insert_roomrepair_to_request();
+--Files a RoomRepairRequests row for the hotel's manager for every repair scheduled. The
+--trigger is statement-level and joins the new rows to Hotel, so scheduling a batch of
+--repairs files all their requests in one insert instead of two lookups and an insert per row.
+DROP FUNCTION IF EXISTS insert_roomrepair_to_request() CASCADE;
 CREATE OR REPLACE LANGUAGE plpgsql;
 CREATE OR REPLACE FUNCTION insert_roomrepair_to_request()
 RETURNS TRIGGER AS $BODY$
-DECLARE
-	manager_ID integer;
-        hotel_ID integer;   
 BEGIN
-        SELECT hotelID INTO hotel_ID FROM RoomRepairs Where NEW.repairID = repairID;
-	SELECT managerUserID INTO manager_ID FROM Hotel WHERE hotel_ID = hotelID;
-	INSERT INTO RoomRepairRequests (managerID, repairID) Values (manager_ID, NEW.repairID); 
-	RETURN NEW;
+	INSERT INTO RoomRepairRequests (managerID, repairID)
+	SELECT h.managerUserID, n.repairID
+	FROM new_repairs n JOIN Hotel h ON h.hotelID = n.hotelID
+	ORDER BY n.repairID;
+	RETURN NULL;
 END;
 $BODY$ LANGUAGE plpgsql VOLATILE;
 
-DROP TRIGGER IF EXISTS insert_roomrepair_to_request ON RoomRepairs;
 CREATE TRIGGER insert_roomrepair_to_request
 AFTER INSERT ON RoomRepairs
-FOR EACH ROW
+REFERENCING NEW TABLE AS new_repairs
+FOR EACH STATEMENT
 EXECUTE PROCEDURE insert_roomrepair_to_request();
-  
+
+
+--Keeps CustomerBookingCounts in step with RoomBookings. The triggers are statement-level and
+--read the transition tables, so a block booking of many rows updates each (hotel, customer)
+--count once per statement instead of once per row.
+DROP FUNCTION IF EXISTS maintain_customer_booking_counts() CASCADE;
+CREATE OR REPLACE FUNCTION maintain_customer_booking_counts()
+RETURNS TRIGGER AS $BODY$
+BEGIN
+	IF TG_OP IN ('DELETE', 'UPDATE') THEN
+		UPDATE CustomerBookingCounts c
+		SET numBookings = c.numBookings - d.numBookings
+		FROM (SELECT hotelID, customerID, COUNT(*) AS numBookings FROM old_bookings GROUP BY hotelID, customerID) d
+		WHERE c.hotelID = d.hotelID AND c.customerID = d.customerID;
+		DELETE FROM CustomerBookingCounts c
+		USING (SELECT DISTINCT hotelID, customerID FROM old_bookings) d
+		WHERE c.hotelID = d.hotelID AND c.customerID = d.customerID AND c.numBookings <= 0;
+	END IF;
+	IF TG_OP IN ('INSERT', 'UPDATE') THEN
+		INSERT INTO CustomerBookingCounts (hotelID, customerID, numBookings)
+		SELECT hotelID, customerID, COUNT(*) FROM new_bookings GROUP BY hotelID, customerID
+		ON CONFLICT (hotelID, customerID) DO UPDATE SET numBookings = CustomerBookingCounts.numBookings + EXCLUDED.numBookings;
+	END IF;
+	RETURN NULL;
+END;
+$BODY$ LANGUAGE plpgsql VOLATILE;
+
+--rebuild the counts from the bookings loaded so far
+TRUNCATE CustomerBookingCounts;
+INSERT INTO CustomerBookingCounts (hotelID, customerID, numBookings)
+SELECT hotelID, customerID, COUNT(*) FROM RoomBookings GROUP BY hotelID, customerID;
+
+CREATE TRIGGER customer_booking_counts_insert
+AFTER INSERT ON RoomBookings
+REFERENCING NEW TABLE AS new_bookings
+FOR EACH STATEMENT
+EXECUTE PROCEDURE maintain_customer_booking_counts();
+
+CREATE TRIGGER customer_booking_counts_update
+AFTER UPDATE ON RoomBookings
+REFERENCING OLD TABLE AS old_bookings NEW TABLE AS new_bookings
+FOR EACH STATEMENT
+EXECUTE PROCEDURE maintain_customer_booking_counts();
+
+CREATE TRIGGER customer_booking_counts_delete
+AFTER DELETE ON RoomBookings
+REFERENCING OLD TABLE AS old_bookings
+FOR EACH STATEMENT
+EXECUTE PROCEDURE maintain_customer_booking_counts();
+
+
+--Tells the application which managers gained or lost a hotel, so it can drop the hotels it
+--cached for them at log in. The payload is the managerUserID.
+DROP FUNCTION IF EXISTS notify_hotel_managers() CASCADE;
+CREATE OR REPLACE FUNCTION notify_hotel_managers()
+RETURNS TRIGGER AS $BODY$
+BEGIN
+	IF TG_OP IN ('DELETE', 'UPDATE') AND OLD.managerUserID IS NOT NULL THEN
+		PERFORM pg_notify('hotel_managers', OLD.managerUserID::text);
+	END IF;
+	IF TG_OP IN ('INSERT', 'UPDATE') AND NEW.managerUserID IS NOT NULL THEN
+		PERFORM pg_notify('hotel_managers', NEW.managerUserID::text);
+	END IF;
+	RETURN NULL;
+END;
+$BODY$ LANGUAGE plpgsql VOLATILE;
+
+CREATE TRIGGER notify_hotel_managers
+AFTER INSERT OR DELETE OR UPDATE OF managerUserID ON Hotel
+FOR EACH ROW
+EXECUTE PROCEDURE notify_hotel_managers();
+
+
+--Tells the application that reference data changed, so it drops what it cached. The channel
+--and the key column sent as payload are the trigger's arguments. Postgres folds identical
+--notifications of one transaction into one, so repricing a whole hotel sends a single 'rooms'.
+DROP FUNCTION IF EXISTS notify_reference_data() CASCADE;
+CREATE OR REPLACE FUNCTION notify_reference_data()
+RETURNS TRIGGER AS $BODY$
+BEGIN
+	IF TG_OP IN ('DELETE', 'UPDATE') THEN
+		PERFORM pg_notify(TG_ARGV[0], to_jsonb(OLD) ->> TG_ARGV[1]);
+	END IF;
+	IF TG_OP IN ('INSERT', 'UPDATE') THEN
+		PERFORM pg_notify(TG_ARGV[0], to_jsonb(NEW) ->> TG_ARGV[1]);
+	END IF;
+	RETURN NULL;
+END;
+$BODY$ LANGUAGE plpgsql VOLATILE;
+
+CREATE TRIGGER notify_hotels
+AFTER INSERT OR DELETE OR UPDATE ON Hotel
+FOR EACH ROW
+EXECUTE PROCEDURE notify_reference_data('hotels', 'hotelid');
+
+CREATE TRIGGER notify_rooms
+AFTER INSERT OR DELETE OR UPDATE ON Rooms
+FOR EACH ROW
+EXECUTE PROCEDURE notify_reference_data('rooms', 'hotelid');
+
+CREATE TRIGGER notify_maintenance_companies
+AFTER INSERT OR DELETE OR UPDATE ON MaintenanceCompany
+FOR EACH ROW
+EXECUTE PROCEDURE notify_reference_data('maintenance_companies', 'companyid');
+
+
+--Keeps HotelDailyStats and RoomMonthlyStats in step with RoomBookings, one set-based update per
+--statement like the customer booking counts. A booking adds its room's current price, and a
+--cancellation takes its room's current price off again. Rows that drop to zero nights are kept; they cost
+--nothing to read and are reused by the next booking. The upserts lock their rows in key order,
+--so two block bookings over the same days cannot deadlock on each other's rollup rows.
+DROP FUNCTION IF EXISTS maintain_booking_stats() CASCADE;
+CREATE OR REPLACE FUNCTION maintain_booking_stats()
+RETURNS TRIGGER AS $BODY$
+BEGIN
+	IF TG_OP IN ('DELETE', 'UPDATE') THEN
+		UPDATE HotelDailyStats s
+		SET bookedNights = s.bookedNights - d.nights, revenue = s.revenue - d.revenue
+		FROM (SELECT b.hotelID, b.bookingDate AS day, COUNT(*) AS nights, SUM(r.price) AS revenue
+		      FROM old_bookings b JOIN Rooms r ON r.hotelID = b.hotelID AND r.roomNumber = b.roomNumber
+		      GROUP BY b.hotelID, b.bookingDate) d
+		WHERE s.hotelID = d.hotelID AND s.day = d.day;
+		UPDATE RoomMonthlyStats s
+		SET bookedNights = s.bookedNights - d.nights, revenue = s.revenue - d.revenue
+		FROM (SELECT b.hotelID, b.roomNumber, CAST(date_trunc('month', b.bookingDate) AS date) AS month, COUNT(*) AS nights,
+		             SUM(r.price) AS revenue
+		      FROM old_bookings b JOIN Rooms r ON r.hotelID = b.hotelID AND r.roomNumber = b.roomNumber
+		      GROUP BY 1, 2, 3) d
+		WHERE s.hotelID = d.hotelID AND s.month = d.month AND s.roomNumber = d.roomNumber;
+	END IF;
+	IF TG_OP IN ('INSERT', 'UPDATE') THEN
+		INSERT INTO HotelDailyStats (hotelID, day, bookedNights, revenue)
+		SELECT b.hotelID, b.bookingDate, COUNT(*), SUM(r.price)
+		FROM new_bookings b JOIN Rooms r ON r.hotelID = b.hotelID AND r.roomNumber = b.roomNumber
+		GROUP BY b.hotelID, b.bookingDate
+		ORDER BY b.hotelID, b.bookingDate
+		ON CONFLICT (hotelID, day) DO UPDATE
+		SET bookedNights = HotelDailyStats.bookedNights + EXCLUDED.bookedNights, revenue = HotelDailyStats.revenue + EXCLUDED.revenue;
+		INSERT INTO RoomMonthlyStats (hotelID, roomNumber, month, bookedNights, revenue)
+		SELECT b.hotelID, b.roomNumber, CAST(date_trunc('month', b.bookingDate) AS date), COUNT(*), SUM(r.price)
+		FROM new_bookings b JOIN Rooms r ON r.hotelID = b.hotelID AND r.roomNumber = b.roomNumber
+		GROUP BY 1, 2, 3
+		ORDER BY 1, 3, 2
+		ON CONFLICT (hotelID, month, roomNumber) DO UPDATE
+		SET bookedNights = RoomMonthlyStats.bookedNights + EXCLUDED.bookedNights, revenue = RoomMonthlyStats.revenue + EXCLUDED.revenue;
+	END IF;
+	RETURN NULL;
+END;
+$BODY$ LANGUAGE plpgsql VOLATILE;
+
+--Moves the revenue of a repriced room's nights from today on by the change in its price. Nights
+--already past keep the price they were booked at, and only the room's future bookings are read
+--(through the UNIQUE(hotelID, roomNumber, bookingDate) index), so a reprice costs the room's
+--upcoming nights, not its whole history.
+DROP FUNCTION IF EXISTS maintain_revenue_on_reprice() CASCADE;
+CREATE OR REPLACE FUNCTION maintain_revenue_on_reprice()
+RETURNS TRIGGER AS $BODY$
+BEGIN
+	UPDATE HotelDailyStats s
+	SET revenue = s.revenue + d.delta
+	FROM (SELECT b.hotelID, b.bookingDate AS day, SUM(n.price - o.price) AS delta
+	      FROM new_rooms n
+	      JOIN old_rooms o ON o.hotelID = n.hotelID AND o.roomNumber = n.roomNumber AND o.price <> n.price
+	      JOIN RoomBookings b ON b.hotelID = n.hotelID AND b.roomNumber = n.roomNumber AND b.bookingDate >= CURRENT_DATE
+	      GROUP BY b.hotelID, b.bookingDate) d
+	WHERE s.hotelID = d.hotelID AND s.day = d.day;
+	UPDATE RoomMonthlyStats s
+	SET revenue = s.revenue + d.delta
+	FROM (SELECT b.hotelID, b.roomNumber, CAST(date_trunc('month', b.bookingDate) AS date) AS month, SUM(n.price - o.price) AS delta
+	      FROM new_rooms n
+	      JOIN old_rooms o ON o.hotelID = n.hotelID AND o.roomNumber = n.roomNumber AND o.price <> n.price
+	      JOIN RoomBookings b ON b.hotelID = n.hotelID AND b.roomNumber = n.roomNumber AND b.bookingDate >= CURRENT_DATE
+	      GROUP BY 1, 2, 3) d
+	WHERE s.hotelID = d.hotelID AND s.month = d.month AND s.roomNumber = d.roomNumber;
+	RETURN NULL;
+END;
+$BODY$ LANGUAGE plpgsql VOLATILE;
+
+--rebuild the rollups from the bookings loaded so far
+TRUNCATE HotelDailyStats, RoomMonthlyStats;
+INSERT INTO HotelDailyStats (hotelID, day, bookedNights, revenue)
+SELECT b.hotelID, b.bookingDate, COUNT(*), SUM(r.price)
+FROM RoomBookings b JOIN Rooms r ON r.hotelID = b.hotelID AND r.roomNumber = b.roomNumber
+GROUP BY b.hotelID, b.bookingDate;
+INSERT INTO RoomMonthlyStats (hotelID, roomNumber, month, bookedNights, revenue)
+SELECT b.hotelID, b.roomNumber, CAST(date_trunc('month', b.bookingDate) AS date), COUNT(*), SUM(r.price)
+FROM RoomBookings b JOIN Rooms r ON r.hotelID = b.hotelID AND r.roomNumber = b.roomNumber
+GROUP BY 1, 2, 3;
+
+CREATE TRIGGER booking_stats_insert
+AFTER INSERT ON RoomBookings
+REFERENCING NEW TABLE AS new_bookings
+FOR EACH STATEMENT
+EXECUTE PROCEDURE maintain_booking_stats();
+
+CREATE TRIGGER booking_stats_update
+AFTER UPDATE ON RoomBookings
+REFERENCING OLD TABLE AS old_bookings NEW TABLE AS new_bookings
+FOR EACH STATEMENT
+EXECUTE PROCEDURE maintain_booking_stats();
+
+CREATE TRIGGER booking_stats_delete
+AFTER DELETE ON RoomBookings
+REFERENCING OLD TABLE AS old_bookings
+FOR EACH STATEMENT
+EXECUTE PROCEDURE maintain_booking_stats();
+
+CREATE TRIGGER revenue_on_reprice
+AFTER UPDATE ON Rooms
+REFERENCING OLD TABLE AS old_rooms NEW TABLE AS new_rooms
+FOR EACH STATEMENT
+EXECUTE PROCEDURE maintain_revenue_on_reprice();